@@ -24,6 +24,12 @@ public class CallContext {
    */
   private String moduleName;
   
+  /**
+   * Размер выборки (число строк, получаемых за одно обращение к базе) для запросов {@link DaoSupport#find}, {@link DaoSupport#select}.
+   * Если {@code null}, размер выборки подбирается автоматически.
+   */
+  private Integer fetchSize;
+  
   /**
    * Создаёт объект контекста.
    * @param dataSourceJndiName JNDI-имя источника данных
@@ -62,6 +68,25 @@ public class CallContext {
     return c.moduleName;
   }
 
+  /**
+   * Возвращает размер выборки для запросов {@link DaoSupport#find}, {@link DaoSupport#select}
+   * @return размер выборки или {@code null}, если размер выборки подбирается автоматически
+   */
+  public static Integer getFetchSize() {
+    CallContext c = (CallContext) context.get();
+    return c.fetchSize;
+  }
+  
+  /**
+   * Устанавливает размер выборки для последующих запросов {@link DaoSupport#find}, {@link DaoSupport#select}
+   * в рамках текущего контекста (например, по максимальному числу строк результата).
+   * @param fetchSize размер выборки или {@code null} для автоматического подбора
+   */
+  public static void setFetchSize(Integer fetchSize) {
+    CallContext c = (CallContext) context.get();
+    c.fetchSize = fetchSize;
+  }
+
   /**
    * Метод, освобождающий ресурсы после завершения транзакции.<br/>
    * Отвечает за закрытие соединения и других ресурсов, а также
@@ -10,6 +10,7 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import oracle.jdbc.OracleTypes;
 
@@ -18,6 +19,7 @@ import org.apache.log4j.Logger;
 import org.jepria.compat.server.db.Db;
 import org.jepria.compat.shared.exceptions.ApplicationException;
 import org.jepria.compat.shared.util.JepRiaUtil;
+import org.jepria.server.data.DtoAccessor;
 
 /**
  * Класс предназначен для облегчения работы с jdbc.<br/>
@@ -96,6 +98,31 @@ import org.jepria.compat.shared.util.JepRiaUtil;
 public class DaoSupport {
   protected static Logger logger = Logger.getLogger(DaoSupport.class.getName());  
   
+  /**
+   * Имя системного свойства, определяющего начальный размер выборки (число строк, получаемых за одно обращение к базе)
+   * в методах {@link #find}, {@link #select}
+   */
+  public static final String FETCH_SIZE_PROPERTY = "org.jepria.compat.server.dao.DaoSupport.fetchSize";
+  
+  public static final int DEFAULT_FETCH_SIZE = 100;
+  
+  /**
+   * Имя системного свойства, определяющего максимальный размер выборки в методах {@link #find}, {@link #select}:
+   * до него увеличивается размер выборки при чтении большого числа строк, им же ограничивается размер выборки,
+   * заданный явно (см. {@link CallContext#setFetchSize(Integer)})
+   */
+  public static final String MAX_FETCH_SIZE_PROPERTY = "org.jepria.compat.server.dao.DaoSupport.maxFetchSize";
+  
+  public static final int DEFAULT_MAX_FETCH_SIZE = 1000;
+  
+  /**
+   * Имя системного свойства, определяющего число наборов параметров, отправляемых в базу за одно обращение
+   * в методе {@link #executeBatch(String, List)}
+   */
+  public static final String BATCH_SIZE_PROPERTY = "org.jepria.compat.server.dao.DaoSupport.batchSize";
+  
+  public static final int DEFAULT_BATCH_SIZE = 100;
+  
   /**
    * Возможные типы выполнения запроса в методе {@link DaoSupport#setParamsAndExecute}.
    */
@@ -192,6 +219,124 @@ public class DaoSupport {
     }
   }
   
+  /**
+   * Данный метод выполняет sql-выражение без возвращаемого значения для каждого набора параметров,
+   * отправляя наборы параметров в базу пакетами (JDBC batch) размера {@link #BATCH_SIZE_PROPERTY}.
+   * 
+   * @param query               текст запроса (без выходных параметров)
+   * @param paramsList          наборы параметров sql-выражения
+   * @return число изменённых строк для каждого набора параметров
+   * (либо {@link java.sql.Statement#SUCCESS_NO_INFO}, например, для PL/SQL-блоков)
+   * @throws ApplicationException
+   */
+  public static int[] executeBatch(
+      String query
+      , List<Object[]> paramsList)
+      throws ApplicationException {
+    
+    return executeBatch(query, paramsList, Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+  }
+  
+  /**
+   * Данный метод выполняет sql-выражение без возвращаемого значения для каждого набора параметров,
+   * отправляя наборы параметров в базу пакетами (JDBC batch) заданного размера.
+   * <br/>
+   * Пакетное выполнение сокращает число обращений к базе для sql-запросов (insert, update, delete).
+   * Для PL/SQL-процедур драйвер Oracle выполняет пакет повызовно, поэтому для них эффективнее передавать
+   * массив значений одним параметром-коллекцией (см. {@link #createArray(String, Object[])}) и вызывать процедуру однократно.
+   * 
+   * @param query               текст запроса (без выходных параметров)
+   * @param paramsList          наборы параметров sql-выражения
+   * @param batchSize           число наборов параметров, отправляемых в базу за одно обращение
+   * @return число изменённых строк для каждого набора параметров
+   * (либо {@link java.sql.Statement#SUCCESS_NO_INFO}, например, для PL/SQL-блоков)
+   * @throws ApplicationException
+   */
+  public static int[] executeBatch(
+      String query
+      , List<Object[]> paramsList
+      , int batchSize)
+      throws ApplicationException {
+    
+    final int[] result = new int[paramsList.size()];
+    if (paramsList.isEmpty()) {
+      return result;
+    }
+    
+    batchSize = Math.max(batchSize, 1);
+
+    try {
+      Db db = CallContext.getDb();
+      
+      CallableStatement callableStatement = db.prepare(query);
+      
+      setApplicationInfo(query);
+      
+      int addedCount = 0;
+      int executedCount = 0;
+      try {
+        for (Object[] params : paramsList) {
+          setInputParamsToStatement(callableStatement, 1, params);
+          callableStatement.addBatch();
+          addedCount++;
+          
+          if (addedCount - executedCount == batchSize) {
+            executedCount = executeBatch(callableStatement, result, executedCount, addedCount);
+          }
+        }
+        if (addedCount > executedCount) {
+          executeBatch(callableStatement, result, executedCount, addedCount);
+        }
+      } finally {
+        // statement закеширован в Db, поэтому невыполненные наборы параметров (в случае ошибки) не должны в нём оставаться
+        callableStatement.clearBatch();
+      }
+
+    } catch (Throwable th) {
+      throw new ApplicationException(th.getMessage(), th);
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Выполняет накопленный пакет и записывает результаты его выполнения.
+   * @return число выполненных наборов параметров
+   */
+  private static int executeBatch(CallableStatement callableStatement, int[] result, int executedCount, int addedCount)
+      throws SQLException {
+    int[] updateCounts = callableStatement.executeBatch();
+    System.arraycopy(updateCounts, 0, result, executedCount, Math.min(updateCounts.length, addedCount - executedCount));
+    return addedCount;
+  }
+  
+  /**
+   * Данный метод создаёт значение SQL-коллекции (VARRAY или вложенной таблицы) для передачи в sql-выражение одним параметром.
+   * <br/>
+   * Например, вместо вызова процедуры для каждой записи (в том числе пакетного, см. {@link #executeBatch(String, List)})
+   * процедура, принимающая коллекции, вызывается однократно:
+   * <pre>
+   *     DaoSupport.execute("begin pkg_Example.createRecords(recordNames => ?, operatorId => ?); end;",
+   *       DaoSupport.createArray("STR_TABLE_TYPE", recordNames), operatorId);
+   * </pre>
+   * 
+   * @param typeName            имя SQL-типа коллекции
+   * @param elements            элементы коллекции
+   * @return значение коллекции
+   * @throws ApplicationException
+   */
+  public static java.sql.Array createArray(
+      String typeName
+      , Object[] elements)
+      throws ApplicationException {
+    
+    try {
+      return CallContext.getDb().createArray(typeName, elements);
+    } catch (Throwable th) {
+      throw new ApplicationException(th.getMessage(), th);
+    }
+  }
+  
   /**
    * Данный метод выполняет sql-выражение, возвращающее курсор.
    * 
@@ -392,6 +537,54 @@ public class DaoSupport {
 
   }
   
+  /**
+   * Данный метод выполняет sql-выражение, возвращающее курсор, и передаёт записи обработчику по мере их чтения из курсора,
+   * не накапливая список записей в памяти.
+   * 
+   * @param <T>          тип записи
+   * @param query          текст запроса
+   * @param mapper        экземпляр класса, осуществляющего мэппинг полей dto и ResultSet
+   * @param recordClass        класс dto
+   * @param consumer      обработчик записей, вызываемый для каждой записи в порядке их чтения
+   * @param params        параметры sql-выражения
+   * @throws ApplicationException в том числе в случае исключения, выброшенного обработчиком записей
+   */
+  public static <T> void findEach(
+      String query
+      , ResultSetMapper<? super T> mapper
+      , Class<? super T> recordClass
+      , Consumer<? super T> consumer
+      , Object... params) 
+      throws ApplicationException {
+      
+    forEachRecord(query, mapper,
+        recordClass, ExecutionType.CALLABLE_STATEMENT, consumer, params);
+  }
+  
+  /**
+   * Данный метод выполняет sql-запрос и передаёт записи обработчику по мере их чтения,
+   * не накапливая список записей в памяти.
+   * 
+   * @param <T>          тип записи
+   * @param query          текст запроса
+   * @param mapper        экземпляр класса, осуществляющего мэппинг полей dto и ResultSet
+   * @param modelClass            класс dto
+   * @param consumer      обработчик записей, вызываемый для каждой записи в порядке их чтения
+   * @param params        параметры sql-запроса
+   * @throws ApplicationException в том числе в случае исключения, выброшенного обработчиком записей
+   */
+  public static <T> void selectEach(
+      String query
+      , ResultSetMapper<? super T> mapper
+      , Class<? super T> modelClass
+      , Consumer<? super T> consumer
+      , Object... params) 
+      throws ApplicationException {
+      
+    forEachRecord(query, mapper,
+        modelClass, ExecutionType.QUERY, consumer, params);
+  }
+  
   /**
    * Вспомогательный метод, объединящий в себе логику работы методов find и select.
    * 
@@ -413,22 +606,111 @@ public class DaoSupport {
       
     List<T> result = new ArrayList<T>();
     
+    DaoSupport.<T>forEachRecord(query, mapper, recordClass, executionType, result::add, params);
+    
+    return result;
+  }
+  
+  /**
+   * Начальный размер выборки в методе {@link #forEachRecord}
+   * @param fetchSize размер выборки, заданный явно или системным свойством {@link #FETCH_SIZE_PROPERTY}
+   * @param maxFetchSize максимальный размер выборки, положительный
+   * @return размер выборки, приведённый к диапазону от 1 до maxFetchSize
+   */
+  static int initialFetchSize(int fetchSize, int maxFetchSize) {
+    return Math.min(Math.max(fetchSize, 1), maxFetchSize);
+  }
+
+  /**
+   * Размер выборки для очередного обращения к базе при адаптивном размере выборки в методе {@link #forEachRecord}:
+   * размер удваивается с каждым обращением, пока не достигнет максимального
+   * @param fetchSize размер выборки предыдущего обращения, положительный
+   * @param maxFetchSize максимальный размер выборки, положительный
+   * @return размер выборки, не превышающий maxFetchSize
+   */
+  static int nextFetchSize(int fetchSize, int maxFetchSize) {
+    // doubled as long, so that it does not overflow
+    return (int) Math.min(fetchSize * 2L, maxFetchSize);
+  }
+
+  /**
+   * Вспомогательный метод, выполняющий sql-запрос или sql-выражение и передающий записи обработчику по мере их чтения.
+   * 
+   * @param <T>                 тип записи
+   * @param query               текст запроса
+   * @param mapper              экземпляр класса, осуществляющего мэппинг полей dto и ResultSet
+   * @param recordClass класс записи
+   * @param consumer обработчик записей
+   * @param params параметры sql-запроса или sql-выражения
+   * @throws ApplicationException
+   */
+  private static <T> void forEachRecord(
+      String query
+      , ResultSetMapper<? super T> mapper
+      , Class<? super T> recordClass
+      , ExecutionType executionType
+      , Consumer<? super T> consumer
+      , Object... params)
+      throws ApplicationException {
+    
     ResultSet resultSet = null;
     
     try {
       Db db = CallContext.getDb();
       
       CallableStatement callableStatement = db.prepare(query);
+      
+      // размер выборки, заданный явно, не изменяется; иначе он удваивается с каждым обращением к базе.
+      // В обоих случаях размер выборки ограничен максимальным (буферы драйвера выделяются по размеру выборки)
+      final Integer explicitFetchSize = CallContext.getFetchSize();
+      final boolean adaptive = explicitFetchSize == null;
+      final int maxFetchSize = Math.max(Integer.getInteger(MAX_FETCH_SIZE_PROPERTY, DEFAULT_MAX_FETCH_SIZE), 1);
+      int fetchSize = initialFetchSize(
+          adaptive ? Integer.getInteger(FETCH_SIZE_PROPERTY, DEFAULT_FETCH_SIZE) : explicitFetchSize, maxFetchSize);
+      
+      // для sql-запроса размер выборки должен быть установлен до выполнения
+      callableStatement.setFetchSize(fetchSize);
     
       setApplicationInfo(query);
       resultSet = setParamsAndExecute(callableStatement, executionType, params);
+      resultSet.setFetchSize(fetchSize);
       
-      while (resultSet.next()) {
-        T resultModel = (T)recordClass.newInstance();
+      // конструктор записи определяется однократно для класса
+      final DtoAccessor recordAccessor = getRecordAccessor(recordClass);
+      
+      int rowCount = 0;
+      int fetchedRowCount = 0;
+      int roundTripCount = 0;
+      
+      while (true) {
+        if (rowCount == fetchedRowCount) {
+          // the next row is fetched from the database
+          if (adaptive && roundTripCount > 0) {
+            final int nextFetchSize = nextFetchSize(fetchSize, maxFetchSize);
+            if (nextFetchSize != fetchSize) {
+              fetchSize = nextFetchSize;
+              resultSet.setFetchSize(fetchSize);
+            }
+          }
+          roundTripCount++;
+          fetchedRowCount += fetchSize;
+        }
+        
+        if (!resultSet.next()) {
+          break;
+        }
+        rowCount++;
+        
+        T resultModel = (T)(recordAccessor != null ? recordAccessor.newInstance() : recordClass.newInstance());
         
         mapper.map(resultSet, resultModel);
         
-        result.add(resultModel);
+        consumer.accept(resultModel);
+      }
+      
+      if (logger.isDebugEnabled()) {
+        logger.debug("forEachRecord: " + rowCount + " rows fetched in " + roundTripCount + " round trips (estimated)"
+            + " (last fetch size " + fetchSize + ") for query '" + getAction(query) + "'");
       }
       
     } catch (Throwable th) {
@@ -442,15 +724,28 @@ public class DaoSupport {
         throw new ApplicationException(e.getMessage(), e);
       }
     }
-    
-    return result;
+  }
+  
+  /**
+   * @param recordClass класс записи
+   * @return закешированный доступ к конструктору записи или {@code null}, если запись не может быть создана
+   * через {@link DtoAccessor} (в этом случае используется {@link Class#newInstance()})
+   */
+  private static DtoAccessor getRecordAccessor(Class<?> recordClass) {
+    try {
+      final DtoAccessor recordAccessor = DtoAccessor.forClass(recordClass);
+      return recordAccessor.isInstantiable() ? recordAccessor : null;
+    } catch (RuntimeException e) {
+      // e.g. the fields of a JDK class are not accessible
+      return null;
+    }
   }
   
   /**
    * Установка информации о вызывающем модуле.
-   * Использует встроенный функционал Oracle для установки трёх параметров сессии.
+   * Использует встроенный функционал Oracle для установки параметров сессии (без отдельного обращения к базе).
    * Значение module_name (имя модуля) извлекается из {@link CallContext}, action_name
-   * (название действия) - из шаблона SQL-выражения. client_info заполняется пустым значением.
+   * (название действия) - из шаблона SQL-выражения.
    * @param queryToExecute шаблон запроса
    * @throws SQLException при ошибке взаимодействия с базой
    */
@@ -459,10 +754,11 @@ public class DaoSupport {
   }
   
   /**
-   * Установка имени модуля (module name) и названия действия (action_name).
-   * Кроме того, метод сбрасывает установленное значение client_info.
-   * @param moduleName имя модуля (Oracle обрезает значение до 48 байт)
-   * @param actionName название действия (Oracle обрезает значение до 32 байт)
+   * Установка имени модуля (module name) и названия действия (action_name).<br/>
+   * Значения передаются в базу вместе со следующим запросом, без отдельного обращения,
+   * и только при их изменении (см. {@link Db#setModule(String, String)}).
+   * @param moduleName имя модуля (обрезается до 48 байт)
+   * @param actionName название действия (обрезается до 32 байт)
    * @throws SQLException при ошибке взаимодействия с базой
    */
   public static void setModule(String moduleName, String actionName) throws SQLException {
@@ -470,20 +766,7 @@ public class DaoSupport {
      * TODO: Найти способ передать в client_info полезную информацию
      * (например, id или логин вызывающего оператора).
      */
-    String query = 
-        "begin  " 
-          +  "dbms_application_info.set_module(" 
-              + "module_name => ? " 
-              + ", action_name => ? " 
-          + ");" 
-          +  "dbms_application_info.set_client_info(" 
-              + "client_info => null "
-          + ");"
-       + " end;";
-    Db db = CallContext.getDb();
-    CallableStatement callableStatement = db.prepare(query);
-    setInputParamsToStatement(callableStatement, 1, moduleName, actionName);
-    callableStatement.execute();
+    CallContext.getDb().setModule(moduleName, actionName);
   }
   
   /**
@@ -538,7 +821,7 @@ public class DaoSupport {
       setInputParamsToStatement(callableStatement, 1, params);
       
       //Получим набор.
-      resultSet = callableStatement.executeQuery();
+      resultSet = ResultSetWrapper.wrap(callableStatement.executeQuery());
     }
     return resultSet;
   }
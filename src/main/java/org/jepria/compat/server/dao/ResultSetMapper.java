@@ -15,6 +15,17 @@ import org.jepria.compat.shared.util.JepRiaUtil;
 
 /**
  * Используется для мэппинга данных из {@code ResultSet} в {@code Dto}.
+ * <br/>
+ * Столбцы могут быть получены как по имени, так и по индексу. В {@link DaoSupport#find}, {@link DaoSupport#select}
+ * индекс столбца по имени определяется однократно для {@code ResultSet} (см. {@link ResultSetWrapper#findColumn(String)}).
+ * Если порядок столбцов известен (например, в sql-запросе с явным списком столбцов), мэппинг может выполняться
+ * непосредственно по индексам:
+ * <pre>
+ *   public void map(ResultSet rs, PositionTypeDto dto) throws SQLException {
+ *     dto.setPositionTypeId(getInteger(rs, 1));
+ *     dto.setPositionTypeNameRus(rs.getString(2));
+ *   }
+ * </pre>
  *
  * @param <T> тип объекта Dto
  */
@@ -74,6 +85,24 @@ public abstract class ResultSetMapper<T> {
   }
 
     
+  /**
+   * Получение {@code Boolean} из {@code ResultSet} по индексу столбца, см. {@link #getBoolean(ResultSet, String)}.
+   * 
+   * @param rs                {@code ResultSet}
+   * @param columnIndex       Индекс столбца (начиная с 1)
+   * @return значение столбца
+   * @throws SQLException
+   */
+  public static Boolean getBoolean(ResultSet rs, int columnIndex) throws SQLException {
+    boolean result = rs.getBoolean(columnIndex);
+    
+    if (rs.wasNull()) {
+      return null;
+    } else {
+      return result;
+    }
+  }
+  
   /**
    * Получение {@code Integer} из {@code ResultSet}. Если значение {@code == null}, то метод возвращает {@code null},
    * а не 0, как rs.getInt(...).
@@ -93,6 +122,24 @@ public abstract class ResultSetMapper<T> {
     }
   }
   
+  /**
+   * Получение {@code Integer} из {@code ResultSet} по индексу столбца, см. {@link #getInteger(ResultSet, String)}.
+   * 
+   * @param rs                {@code ResultSet}
+   * @param columnIndex       Индекс столбца (начиная с 1)
+   * @return значение столбца
+   * @throws SQLException
+   */
+  public static Integer getInteger(ResultSet rs, int columnIndex) throws SQLException {
+    int result = rs.getInt(columnIndex);
+    
+    if (rs.wasNull()) {
+      return null;
+    } else {
+      return result;
+    }
+  }
+  
   /**
    * Данный метод решает проблему получения дат 01.04.1981-01.04.1984 из {@code ResultSet}.
    * 
@@ -105,6 +152,18 @@ public abstract class ResultSetMapper<T> {
     return rs.getTimestamp(columnName, DEFAULT_CALENDAR);
   }
   
+  /**
+   * Получение {@code Timestamp} из {@code ResultSet} по индексу столбца, см. {@link #getTimestamp(ResultSet, String)}.
+   * 
+   * @param rs           {@code ResultSet}
+   * @param columnIndex  Индекс столбца (начиная с 1)
+   * @return значение столбца
+   * @throws SQLException
+   */
+  public static Timestamp getTimestamp(ResultSet rs, int columnIndex) throws SQLException {
+    return rs.getTimestamp(columnIndex, DEFAULT_CALENDAR);
+  }
+  
   /**
    * Данный метод решает проблему получения дат 01.04.1981-01.04.1984 из {@code ResultSet}.
    * 
@@ -114,7 +173,22 @@ public abstract class ResultSetMapper<T> {
    * @throws SQLException
    */
   public static java.util.Date getDate(ResultSet rs, String columnName) throws SQLException {
-    Date date = rs.getDate(columnName, DEFAULT_CALENDAR);
+    return toUtilDate(rs.getDate(columnName, DEFAULT_CALENDAR));
+  }
+  
+  /**
+   * Получение даты из {@code ResultSet} по индексу столбца, см. {@link #getDate(ResultSet, String)}.
+   * 
+   * @param rs           {@code ResultSet}
+   * @param columnIndex  Индекс столбца (начиная с 1)
+   * @return значение столбца
+   * @throws SQLException
+   */
+  public static java.util.Date getDate(ResultSet rs, int columnIndex) throws SQLException {
+    return toUtilDate(rs.getDate(columnIndex, DEFAULT_CALENDAR));
+  }
+  
+  private static java.util.Date toUtilDate(Date date) {
     date = workaroundForWrongDates(date);
     java.util.Date utilDate = null;
     if(date != null) {
@@ -21,12 +21,16 @@ import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Класс-обертка для ResultSet, который, при получении SQL-исключения "Недопустимое имя столбца"
  * вследствие вызова любого get-метода с параметром String columnLabel,
  * добавляет в выбрасываемое исключение некорректное имя столбца.
+ * <br/>
+ * Кроме того, get-методы с параметром String columnLabel определяют индекс столбца по имени однократно для ResultSet
+ * (см. {@link #findColumn(String)}), а не при чтении каждой строки.
  * 
  * @author RomanovAS
  */
@@ -37,6 +41,11 @@ public class ResultSetWrapper implements ResultSet {
   
   private final ResultSet delegate;
   
+  /**
+   * Индексы столбцов по их именам. ResultSet не используется несколькими потоками одновременно, поэтому HashMap
+   */
+  private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+  
   private ResultSetWrapper(ResultSet rs) {
     delegate = rs;
   }
@@ -45,11 +54,14 @@ public class ResultSetWrapper implements ResultSet {
    * Wraps a ResultSet to handle invalid column name exceptions
    * caused by ResultSet.getSomething(columnName) invocations
    * @param rs
-   * @return new instance of {@link ResultSetWrapper} wrapping the ResultSet, or {@code null} if the argument is {@code null}.
+   * @return new instance of {@link ResultSetWrapper} wrapping the ResultSet, or {@code null} if the argument is {@code null},
+   * or the argument itself if it is already a {@link ResultSetWrapper}.
    */
   public static ResultSet wrap(ResultSet rs) {
     if (rs == null) {
       return null;
+    } else if (rs instanceof ResultSetWrapper) {
+      return rs;
     } else {
       return new ResultSetWrapper(rs);
     }
@@ -166,56 +178,56 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public String getString(String columnLabel) throws SQLException {
     try {
-      return delegate.getString(columnLabel);
+      return delegate.getString(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public boolean getBoolean(String columnLabel) throws SQLException {
     try {
-      return delegate.getBoolean(columnLabel);
+      return delegate.getBoolean(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public byte getByte(String columnLabel) throws SQLException {
     try {
-      return delegate.getByte(columnLabel);
+      return delegate.getByte(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public short getShort(String columnLabel) throws SQLException {
     try {
-      return delegate.getShort(columnLabel);
+      return delegate.getShort(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public int getInt(String columnLabel) throws SQLException {
     try {
-      return delegate.getInt(columnLabel);
+      return delegate.getInt(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public long getLong(String columnLabel) throws SQLException {
     try {
-      return delegate.getLong(columnLabel);
+      return delegate.getLong(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public float getFloat(String columnLabel) throws SQLException {
     try {
-      return delegate.getFloat(columnLabel);
+      return delegate.getFloat(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public double getDouble(String columnLabel) throws SQLException {
     try {
-      return delegate.getDouble(columnLabel);
+      return delegate.getDouble(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -223,54 +235,54 @@ public class ResultSetWrapper implements ResultSet {
   @Deprecated
   public BigDecimal getBigDecimal(String columnLabel, int scale)
       throws SQLException {
-    return delegate.getBigDecimal(columnLabel, scale);
+    return delegate.getBigDecimal(findColumn(columnLabel), scale);
   }
 
   @Override
   public byte[] getBytes(String columnLabel) throws SQLException {
     try {
-      return delegate.getBytes(columnLabel);
+      return delegate.getBytes(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public Date getDate(String columnLabel) throws SQLException {
     try {
-      return delegate.getDate(columnLabel);
+      return delegate.getDate(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public Time getTime(String columnLabel) throws SQLException {
     try {
-      return delegate.getTime(columnLabel);
+      return delegate.getTime(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public Timestamp getTimestamp(String columnLabel) throws SQLException {
     try {
-      return delegate.getTimestamp(columnLabel);
+      return delegate.getTimestamp(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public InputStream getAsciiStream(String columnLabel) throws SQLException {
     try {
-      return delegate.getAsciiStream(columnLabel);
+      return delegate.getAsciiStream(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   @Deprecated
   public InputStream getUnicodeStream(String columnLabel) throws SQLException {
-    return delegate.getUnicodeStream(columnLabel);
+    return delegate.getUnicodeStream(findColumn(columnLabel));
   }
 
   @Override
   public InputStream getBinaryStream(String columnLabel) throws SQLException {
     try {
-      return delegate.getBinaryStream(columnLabel);
+      return delegate.getBinaryStream(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -302,13 +314,18 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public Object getObject(String columnLabel) throws SQLException {
     try {
-      return delegate.getObject(columnLabel);
+      return delegate.getObject(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public int findColumn(String columnLabel) throws SQLException {
-    return delegate.findColumn(columnLabel);
+    Integer columnIndex = columnIndexes.get(columnLabel);
+    if (columnIndex == null) {
+      columnIndex = delegate.findColumn(columnLabel);
+      columnIndexes.put(columnLabel, columnIndex);
+    }
+    return columnIndex;
   }
 
   @Override
@@ -319,7 +336,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public Reader getCharacterStream(String columnLabel) throws SQLException {
     try {
-      return delegate.getCharacterStream(columnLabel);
+      return delegate.getCharacterStream(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}  
   }
 
@@ -331,7 +348,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
     try {
-      return delegate.getBigDecimal(columnLabel);
+      return delegate.getBigDecimal(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -711,35 +728,35 @@ public class ResultSetWrapper implements ResultSet {
   public Object getObject(String columnLabel, Map<String, Class<?>> map)
       throws SQLException {
     try {
-      return delegate.getObject(columnLabel, map);
+      return delegate.getObject(findColumn(columnLabel), map);
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public Ref getRef(String columnLabel) throws SQLException {
     try {
-      return delegate.getRef(columnLabel);
+      return delegate.getRef(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public Blob getBlob(String columnLabel) throws SQLException {
     try {
-      return delegate.getBlob(columnLabel);
+      return delegate.getBlob(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public Clob getClob(String columnLabel) throws SQLException {
     try {
-      return delegate.getClob(columnLabel);
+      return delegate.getClob(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
   @Override
   public Array getArray(String columnLabel) throws SQLException {
     try {
-      return delegate.getArray(columnLabel);
+      return delegate.getArray(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -751,7 +768,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public Date getDate(String columnLabel, Calendar cal) throws SQLException {
     try {
-      return delegate.getDate(columnLabel, cal);
+      return delegate.getDate(findColumn(columnLabel), cal);
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -763,7 +780,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public Time getTime(String columnLabel, Calendar cal) throws SQLException {
     try {
-      return delegate.getTime(columnLabel, cal);
+      return delegate.getTime(findColumn(columnLabel), cal);
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -777,7 +794,7 @@ public class ResultSetWrapper implements ResultSet {
   public Timestamp getTimestamp(String columnLabel, Calendar cal)
       throws SQLException {
     try {
-      return delegate.getTimestamp(columnLabel, cal);
+      return delegate.getTimestamp(findColumn(columnLabel), cal);
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -789,7 +806,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public URL getURL(String columnLabel) throws SQLException {
     try {
-      return delegate.getURL(columnLabel);
+      return delegate.getURL(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -849,7 +866,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public RowId getRowId(String columnLabel) throws SQLException {
     try {
-      return delegate.getRowId(columnLabel);
+      return delegate.getRowId(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -905,7 +922,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public NClob getNClob(String columnLabel) throws SQLException {
     try {
-      return delegate.getNClob(columnLabel);
+      return delegate.getNClob(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -917,7 +934,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public SQLXML getSQLXML(String columnLabel) throws SQLException {
     try {
-      return delegate.getSQLXML(columnLabel);
+      return delegate.getSQLXML(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -941,7 +958,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public String getNString(String columnLabel) throws SQLException {
     try {
-      return delegate.getNString(columnLabel);
+      return delegate.getNString(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -953,7 +970,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public Reader getNCharacterStream(String columnLabel) throws SQLException {
     try {
-      return delegate.getNCharacterStream(columnLabel);
+      return delegate.getNCharacterStream(findColumn(columnLabel));
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
@@ -1130,7 +1147,7 @@ public class ResultSetWrapper implements ResultSet {
   @Override
   public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
     try {
-      return delegate.getObject(columnLabel, type);
+      return delegate.getObject(findColumn(columnLabel), type);
     /*inline в одну строку для удобства замены:*/} catch (SQLException e) {if (e.getErrorCode() == SQL_ERROR_CODE_INVALID_COLUMN_NAME) {throw new SQLException(String.format(EXCEPTION_TEXT_INVALID_COLUMN_NAME, columnLabel), e);} else {throw e;}}
   }
 
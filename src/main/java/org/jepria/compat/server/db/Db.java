@@ -1,17 +1,22 @@
 package org.jepria.compat.server.db;
 
+import java.sql.Array;
 import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 
+import oracle.jdbc.OracleConnection;
+
 import org.apache.log4j.Logger;
 
 import org.jepria.compat.server.dao.OracleCallableStatementWrapper;
@@ -46,6 +51,37 @@ public class Db {
    */
   private Map<String, CallableStatement> statementsMap = new ConcurrentHashMap<String, CallableStatement>();
 
+  /**
+   * Имя модуля, установленное для текущего соединения (см. {@link #setModule(String, String)}).
+   */
+  private String moduleName;
+
+  /**
+   * Название действия, установленное для текущего соединения (см. {@link #setModule(String, String)}).
+   */
+  private String actionName;
+
+  /**
+   * Признак того, что имя модуля и название действия для текущего соединения установлены.
+   */
+  private boolean moduleSet = false;
+
+  /**
+   * Признак того, что драйвер не поддерживает передачу имени модуля и названия действия
+   * через client info соединения (end-to-end metrics).
+   */
+  private boolean endToEndMetricsUnsupported = false;
+
+  /**
+   * Максимальная длина (в байтах) имени модуля, принимаемая Oracle.
+   */
+  private static final int MODULE_NAME_MAX_BYTES = 48;
+
+  /**
+   * Максимальная длина (в байтах) названия действия, принимаемая Oracle.
+   */
+  private static final int ACTION_NAME_MAX_BYTES = 32;
+
   /**
    * Создаёт объект соединения с базой с автоматическим коммитом.
    * @param dataSourceJndiName JNDI-имя источника данных
@@ -82,6 +118,103 @@ public class Db {
     return cs;
   }
 
+  /**
+   * Создаёт значение SQL-коллекции (VARRAY или вложенной таблицы) для передачи в sql-выражение одним параметром
+   * (например, для обработки массива значений в PL/SQL за один вызов вместо вызова для каждого значения).
+   * @param typeName имя SQL-типа коллекции (например, {@code "SCHEMA.NUMBER_TABLE_TYPE"})
+   * @param elements элементы коллекции
+   * @return значение коллекции
+   * @throws SQLException при ошибке взаимодействия с базой
+   */
+  public Array createArray(String typeName, Object[] elements) throws SQLException {
+    Connection connection = getConnection();
+    if (connection.isWrapperFor(OracleConnection.class)) {
+      // Oracle driver does not support the standard createArrayOf
+      return connection.unwrap(OracleConnection.class).createARRAY(typeName, elements);
+    } else {
+      return connection.createArrayOf(typeName, elements);
+    }
+  }
+
+  /**
+   * Установка имени модуля (module name) и названия действия (action_name) сессии Oracle.<br/>
+   * Отдельного обращения к базе не выполняется: значения передаются драйвером Oracle
+   * через end-to-end metrics (client info соединения {@code OCSID.MODULE}, {@code OCSID.ACTION})
+   * вместе со следующим запросом. Если значения не изменились с предыдущего вызова для того же соединения,
+   * они не передаются повторно.<br/>
+   * Если драйвер не поддерживает end-to-end metrics, значения устанавливаются
+   * вызовом {@code dbms_application_info.set_module} (также только при их изменении).
+   * @param moduleName имя модуля (обрезается до 48 байт)
+   * @param actionName название действия (обрезается до 32 байт)
+   * @throws SQLException при ошибке взаимодействия с базой
+   */
+  public void setModule(String moduleName, String actionName) throws SQLException {
+    moduleName = truncate(moduleName, MODULE_NAME_MAX_BYTES);
+    actionName = truncate(actionName, ACTION_NAME_MAX_BYTES);
+
+    // the connection may be recreated since the previous call, so obtain it first
+    Connection connection = getConnection();
+
+    if (moduleSet
+        && Objects.equals(this.moduleName, moduleName)
+        && Objects.equals(this.actionName, actionName)) {
+      return;
+    }
+
+    if (!endToEndMetricsUnsupported) {
+      try {
+        connection.setClientInfo("OCSID.MODULE", moduleName);
+        connection.setClientInfo("OCSID.ACTION", actionName);
+      } catch (SQLClientInfoException ex) {
+        logger.trace("End-to-end metrics are not supported, dbms_application_info is used instead", ex);
+        endToEndMetricsUnsupported = true;
+      }
+    }
+
+    if (endToEndMetricsUnsupported) {
+      CallableStatement callableStatement = prepare(
+          "begin  "
+            +  "dbms_application_info.set_module("
+                + "module_name => ? "
+                + ", action_name => ? "
+            + ");"
+            +  "dbms_application_info.set_client_info("
+                + "client_info => null "
+            + ");"
+         + " end;");
+      callableStatement.setString(1, moduleName);
+      callableStatement.setString(2, actionName);
+      callableStatement.execute();
+    }
+
+    this.moduleName = moduleName;
+    this.actionName = actionName;
+    moduleSet = true;
+  }
+
+  /**
+   * Обрезает строку до заданной длины в байтах UTF-8, не разрывая символы.
+   * @param value строка
+   * @param maxBytes максимальная длина в байтах
+   * @return обрезанная строка
+   */
+  private static String truncate(String value, int maxBytes) {
+    if (value == null || value.length() * 3 <= maxBytes) {
+      return value;
+    }
+    int bytes = 0;
+    int i = 0;
+    while (i < value.length()) {
+      int codePoint = value.codePointAt(i);
+      bytes += codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+      if (bytes > maxBytes) {
+        break;
+      }
+      i += Character.charCount(codePoint);
+    }
+    return value.substring(0, i);
+  }
+
   /**
    * Метод закрывает все ресурсы, связанные с данным Db: connection и все курсоры из statementsMap.
    * Должен вызываться в конце сессии пользователя.
@@ -174,6 +307,8 @@ public class Db {
   private Connection getConnection() {
     if(this.isClosed()) {
       connection = createConnection(dataSourceJndiName);
+      // the session of the new connection knows nothing of the values set before
+      moduleSet = false;
     }
     return connection;
   }
@@ -13,7 +13,15 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.sql.Clob;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Locale;
@@ -45,10 +53,58 @@ public class JepServerUtil {
   /**
    * Стандартный форматировщик дат.<br/>
    * Преобразует строки в даты и даты в строки формата {@link JepRiaConstant#DEFAULT_DATE_FORMAT}.
+   * @deprecated экземпляр {@link SimpleDateFormat} не потокобезопасен и не может использоваться одновременно несколькими потоками,
+   * используйте {@link #DEFAULT_DATE_TIME_FORMATTER}, {@link #formatDate(java.util.Date)} и {@link #parseDate(String)}
    */
+  @Deprecated
   public static final SimpleDateFormat defaultDateFormatter = new SimpleDateFormat(DEFAULT_DATE_FORMAT);
   static { defaultDateFormatter.setLenient(false); }
 
+  /**
+   * Стандартный потокобезопасный форматировщик дат.<br/>
+   * Преобразует строки в даты и даты в строки формата {@link JepRiaConstant#DEFAULT_DATE_FORMAT}, строго (как нелениентный SimpleDateFormat).
+   */
+  public static final DateTimeFormatter DEFAULT_DATE_TIME_FORMATTER = new DateTimeFormatterBuilder()
+      // numbers of any width, the same as SimpleDateFormat
+      .parseLenient()
+      .appendPattern(DEFAULT_DATE_FORMAT)
+      // the strict resolution of the year-of-era requires the era
+      .parseDefaulting(ChronoField.ERA, 1)
+      .toFormatter()
+      .withResolverStyle(ResolverStyle.STRICT);
+
+  /**
+   * Преобразует дату в строку формата {@link JepRiaConstant#DEFAULT_DATE_FORMAT} (в часовом поясе по умолчанию).
+   * @param date дата
+   * @return строка или {@code null}, если дата {@code null}
+   */
+  public static String formatDate(java.util.Date date) {
+    if (date == null) {
+      return null;
+    }
+    return DEFAULT_DATE_TIME_FORMATTER.format(date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+  }
+
+  /**
+   * Преобразует строку формата {@link JepRiaConstant#DEFAULT_DATE_FORMAT} в дату (начало дня в часовом поясе по умолчанию).
+   * @param s строка
+   * @return дата или {@code null}, если строка {@code null}
+   * @throws ParseException если строка не соответствует формату или не является корректной датой
+   */
+  public static java.util.Date parseDate(String s) throws ParseException {
+    if (s == null) {
+      return null;
+    }
+    try {
+      final LocalDate date = LocalDate.parse(s, DEFAULT_DATE_TIME_FORMATTER);
+      return java.util.Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    } catch (DateTimeParseException e) {
+      final ParseException parseException = new ParseException(e.getMessage(), e.getErrorIndex());
+      parseException.initCause(e);
+      throw parseException;
+    }
+  }
+
   /**
    * Карта соответствия mime-типов наиболее используемым расширениям файлов.
    */
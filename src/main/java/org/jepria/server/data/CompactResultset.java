@@ -0,0 +1,665 @@
+package org.jepria.server.data;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Компактное (поколоночное) представление результирующего списка записей одного Dto-класса.
+ * <br/>
+ * Значения каждого поля хранятся в отдельной колонке: целочисленные поля и даты &mdash; в массиве {@code long[]},
+ * поля с плавающей точкой &mdash; в массиве {@code double[]}, логические &mdash; в битовом наборе,
+ * строковые &mdash; кодами словаря уникальных значений; значения прочих типов хранятся как есть.
+ * Записи (экземпляры Dto) создаются только при обращении к элементу списка, поэтому, например, страница списка
+ * материализует только свои записи.
+ * <br/>
+ * Каждое обращение к элементу создаёт новый экземпляр Dto, поэтому:
+ * <ul>
+ *   <li>изменение полученной записи не изменяет список, для этого запись нужно записать в список методом {@link #set(int, Object)};</li>
+ *   <li>повторные обращения к одному и тому же элементу возвращают различные (не {@code ==}) экземпляры;</li>
+ *   <li>{@link #indexOf(Object)}, {@link #contains(Object)} и {@link #remove(Object)} находят запись, только если Dto-класс
+ *   переопределяет {@link Object#equals(Object)}.</li>
+ * </ul>
+ * Список предназначен для результирующих списков поиска, записи которых только читаются (страницами) и сортируются.
+ * <br/>
+ * Список не является потокобезопасным.
+ */
+public final class CompactResultset extends AbstractList<Object> implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Создаёт компактное представление списка записей
+   * @param records список записей
+   * @return компактный список или исходный список, если его записи не могут быть представлены компактно
+   * (список пуст, содержит {@code null} или записи разных классов, класс записей не имеет конструктора без параметров,
+   * содержит final поля или наследует поля суперкласса)
+   */
+  public static List<?> compact(List<?> records) {
+    if (records == null || records.isEmpty() || records instanceof CompactResultset) {
+      return records;
+    }
+
+    final Object first = records.get(0);
+    if (first == null) {
+      return records;
+    }
+    final Class<?> dtoClass = first.getClass();
+    for (Object record: records) {
+      if (record == null || record.getClass() != dtoClass) {
+        return records;
+      }
+    }
+
+    if (hasInheritedFields(dtoClass)) {
+      // DtoAccessor covers the fields declared in the class itself only: the inherited fields would be lost
+      return records;
+    }
+
+    final DtoAccessor accessor = DtoAccessor.forClass(dtoClass);
+    if (!accessor.isInstantiable()) {
+      return records;
+    }
+
+    final List<Integer> fieldIndexes = new ArrayList<>();
+    for (int i = 0; i < accessor.getFieldNames().size(); i++) {
+      if (accessor.isWritable(i)) {
+        fieldIndexes.add(i);
+      } else if (!isStatic(dtoClass, accessor.getFieldNames().get(i))) {
+        // final instance field cannot be restored
+        return records;
+      }
+    }
+
+    return new CompactResultset(records, accessor, fieldIndexes);
+  }
+
+  private static boolean hasInheritedFields(Class<?> dtoClass) {
+    for (Class<?> cls = dtoClass.getSuperclass(); cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+      for (Field field: cls.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isStatic(Class<?> dtoClass, String fieldName) {
+    try {
+      return Modifier.isStatic(dtoClass.getDeclaredField(fieldName).getModifiers());
+    } catch (NoSuchFieldException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private final Class<?> dtoClass;
+
+  private transient DtoAccessor accessor;
+
+  /**
+   * Индексы полей ({@link DtoAccessor#indexOf(String)}), соответствующих колонкам
+   */
+  private final int[] fieldIndexes;
+
+  private final Column[] columns;
+
+  private final int size;
+
+  private CompactResultset(List<?> records, DtoAccessor accessor, List<Integer> fieldIndexes) {
+    this.dtoClass = accessor.getDtoClass();
+    this.accessor = accessor;
+    this.size = records.size();
+    this.fieldIndexes = new int[fieldIndexes.size()];
+    this.columns = new Column[fieldIndexes.size()];
+
+    final Object[] recordArray = records.toArray();
+    final Object[] values = new Object[size];
+
+    for (int c = 0; c < columns.length; c++) {
+      final int fieldIndex = fieldIndexes.get(c);
+      this.fieldIndexes[c] = fieldIndex;
+
+      for (int row = 0; row < size; row++) {
+        values[row] = accessor.get(recordArray[row], fieldIndex);
+      }
+      columns[c] = createColumn(accessor.getFieldType(fieldIndex), values);
+    }
+  }
+
+  private CompactResultset(CompactResultset source) {
+    this.dtoClass = source.dtoClass;
+    this.accessor = source.accessor;
+    this.size = source.size;
+    this.fieldIndexes = source.fieldIndexes;
+    this.columns = new Column[source.columns.length];
+    for (int c = 0; c < columns.length; c++) {
+      columns[c] = source.columns[c].copy();
+    }
+  }
+
+  /**
+   * Создаёт независимую копию списка (без материализации записей), например, для сортировки списка, используемого несколькими поисками
+   * @return non-null
+   */
+  public CompactResultset copy() {
+    return new CompactResultset(this);
+  }
+
+  private DtoAccessor accessor() {
+    if (accessor == null) {
+      // after deserialization
+      accessor = DtoAccessor.forClass(dtoClass);
+    }
+    return accessor;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return новый экземпляр Dto, содержащий значения полей записи
+   */
+  @Override
+  public Object get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    final DtoAccessor accessor = accessor();
+    final Object dto = accessor.newInstance();
+    for (int c = 0; c < columns.length; c++) {
+      accessor.set(dto, fieldIndexes[c], columns[c].get(index));
+    }
+    return dto;
+  }
+
+  /**
+   * Записывает значения полей записи в список
+   * @param element экземпляр того же Dto-класса, что и записи списка
+   * @return предыдущая запись
+   */
+  @Override
+  public Object set(int index, Object element) {
+    if (element == null || element.getClass() != dtoClass) {
+      throw new IllegalArgumentException("The element must be an instance of " + dtoClass.getName());
+    }
+
+    final Object previous = get(index);
+
+    final DtoAccessor accessor = accessor();
+    for (int c = 0; c < columns.length; c++) {
+      final Object value = accessor.get(element, fieldIndexes[c]);
+      if (!columns[c].accepts(value)) {
+        columns[c] = new ObjectColumn(columns[c], size);
+      }
+      columns[c].set(index, value);
+    }
+
+    return previous;
+  }
+
+  /**
+   * Переставляет записи списка без их материализации
+   * @param order перестановка: {@code order[i]} &mdash; индекс записи, которая должна занять позицию {@code i}
+   */
+  public void reorder(int[] order) {
+    if (order.length != size) {
+      throw new IllegalArgumentException("The order length " + order.length + " does not match the list size " + size);
+    }
+    for (Column column: columns) {
+      column.reorder(order);
+    }
+    modCount++;
+  }
+
+  private static Column createColumn(Class<?> type, Object[] values) {
+    final Column column;
+
+    if (type == String.class) {
+      column = new StringColumn(values.length);
+    } else if (type == Boolean.class || type == boolean.class) {
+      column = new BooleanColumn(values.length);
+    } else if (type == Double.class || type == double.class) {
+      column = new DoubleColumn(Double.class, values.length);
+    } else if (type == Float.class || type == float.class) {
+      column = new DoubleColumn(Float.class, values.length);
+    } else if (type == Integer.class || type == int.class) {
+      column = new LongColumn(LongKind.INTEGER, values.length);
+    } else if (type == Long.class || type == long.class) {
+      column = new LongColumn(LongKind.LONG, values.length);
+    } else if (type == Short.class || type == short.class) {
+      column = new LongColumn(LongKind.SHORT, values.length);
+    } else if (type == Byte.class || type == byte.class) {
+      column = new LongColumn(LongKind.BYTE, values.length);
+    } else if (type == Character.class || type == char.class) {
+      column = new LongColumn(LongKind.CHARACTER, values.length);
+    } else if (type == Date.class) {
+      column = new LongColumn(LongKind.DATE, values.length);
+    } else {
+      column = null;
+    }
+
+    if (column != null) {
+      boolean accepted = true;
+      for (int row = 0; row < values.length && accepted; row++) {
+        accepted = column.accepts(values[row]);
+      }
+      if (accepted) {
+        column.fill(values);
+        return column;
+      }
+      // e.g. java.sql.Timestamp in a java.util.Date field: cannot be restored from a long value
+    }
+
+    final ObjectColumn objectColumn = new ObjectColumn(values.length);
+    for (int row = 0; row < values.length; row++) {
+      objectColumn.set(row, values[row]);
+    }
+    return objectColumn;
+  }
+
+  /**
+   * Колонка значений одного поля
+   */
+  private interface Column extends Serializable {
+    /**
+     * @return {@code true} если значение может быть сохранено в колонке без потерь
+     */
+    boolean accepts(Object value);
+
+    Object get(int row);
+
+    void set(int row, Object value);
+
+    /**
+     * Заполняет колонку при создании списка
+     * @param values значения всех строк, принимаемые колонкой ({@link #accepts(Object)})
+     */
+    default void fill(Object[] values) {
+      for (int row = 0; row < values.length; row++) {
+        set(row, values[row]);
+      }
+    }
+
+    void reorder(int[] order);
+
+    /**
+     * @return независимая копия колонки
+     */
+    Column copy();
+  }
+
+  private static int[] reorder(int[] array, int[] order) {
+    final int[] result = new int[array.length];
+    for (int i = 0; i < order.length; i++) {
+      result[i] = array[order[i]];
+    }
+    return result;
+  }
+
+  private static BitSet reorder(BitSet bits, int[] order) {
+    final BitSet result = new BitSet(order.length);
+    for (int i = 0; i < order.length; i++) {
+      if (bits.get(order[i])) {
+        result.set(i);
+      }
+    }
+    return result;
+  }
+
+  private static class ObjectColumn implements Column {
+    private static final long serialVersionUID = 1L;
+
+    private Object[] values;
+
+    ObjectColumn(int size) {
+      values = new Object[size];
+    }
+
+    ObjectColumn(Column column, int size) {
+      this(size);
+      for (int row = 0; row < size; row++) {
+        values[row] = column.get(row);
+      }
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+      return true;
+    }
+
+    @Override
+    public Object get(int row) {
+      return values[row];
+    }
+
+    @Override
+    public void set(int row, Object value) {
+      values[row] = value;
+    }
+
+    @Override
+    public void reorder(int[] order) {
+      final Object[] result = new Object[values.length];
+      for (int i = 0; i < order.length; i++) {
+        result[i] = values[order[i]];
+      }
+      values = result;
+    }
+
+    @Override
+    public Column copy() {
+      final ObjectColumn copy = new ObjectColumn(0);
+      copy.values = values.clone();
+      return copy;
+    }
+  }
+
+  /**
+   * Строковая колонка: коды значений в словаре уникальных значений
+   */
+  private static class StringColumn implements Column {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@code -1} для {@code null}
+     */
+    private int[] codes;
+
+    private final List<String> dictionary = new ArrayList<>();
+
+    /**
+     * Коды значений словаря для {@link #set(int, Object)}: не хранится вместе со списком после его создания,
+     * а строится при первой замене записи списка
+     */
+    private transient Map<String, Integer> dictionaryCodes;
+
+    StringColumn(int size) {
+      codes = new int[size];
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+      return value == null || value instanceof String;
+    }
+
+    @Override
+    public Object get(int row) {
+      final int code = codes[row];
+      return code == -1 ? null : dictionary.get(code);
+    }
+
+    @Override
+    public void set(int row, Object value) {
+      if (value == null) {
+        codes[row] = -1;
+        return;
+      }
+
+      if (dictionaryCodes == null) {
+        // first replacement after the creation, copying or deserialization
+        dictionaryCodes = new HashMap<>();
+        for (int code = 0; code < dictionary.size(); code++) {
+          dictionaryCodes.put(dictionary.get(code), code);
+        }
+      }
+
+      Integer code = dictionaryCodes.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add((String) value);
+        dictionaryCodes.put((String) value, code);
+      }
+      codes[row] = code;
+    }
+
+    @Override
+    public void fill(Object[] values) {
+      final Map<String, Integer> dictionaryCodes = new HashMap<>();
+      for (int row = 0; row < values.length; row++) {
+        final String value = (String) values[row];
+        if (value == null) {
+          codes[row] = -1;
+        } else {
+          Integer code = dictionaryCodes.get(value);
+          if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            dictionaryCodes.put(value, code);
+          }
+          codes[row] = code;
+        }
+      }
+      // the local index is released: the search resultset is only read and sorted as a rule
+    }
+
+    @Override
+    public void reorder(int[] order) {
+      codes = CompactResultset.reorder(codes, order);
+    }
+
+    @Override
+    public Column copy() {
+      final StringColumn copy = new StringColumn(0);
+      copy.codes = codes.clone();
+      copy.dictionary.addAll(dictionary);
+      return copy;
+    }
+  }
+
+  private static class BooleanColumn implements Column {
+    private static final long serialVersionUID = 1L;
+
+    private BitSet values;
+
+    private BitSet nulls;
+
+    BooleanColumn(int size) {
+      values = new BitSet(size);
+      nulls = new BitSet(size);
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+      return value == null || value instanceof Boolean;
+    }
+
+    @Override
+    public Object get(int row) {
+      return nulls.get(row) ? null : values.get(row);
+    }
+
+    @Override
+    public void set(int row, Object value) {
+      nulls.set(row, value == null);
+      values.set(row, Boolean.TRUE.equals(value));
+    }
+
+    @Override
+    public void reorder(int[] order) {
+      values = CompactResultset.reorder(values, order);
+      nulls = CompactResultset.reorder(nulls, order);
+    }
+
+    @Override
+    public Column copy() {
+      final BooleanColumn copy = new BooleanColumn(0);
+      copy.values = (BitSet) values.clone();
+      copy.nulls = (BitSet) nulls.clone();
+      return copy;
+    }
+  }
+
+  private static class DoubleColumn implements Column {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@link Double} или {@link Float}
+     */
+    private final Class<?> valueClass;
+
+    private double[] values;
+
+    private BitSet nulls;
+
+    DoubleColumn(Class<?> valueClass, int size) {
+      this.valueClass = valueClass;
+      values = new double[size];
+      nulls = new BitSet(size);
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+      return value == null || value.getClass() == valueClass;
+    }
+
+    @Override
+    public Object get(int row) {
+      if (nulls.get(row)) {
+        return null;
+      }
+      return valueClass == Float.class ? (Object) (float) values[row] : (Object) values[row];
+    }
+
+    @Override
+    public void set(int row, Object value) {
+      nulls.set(row, value == null);
+      values[row] = value == null ? 0 : ((Number) value).doubleValue();
+    }
+
+    @Override
+    public void reorder(int[] order) {
+      final double[] result = new double[values.length];
+      for (int i = 0; i < order.length; i++) {
+        result[i] = values[order[i]];
+      }
+      values = result;
+      nulls = CompactResultset.reorder(nulls, order);
+    }
+
+    @Override
+    public Column copy() {
+      final DoubleColumn copy = new DoubleColumn(valueClass, 0);
+      copy.values = values.clone();
+      copy.nulls = (BitSet) nulls.clone();
+      return copy;
+    }
+  }
+
+  /**
+   * Типы значений, представимых без потерь значением {@code long}
+   */
+  private enum LongKind {
+    INTEGER(Integer.class) {
+      @Override
+      Object fromLong(long value) {
+        return (int) value;
+      }
+    },
+    LONG(Long.class) {
+      @Override
+      Object fromLong(long value) {
+        return value;
+      }
+    },
+    SHORT(Short.class) {
+      @Override
+      Object fromLong(long value) {
+        return (short) value;
+      }
+    },
+    BYTE(Byte.class) {
+      @Override
+      Object fromLong(long value) {
+        return (byte) value;
+      }
+    },
+    CHARACTER(Character.class) {
+      @Override
+      long toLong(Object value) {
+        return (Character) value;
+      }
+      @Override
+      Object fromLong(long value) {
+        return (char) value;
+      }
+    },
+    DATE(Date.class) {
+      @Override
+      long toLong(Object value) {
+        return ((Date) value).getTime();
+      }
+      @Override
+      Object fromLong(long value) {
+        return new Date(value);
+      }
+    };
+
+    final Class<?> valueClass;
+
+    LongKind(Class<?> valueClass) {
+      this.valueClass = valueClass;
+    }
+
+    long toLong(Object value) {
+      return ((Number) value).longValue();
+    }
+
+    abstract Object fromLong(long value);
+  }
+
+  private static class LongColumn implements Column {
+    private static final long serialVersionUID = 1L;
+
+    private final LongKind kind;
+
+    private long[] values;
+
+    private BitSet nulls;
+
+    LongColumn(LongKind kind, int size) {
+      this.kind = kind;
+      values = new long[size];
+      nulls = new BitSet(size);
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+      // exact class: a subclass (e.g. java.sql.Timestamp) cannot be restored from a long value
+      return value == null || value.getClass() == kind.valueClass;
+    }
+
+    @Override
+    public Object get(int row) {
+      return nulls.get(row) ? null : kind.fromLong(values[row]);
+    }
+
+    @Override
+    public void set(int row, Object value) {
+      nulls.set(row, value == null);
+      values[row] = value == null ? 0 : kind.toLong(value);
+    }
+
+    @Override
+    public void reorder(int[] order) {
+      final long[] result = new long[values.length];
+      for (int i = 0; i < order.length; i++) {
+        result[i] = values[order[i]];
+      }
+      values = result;
+      nulls = CompactResultset.reorder(nulls, order);
+    }
+
+    @Override
+    public Column copy() {
+      final LongColumn copy = new LongColumn(kind, 0);
+      copy.values = values.clone();
+      copy.nulls = (BitSet) nulls.clone();
+      return copy;
+    }
+  }
+}
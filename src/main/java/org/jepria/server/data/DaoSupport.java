@@ -5,6 +5,7 @@ import org.jepria.compat.server.dao.ResultSetMapper;
 import java.io.*;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface DaoSupport {
 
@@ -15,6 +16,20 @@ public interface DaoSupport {
     return new DaoSupportOracle();
   }
 
+  /**
+   * Возвращает экземпляр, выполняющий запросы {@link #find}, {@link #select} с заданным размером выборки
+   * (числом строк, получаемых за одно обращение к базе) вместо подбираемого автоматически.
+   * Например, размер выборки может быть задан по максимальному числу строк результата:
+   * <pre>
+   * DaoSupport.getInstance().withFetchSize(maxRowCount).find(sqlQuery, mapper, Dto.class, maxRowCount);
+   * </pre>
+   * @param fetchSize размер выборки
+   * @return экземпляр с заданным размером выборки (реализация по умолчанию размер выборки не учитывает и возвращает {@code this})
+   */
+  default DaoSupport withFetchSize(int fetchSize) {
+    return this;
+  }
+
   /**
    *
    * @param query
@@ -36,6 +51,69 @@ public interface DaoSupport {
    */
   void execute(String query, Object... params);
 
+  /**
+   * Пакетное выполнение sql-выражения без возвращаемого значения для каждого набора параметров (JDBC batch),
+   * размер пакета задаётся системным свойством {@link org.jepria.compat.server.dao.DaoSupport#BATCH_SIZE_PROPERTY}.
+   * <br/>
+   * Реализация по умолчанию выполняет sql-выражение для каждого набора параметров отдельно.
+   *
+   * @param query запрос без выходных параметров
+   * @param paramsList наборы параметров
+   * @throws org.jepria.server.data.RuntimeSQLException в случае {@link java.sql.SQLException}
+   * @throws java.lang.RuntimeException в случае любого другого исключения
+   * @return число изменённых строк для каждого набора параметров либо {@link java.sql.Statement#SUCCESS_NO_INFO}
+   */
+  default int[] executeBatch(String query, List<Object[]> paramsList) {
+    return executeBatch(query, paramsList, Integer.getInteger(
+        org.jepria.compat.server.dao.DaoSupport.BATCH_SIZE_PROPERTY, org.jepria.compat.server.dao.DaoSupport.DEFAULT_BATCH_SIZE));
+  }
+
+  /**
+   * Пакетное выполнение sql-выражения без возвращаемого значения для каждого набора параметров (JDBC batch)
+   * <br/>
+   * Пакетное выполнение сокращает число обращений к базе для sql-запросов (insert, update, delete);
+   * для PL/SQL-процедур эффективнее передавать массив значений одним параметром (см. {@link #createArray(String, Object[])}).
+   * <br/>
+   * Реализация по умолчанию выполняет sql-выражение для каждого набора параметров отдельно.
+   *
+   * @param query запрос без выходных параметров
+   * @param paramsList наборы параметров
+   * @param batchSize число наборов параметров, отправляемых в базу за одно обращение
+   * @throws org.jepria.server.data.RuntimeSQLException в случае {@link java.sql.SQLException}
+   * @throws java.lang.RuntimeException в случае любого другого исключения
+   * @return число изменённых строк для каждого набора параметров либо {@link java.sql.Statement#SUCCESS_NO_INFO}
+   */
+  default int[] executeBatch(String query, List<Object[]> paramsList, int batchSize) {
+    final int[] result = new int[paramsList.size()];
+    for (int i = 0; i < result.length; i++) {
+      execute(query, paramsList.get(i));
+      result[i] = java.sql.Statement.SUCCESS_NO_INFO;
+    }
+    return result;
+  }
+
+  /**
+   * Создание значения SQL-коллекции (VARRAY или вложенной таблицы) для передачи массива значений
+   * в sql-выражение одним параметром, например:
+   * <pre>
+   * daoSupport.execute("begin pkg_Example.createRecords(recordNames => ?, operatorId => ?); end;",
+   *     daoSupport.createArray("STR_TABLE_TYPE", recordNames), operatorId);
+   * </pre>
+   *
+   * <br/>
+   * Коллекция создаётся через соединение, поэтому реализация по умолчанию (не имеющая соединения) её не поддерживает;
+   * реализации, работающие с соединением, переопределяют метод (см. {@link DaoSupportOracle#createArray}).
+   *
+   * @param typeName имя SQL-типа коллекции
+   * @param elements элементы коллекции
+   * @throws org.jepria.server.data.RuntimeSQLException в случае {@link java.sql.SQLException}
+   * @throws java.lang.UnsupportedOperationException если реализация не поддерживает SQL-коллекции
+   * @return значение коллекции
+   */
+  default java.sql.Array createArray(String typeName, Object[] elements) {
+    throw new UnsupportedOperationException("SQL collections are not supported by " + getClass().getName());
+  }
+
   /**
    *
    * @param query
@@ -49,6 +127,28 @@ public interface DaoSupport {
    */
   <T> List<T> find(String query, ResultSetMapper<? super T> mapper, Class<? super T> recordClass, Object... params);
 
+  /**
+   * Потоковый вариант {@link #find(String, ResultSetMapper, Class, Object...)}: записи передаются обработчику
+   * по мере их чтения из курсора, не накапливаясь в памяти (в памяти находится лишь выборка строк, см. {@link #withFetchSize(int)}).
+   * <br/>
+   * Обработчик вызывается в рамках текущей транзакции, пока курсор открыт, поэтому записи могут, например,
+   * сразу выводиться в ответ (выгрузка в Excel, NDJSON).
+   * <br/>
+   * Реализация по умолчанию загружает список записей целиком и передаёт записи обработчику после этого.
+   *
+   * @param query
+   * @param mapper
+   * @param recordClass
+   * @param consumer обработчик записей, вызываемый для каждой записи в порядке их чтения
+   * @param params
+   * @param <T>
+   * @throws org.jepria.server.data.RuntimeSQLException в случае {@link java.sql.SQLException}
+   * @throws java.lang.RuntimeException в случае любого другого исключения (исключение обработчика выбрасывается как есть)
+   */
+  default <T> void findEach(String query, ResultSetMapper<? super T> mapper, Class<? super T> recordClass, Consumer<? super T> consumer, Object... params) {
+    this.<T>find(query, mapper, recordClass, params).forEach(consumer);
+  }
+
   /**
    *
    * @param query
@@ -74,6 +174,23 @@ public interface DaoSupport {
    */
   <T> List<T> select(String query, ResultSetMapper<? super T> mapper, Class<? super T> modelClass, Object... params);
 
+  /**
+   * Потоковый вариант {@link #select(String, ResultSetMapper, Class, Object...)},
+   * см. {@link #findEach(String, ResultSetMapper, Class, Consumer, Object...)}
+   *
+   * @param query
+   * @param mapper
+   * @param modelClass
+   * @param consumer обработчик записей, вызываемый для каждой записи в порядке их чтения
+   * @param params
+   * @param <T>
+   * @throws org.jepria.server.data.RuntimeSQLException в случае {@link java.sql.SQLException}
+   * @throws java.lang.RuntimeException в случае любого другого исключения (исключение обработчика выбрасывается как есть)
+   */
+  default <T> void selectEach(String query, ResultSetMapper<? super T> mapper, Class<? super T> modelClass, Consumer<? super T> consumer, Object... params) {
+    this.<T>select(query, mapper, modelClass, params).forEach(consumer);
+  }
+
   /**
    *
    * @param query
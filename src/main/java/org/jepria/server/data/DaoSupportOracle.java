@@ -1,5 +1,6 @@
 package org.jepria.server.data;
 
+import org.jepria.compat.server.dao.CallContext;
 import org.jepria.compat.server.dao.ResultSetMapper;
 import org.jepria.compat.server.download.blob.BinaryFileDownloadImpl;
 import org.jepria.compat.server.download.blob.FileDownloadStream;
@@ -15,8 +16,31 @@ import java.io.*;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class DaoSupportOracle implements DaoSupport {
+
+  /**
+   * Размер выборки для {@link #find}, {@link #select} или {@code null}, если он подбирается автоматически
+   */
+  protected final Integer fetchSize;
+
+  public DaoSupportOracle() {
+    this(null);
+  }
+
+  /**
+   * @param fetchSize размер выборки для {@link #find}, {@link #select} или {@code null}, если он подбирается автоматически
+   */
+  public DaoSupportOracle(Integer fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  @Override
+  public DaoSupport withFetchSize(int fetchSize) {
+    return new DaoSupportOracle(fetchSize);
+  }
+
   @Override
   public <T> T create(String query, Class<? super T> resultTypeClass, Object... params) {
     // TODO this is backward compat, independent implementation required
@@ -48,6 +72,10 @@ public class DaoSupportOracle implements DaoSupport {
   @Override
   public <T> List<T> find(String query, ResultSetMapper<? super T> mapper, Class<? super T> dtoClass, Object... params) {
     // TODO this is backward compat, independent implementation required
+    final Integer contextFetchSize = CallContext.getFetchSize();
+    if (fetchSize != null) {
+      CallContext.setFetchSize(fetchSize);
+    }
     try {
       return org.jepria.compat.server.dao.DaoSupport.find(query, mapper, dtoClass, params);
     } catch (ApplicationException e) {
@@ -56,6 +84,49 @@ public class DaoSupportOracle implements DaoSupport {
       } else {
         throw new RuntimeException(e);
       }
+    } finally {
+      CallContext.setFetchSize(contextFetchSize);
+    }
+  }
+
+  @Override
+  public int[] executeBatch(String query, List<Object[]> paramsList, int batchSize) {
+    try {
+      return org.jepria.compat.server.dao.DaoSupport.executeBatch(query, paramsList, batchSize);
+    } catch (ApplicationException e) {
+      if (e.getCause() instanceof SQLException) {
+        throw new RuntimeSQLException((SQLException) e.getCause());
+      } else {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Создаёт коллекцию через соединение текущего вызова
+   * ({@link java.sql.Connection#createArrayOf}, для драйвера Oracle &mdash; его собственным методом, см. {@link org.jepria.compat.server.db.Db#createArray}).
+   */
+  @Override
+  public java.sql.Array createArray(String typeName, Object[] elements) {
+    try {
+      return CallContext.getDb().createArray(typeName, elements);
+    } catch (SQLException e) {
+      throw new RuntimeSQLException(e);
+    }
+  }
+
+  @Override
+  public <T> void findEach(String query, ResultSetMapper<? super T> mapper, Class<? super T> dtoClass, Consumer<? super T> consumer, Object... params) {
+    final Integer contextFetchSize = CallContext.getFetchSize();
+    if (fetchSize != null) {
+      CallContext.setFetchSize(fetchSize);
+    }
+    try {
+      org.jepria.compat.server.dao.DaoSupport.findEach(query, mapper, dtoClass, consumer, params);
+    } catch (ApplicationException e) {
+      throw unwrap(e);
+    } finally {
+      CallContext.setFetchSize(contextFetchSize);
     }
   }
 
@@ -76,6 +147,10 @@ public class DaoSupportOracle implements DaoSupport {
   @Override
   public <T> List<T> select(String query, ResultSetMapper<? super T> mapper, Class<? super T> dtoClass, Object... params) {
     // TODO this is backward compat, independent implementation required
+    final Integer contextFetchSize = CallContext.getFetchSize();
+    if (fetchSize != null) {
+      CallContext.setFetchSize(fetchSize);
+    }
     try {
       return org.jepria.compat.server.dao.DaoSupport.select(query, mapper, dtoClass, params);
     } catch (ApplicationException e) {
@@ -84,6 +159,36 @@ public class DaoSupportOracle implements DaoSupport {
       } else {
         throw new RuntimeException(e);
       }
+    } finally {
+      CallContext.setFetchSize(contextFetchSize);
+    }
+  }
+
+  @Override
+  public <T> void selectEach(String query, ResultSetMapper<? super T> mapper, Class<? super T> dtoClass, Consumer<? super T> consumer, Object... params) {
+    final Integer contextFetchSize = CallContext.getFetchSize();
+    if (fetchSize != null) {
+      CallContext.setFetchSize(fetchSize);
+    }
+    try {
+      org.jepria.compat.server.dao.DaoSupport.selectEach(query, mapper, dtoClass, consumer, params);
+    } catch (ApplicationException e) {
+      throw unwrap(e);
+    } finally {
+      CallContext.setFetchSize(contextFetchSize);
+    }
+  }
+
+  /**
+   * @return исключение для выбрасывания из потоковых методов: исключение обработчика записей выбрасывается как есть
+   */
+  private static RuntimeException unwrap(ApplicationException e) {
+    if (e.getCause() instanceof SQLException) {
+      return new RuntimeSQLException((SQLException) e.getCause());
+    } else if (e.getCause() instanceof RuntimeException) {
+      return (RuntimeException) e.getCause();
+    } else {
+      return new RuntimeException(e);
     }
   }
 
@@ -0,0 +1,249 @@
+package org.jepria.server.data;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Прекомпилированный доступ к полям Dto-класса.
+ * <br/>
+ * Набор полей класса и методы чтения их значений вычисляются однократно для каждого класса и кешируются,
+ * поэтому чтение значения поля не требует ни обхода {@link Class#getDeclaredFields()}, ни создания промежуточного Map.
+ * <br/>
+ * Набор полей совпадает с набором, используемым {@link DtoUtil#dtoToMap(Object)}: все поля, объявленные в самом классе.
+ * <br/>
+ * Экземпляры неизменяемы и потокобезопасны.
+ */
+public final class DtoAccessor {
+
+  private static final ClassValue<DtoAccessor> accessors = new ClassValue<DtoAccessor>() {
+    @Override
+    protected DtoAccessor computeValue(Class<?> type) {
+      return new DtoAccessor(type);
+    }
+  };
+
+  /**
+   * @param dtoClass non-null
+   * @return закешированный экземпляр для данного класса, non-null
+   */
+  public static DtoAccessor forClass(Class<?> dtoClass) {
+    return accessors.get(dtoClass);
+  }
+
+  private final Class<?> dtoClass;
+
+  /**
+   * unmodifiable, в порядке {@link Class#getDeclaredFields()}
+   */
+  private final List<String> fieldNames;
+
+  private final Map<String, Integer> fieldIndexes;
+
+  /**
+   * Методы чтения полей с единообразной сигнатурой {@code (Object)Object}
+   */
+  private final MethodHandle[] getters;
+
+  /**
+   * Методы записи полей с единообразной сигнатурой {@code (Object,Object)void},
+   * элемент {@code null} для статических и final полей
+   */
+  private final MethodHandle[] setters;
+
+  private final Class<?>[] fieldTypes;
+
+  /**
+   * Конструктор без параметров с сигнатурой {@code ()Object}, {@code null} если класс не может быть создан таким конструктором
+   */
+  private final MethodHandle constructor;
+
+  private DtoAccessor(Class<?> dtoClass) {
+    this.dtoClass = dtoClass;
+
+    final Field[] fields = dtoClass.getDeclaredFields();
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    final MethodType getterType = MethodType.methodType(Object.class, Object.class);
+    final MethodType setterType = MethodType.methodType(void.class, Object.class, Object.class);
+
+    final List<String> fieldNames = new ArrayList<>(fields.length);
+    final Map<String, Integer> fieldIndexes = new HashMap<>();
+    final MethodHandle[] getters = new MethodHandle[fields.length];
+    final MethodHandle[] setters = new MethodHandle[fields.length];
+    final Class<?>[] fieldTypes = new Class<?>[fields.length];
+
+    for (int i = 0; i < fields.length; i++) {
+      final Field field = fields[i];
+      if (!field.isAccessible()) {
+        field.setAccessible(true);
+      }
+
+      MethodHandle getter;
+      try {
+        getter = lookup.unreflectGetter(field);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+      if (Modifier.isStatic(field.getModifiers())) {
+        // static getter has no receiver, align it with the instance getters signature
+        getter = MethodHandles.dropArguments(getter, 0, Object.class);
+      }
+      getters[i] = getter.asType(getterType);
+
+      if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+        try {
+          setters[i] = lookup.unreflectSetter(field).asType(setterType);
+        } catch (IllegalAccessException e) {
+          // the field is read-only through the accessor
+        }
+      }
+      fieldTypes[i] = field.getType();
+
+      fieldNames.add(field.getName());
+      fieldIndexes.put(field.getName(), i);
+    }
+
+    this.fieldNames = Collections.unmodifiableList(fieldNames);
+    this.fieldIndexes = fieldIndexes;
+    this.getters = getters;
+    this.setters = setters;
+    this.fieldTypes = fieldTypes;
+
+    MethodHandle constructor = null;
+    if (!Modifier.isAbstract(dtoClass.getModifiers()) && !dtoClass.isInterface()
+        && (dtoClass.getEnclosingClass() == null || Modifier.isStatic(dtoClass.getModifiers()))) {
+      try {
+        final Constructor<?> noArgConstructor = dtoClass.getDeclaredConstructor();
+        if (!noArgConstructor.isAccessible()) {
+          noArgConstructor.setAccessible(true);
+        }
+        constructor = lookup.unreflectConstructor(noArgConstructor).asType(MethodType.methodType(Object.class));
+      } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+        // the class cannot be instantiated through the accessor
+      }
+    }
+    this.constructor = constructor;
+  }
+
+  public Class<?> getDtoClass() {
+    return dtoClass;
+  }
+
+  /**
+   * @return unmodifiable, в порядке {@link Class#getDeclaredFields()}: этот порядок не специфицирован
+   * (как правило, но не обязательно, совпадает с порядком объявления полей), однако неизменен для класса,
+   * поскольку экземпляр кешируется
+   */
+  public List<String> getFieldNames() {
+    return fieldNames;
+  }
+
+  /**
+   * @param fieldName
+   * @return индекс поля для использования в {@link #get(Object, int)} или {@code -1}, если класс не содержит такого поля
+   */
+  public int indexOf(String fieldName) {
+    Integer index = fieldIndexes.get(fieldName);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @param index индекс поля, см. {@link #indexOf(String)}
+   * @return объявленный тип поля
+   */
+  public Class<?> getFieldType(int index) {
+    return fieldTypes[index];
+  }
+
+  /**
+   * @param index индекс поля, см. {@link #indexOf(String)}
+   * @return {@code true} если поле может быть записано методом {@link #set(Object, int, Object)} (не статическое и не final)
+   */
+  public boolean isWritable(int index) {
+    return setters[index] != null;
+  }
+
+  /**
+   * @return {@code true} если экземпляры класса могут быть созданы методом {@link #newInstance()}
+   */
+  public boolean isInstantiable() {
+    return constructor != null;
+  }
+
+  /**
+   * @return новый экземпляр класса {@link #getDtoClass()}, созданный конструктором без параметров
+   * @throws IllegalStateException если {@code !}{@link #isInstantiable()}
+   */
+  public Object newInstance() {
+    if (constructor == null) {
+      throw new IllegalStateException("The class " + dtoClass.getName() + " cannot be instantiated with a no-arg constructor");
+    }
+    try {
+      return (Object) constructor.invokeExact();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param dto экземпляр класса {@link #getDtoClass()}, non-null
+   * @param index индекс поля, см. {@link #indexOf(String)}, поле должно быть {@link #isWritable(int)}
+   * @param value значение поля
+   */
+  public void set(Object dto, int index, Object value) {
+    final MethodHandle setter = setters[index];
+    if (setter == null) {
+      throw new IllegalStateException("The field " + dtoClass.getName() + "." + fieldNames.get(index) + " is not writable");
+    }
+    try {
+      setter.invokeExact(dto, value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param dto экземпляр класса {@link #getDtoClass()}, non-null
+   * @param index индекс поля, см. {@link #indexOf(String)}
+   * @return значение поля
+   */
+  public Object get(Object dto, int index) {
+    try {
+      return (Object) getters[index].invokeExact(dto);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param dto экземпляр класса {@link #getDtoClass()}, non-null
+   * @param fieldName
+   * @return значение поля или {@code null}, если класс не содержит такого поля (аналогично {@code dtoToMap(dto).get(fieldName)})
+   */
+  public Object get(Object dto, String fieldName) {
+    final int index = indexOf(fieldName);
+    return index == -1 ? null : get(dto, index);
+  }
+
+  /**
+   * @param dto экземпляр класса {@link #getDtoClass()}, non-null
+   * @return modifiable map
+   */
+  public Map<String, Object> toMap(Object dto) {
+    final Map<String, Object> fieldsMap = new HashMap<>();
+    for (int i = 0; i < getters.length; i++) {
+      fieldsMap.put(fieldNames.get(i), get(dto, i));
+    }
+    return fieldsMap;
+  }
+}
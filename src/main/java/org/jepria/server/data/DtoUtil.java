@@ -3,9 +3,7 @@ package org.jepria.server.data;
 import org.jepria.server.service.rest.gson.JsonBindingProvider;
 
 import javax.json.bind.Jsonb;
-import java.lang.reflect.Field;
 import java.lang.reflect.Type;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,20 +26,7 @@ public final class DtoUtil {
     if (dto == null) {
       return null;
     }
-    Map<String, Object> fieldsMap = new HashMap<>();
-    Field[] allFields = dto.getClass().getDeclaredFields();
-    for (Field field : allFields) {
-      if (!field.isAccessible()) {
-        field.setAccessible(true);
-      }
-      try {
-        Object value = field.get(dto);
-        fieldsMap.put(field.getName(), value);
-      } catch (IllegalAccessException e) {
-        throw new IllegalStateException(e);
-      }
-    }
-    return fieldsMap;
+    return DtoAccessor.forClass(dto.getClass()).toMap(dto);
   }
   
   
@@ -0,0 +1,57 @@
+package org.jepria.server.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Интерфейс Dao, осуществляющего постраничный поиск записей на стороне БД.
+ * <br/>
+ * Поисковые сервисы запрашивают у такого Dao только число найденных записей и записи запрошенной страницы
+ * (уже отсортированные в БД), не загружая в память и не сохраняя в сессию весь результирующий список,
+ * если число найденных записей превышает {@link RecordDefinition#getPagedSearchThreshold()}.
+ * Списки меньшего размера по-прежнему загружаются целиком через {@link Dao#find(Object, Integer)} и кешируются в сессии.
+ * Поэтому перед загрузкой списка поиск выполняет дополнительный запрос {@link #count} (однократно), если только
+ * поисковый шаблон не ограничивает число записей полем {@code maxRowCount} не более порога.
+ * <br/>
+ * Для поддержки постраничного поиска прикладной интерфейс Dao должен расширять данный интерфейс
+ * (наряду с {@link Dao}), так чтобы его реализовывал и транзакционный прокси Dao.
+ */
+public interface PagedDao {
+
+  /**
+   * Имя системного свойства, определяющего минимальное число найденных записей, начиная с которого поиск осуществляется постранично
+   */
+  String PAGED_SEARCH_THRESHOLD_PROPERTY = "org.jepria.server.data.PagedDao.pagedSearchThreshold";
+
+  int DEFAULT_PAGED_SEARCH_THRESHOLD = 10000;
+
+  /**
+   * @return значение системного свойства {@link #PAGED_SEARCH_THRESHOLD_PROPERTY} или {@link #DEFAULT_PAGED_SEARCH_THRESHOLD}
+   */
+  static int getDefaultPagedSearchThreshold() {
+    return Integer.getInteger(PAGED_SEARCH_THRESHOLD_PROPERTY, DEFAULT_PAGED_SEARCH_THRESHOLD);
+  }
+
+  /**
+   * Поиск записей, составляющих окно (страницу) отсортированного результирующего списка
+   *
+   * @param template поисковый шаблон (объект прикладного класса SearchDto)
+   * @param listSortConfig <b>упорядоченный</b> map, ключ: имя поля, значение: порядок сортировки
+   * (неотрицательное: по возрастанию, отрицательное: по убыванию), может быть {@code null};
+   * для однозначности разбиения на страницы реализация должна досортировывать записи по первичному ключу
+   * @param offset число пропускаемых записей от начала отсортированного списка, неотрицательное
+   * @param limit максимальное число возвращаемых записей, положительное
+   * @param operatorId идентификатор пользователя
+   * @return записи окна (список объектов прикладного класса Dto), в порядке сортировки
+   */
+  List<?> find(Object template, Map<String, Integer> listSortConfig, int offset, int limit, Integer operatorId);
+
+  /**
+   * Подсчёт записей, найденных по поисковому шаблону
+   *
+   * @param template поисковый шаблон (объект прикладного класса SearchDto)
+   * @param operatorId идентификатор пользователя
+   * @return число записей, которое вернул бы {@link Dao#find(Object, Integer)}
+   */
+  int count(Object template, Integer operatorId);
+}
@@ -2,14 +2,15 @@ package org.jepria.server.data;
 
 import org.jepria.compat.shared.AppCompat;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 /**
- * Класс для сравнения записей, представленных в виде Map, для сортировки списка
+ * Класс для сравнения записей (Dto-объектов) для сортировки списка.
+ * <br/>
+ * Значения полей записей читаются через {@link DtoAccessor}, без преобразования записей в Map при каждом сравнении.
  */
 public class RecordComparator implements Comparator<Object> {
 
@@ -30,53 +31,577 @@ public class RecordComparator implements Comparator<Object> {
     this.fieldNames = fieldNames;
     this.fieldComparatorSupplier = fieldComparatorSupplier;
     this.sortOrderSupplier = sortOrderSupplier;
+
+    // компараторы и направления сортировки полей определяются однократно, а не при каждом сравнении
+    final int fieldCount = fieldNames == null ? 0 : fieldNames.size();
+    fieldComparators = new ArrayList<>(fieldCount);
+    fieldSortOrders = new int[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      final String fieldName = fieldNames.get(i);
+
+      Comparator<Object> fieldComparator = null;
+      if (fieldComparatorSupplier != null) {
+        fieldComparator = fieldComparatorSupplier.apply(fieldName);
+      }
+      if (fieldComparator == null) {
+        fieldComparator = getDefaultFieldComparator();
+      }
+      fieldComparators.add(fieldComparator);
+
+      int sortOrder = 1;// default order is natural
+      if (sortOrderSupplier != null) {
+        Integer sortOrder0 = sortOrderSupplier.apply(fieldName);
+        if (sortOrder0 != null) {
+          sortOrder = sortOrder0;
+        }
+      }
+      fieldSortOrders[i] = sortOrder;
+    }
+    fieldNameSet = fieldNames == null ? Collections.emptySet() : new HashSet<>(fieldNames);
   }
 
   public RecordComparator(List<String> fieldNames) {
     this(fieldNames, null, null);
   }
 
+  /**
+   * Компараторы полей из {@link #fieldNames}, в том же порядке
+   */
+  private final List<Comparator<Object>> fieldComparators;
+
+  /**
+   * Направления сортировки полей из {@link #fieldNames}, в том же порядке
+   */
+  private final int[] fieldSortOrders;
+
+  private final Set<String> fieldNameSet;
+
+  /**
+   * Индексы полей для последнего встреченного класса записей (как правило, все записи списка имеют один и тот же класс)
+   */
+  private volatile FieldIndexes fieldIndexes;
+
+  /**
+   * Индексы полей Dto-класса в терминах {@link DtoAccessor}
+   */
+  private static final class FieldIndexes {
+    final DtoAccessor accessor;
+    /**
+     * индексы полей из {@link #fieldNames}, в том же порядке; {@code -1} для полей, отсутствующих в классе
+     */
+    final int[] sortFieldIndexes;
+    /**
+     * индексы полей класса, не перечисленных в {@link #fieldNames}
+     */
+    final int[] remainFieldIndexes;
+
+    FieldIndexes(DtoAccessor accessor, int[] sortFieldIndexes, int[] remainFieldIndexes) {
+      this.accessor = accessor;
+      this.sortFieldIndexes = sortFieldIndexes;
+      this.remainFieldIndexes = remainFieldIndexes;
+    }
+  }
+
+  private FieldIndexes getFieldIndexes(DtoAccessor accessor) {
+    FieldIndexes fieldIndexes = this.fieldIndexes;
+    if (fieldIndexes == null || fieldIndexes.accessor != accessor) {
+      final int[] sortFieldIndexes = new int[fieldSortOrders.length];
+      for (int i = 0; i < sortFieldIndexes.length; i++) {
+        sortFieldIndexes[i] = accessor.indexOf(fieldNames.get(i));
+      }
+
+      final List<String> accessorFieldNames = accessor.getFieldNames();
+      final int[] remainFieldIndexes0 = new int[accessorFieldNames.size()];
+      int remainFieldCount = 0;
+      for (int i = 0; i < accessorFieldNames.size(); i++) {
+        if (!fieldNameSet.contains(accessorFieldNames.get(i))) {
+          remainFieldIndexes0[remainFieldCount++] = i;
+        }
+      }
+
+      fieldIndexes = new FieldIndexes(accessor, sortFieldIndexes, Arrays.copyOf(remainFieldIndexes0, remainFieldCount));
+      this.fieldIndexes = fieldIndexes;
+    }
+    return fieldIndexes;
+  }
+
   @Override
   public int compare(Object record1, Object record2) {
     // сравнение null-записей
     if (record1 == null || record2 == null) {
-      if (record1 == null && record2 == null) {
-        return onBothNull();
-      } else {
-        return record1 == null ? onFirstNull(record2) : onSecondNull(record1);
+      return compareNullRecords(record1, record2);
+    }
+
+    final DtoAccessor accessor1 = DtoAccessor.forClass(record1.getClass());
+    final DtoAccessor accessor2 = DtoAccessor.forClass(record2.getClass());
+
+    // значения полей сравниваются напрямую, без преобразования записей в Map
+    if (accessor1 == accessor2) {
+      final FieldIndexes fieldIndexes = getFieldIndexes(accessor1);
+      for (int i = 0; i < fieldSortOrders.length; i++) {
+        final int index = fieldIndexes.sortFieldIndexes[i];
+        // отсутствующее в классе поле сравнивается как null
+        final Object v1 = index == -1 ? null : accessor1.get(record1, index);
+        final Object v2 = index == -1 ? null : accessor1.get(record2, index);
+        final int cmpResult = compareValues(v1, v2, i);
+        if (cmpResult != 0) {
+          // return immediately on the first differing field
+          return cmpResult;
+        }
+      }
+    } else {
+      // записи различных классов: сравнение значений полей по именам
+      for (int i = 0; i < fieldSortOrders.length; i++) {
+        final String fieldName = fieldNames.get(i);
+        final int cmpResult = compareValues(accessor1.get(record1, fieldName), accessor2.get(record2, fieldName), i);
+        if (cmpResult != 0) {
+          // return immediately on the first differing field
+          return cmpResult;
+        }
       }
     }
 
+    return compareRemainFields(record1, accessor1, record2, accessor2);
+  }
+
+  /**
+   * Сравнение записей, хотя бы одна из которых null
+   */
+  private int compareNullRecords(Object record1, Object record2) {
+    if (record1 == null && record2 == null) {
+      return onBothNull();
+    } else {
+      return record1 == null ? onFirstNull(record2) : onSecondNull(record1);
+    }
+  }
+
+  /**
+   * Сравнение значений i-го поля из {@link #fieldNames} с учётом его компаратора и направления сортировки
+   */
+  protected final int compareValues(Object v1, Object v2, int i) {
+    if (fieldSortOrders[i] < 0) {
+      return fieldComparators.get(i).compare(v2, v1);
+    } else {
+      return fieldComparators.get(i).compare(v1, v2);
+    }
+  }
 
-    // TODO кешировать преобразованные в мар поля (прямо по одному), чтобы не дёргать рефлексию почём зря!
-    Map<String, ?> map1 = DtoUtil.dtoToMap(record1);
-    Map<String, ?> map2 = DtoUtil.dtoToMap(record2);
+  /**
+   * Уточняющее сравнение двух non-null записей по полям, не перечисленным в {@link #fieldNames}.
+   * <br/>
+   * Поля перебираются в порядке {@link DtoAccessor#getFieldNames()}, для записей различных классов &mdash;
+   * сначала поля первой записи, затем недостающие поля второй. Этот порядок не специфицирован (в частности,
+   * не обязательно совпадает с порядком объявления полей в классе), но неизменен для класса, поэтому результат сортировки
+   * не зависит от изначального порядка записей в списке.
+   * <br/>
+   * <i>Note: ранее (при сравнении записей, преобразованных в Map) порядок уточняющего сравнения определялся порядком ключей HashMap,
+   * поэтому порядок записей, равных по полям из {@link #fieldNames}, мог измениться по сравнению с прежними версиями.</i>
+   */
+  private int compareRemainFields(Object record1, DtoAccessor accessor1, Object record2, DtoAccessor accessor2) {
 
+    // Note:
+    // При сравнении записи будут считаться "условно" равными, если будут равны значения только тех полей, которые перечислены в списке явно сравниваемых.
+    // Однако в этом случае результат сортировки двух списков, состоящих из одних и тех же элементов (но различающиеся порядком элементов)
+    // по одним и тем же полям может различаться в зависимости от изначального порядка элементов в этих списках.
+    // Чтобы этого избежать, при "условном" равенстве записей (в последнюю очередь) нужно проводить уточняющую сортировку по остальным полям записи
+    // до тех пор, пока не будут найдены различные значения.
 
-    int cmpResult = compareByFields(map1, map2, fieldNames, fieldComparatorSupplier, sortOrderSupplier);
+    // строгое сравнение проводится дефолтным компаратором по возрастанию
+    final Comparator<Object> defaultComparator = getDefaultFieldComparator();
 
-    if (cmpResult != 0) {
-      return cmpResult;
+    if (accessor1 == accessor2) {
+      for (int index: getFieldIndexes(accessor1).remainFieldIndexes) {
+        final int cmpResult = defaultComparator.compare(accessor1.get(record1, index), accessor1.get(record2, index));
+        if (cmpResult != 0) {
+          return cmpResult;
+        }
+      }
 
     } else {
+      // объединение полей обеих записей, по которым не проводилось основное сравнение
+      final Set<String> remainFieldNames = new LinkedHashSet<>();
+      remainFieldNames.addAll(accessor1.getFieldNames());
+      remainFieldNames.addAll(accessor2.getFieldNames());
+      remainFieldNames.removeAll(fieldNameSet);
 
-      // Note:
-      // При сравнении записи будут считаться "условно" равными, если будут равны значения только тех полей, которые перечислены в списке явно сравниваемых.
-      // Однако в этом случае результат сортировки двух списков, состоящих из одних и тех же элементов (но различающиеся порядком элементов)
-      // по одним и тем же полям может различаться в зависимости от изначального порядка элементов в этих списках.
-      // Чтобы этого избежать, при "условном" равенстве записей (в последнюю очередь) нужно проводить уточняющую сортировку по остальным полям записи
-      // до тех пор, пока не будут найдены различные значения.
+      for (String fieldName: remainFieldNames) {
+        final int cmpResult = defaultComparator.compare(accessor1.get(record1, fieldName), accessor2.get(record2, fieldName));
+        if (cmpResult != 0) {
+          return cmpResult;
+        }
+      }
+    }
 
-      // объединение полей обеих записей, по которым не проводилось основное сравнение
-      List<String> remainFieldNames = new ArrayList<>();
-      remainFieldNames.addAll(map1.keySet());
-      remainFieldNames.addAll(map2.keySet());
-      if (fieldNames != null) {
-        remainFieldNames.removeAll(fieldNames);
+    return 0;
+  }
+
+  /**
+   * Имя системного свойства, определяющего минимальный размер списка для параллельной сортировки, см. {@link #getDefaultParallelSortThreshold()}
+   */
+  public static final String PARALLEL_SORT_THRESHOLD_PROPERTY = "org.jepria.server.data.RecordComparator.parallelSortThreshold";
+
+  public static final int DEFAULT_PARALLEL_SORT_THRESHOLD = 50000;
+
+  /**
+   * @return значение системного свойства {@link #PARALLEL_SORT_THRESHOLD_PROPERTY},
+   * либо {@link #DEFAULT_PARALLEL_SORT_THRESHOLD}, если свойство не задано. Неположительное значение отключает параллельную сортировку
+   */
+  public static int getDefaultParallelSortThreshold() {
+    return Integer.getInteger(PARALLEL_SORT_THRESHOLD_PROPERTY, DEFAULT_PARALLEL_SORT_THRESHOLD);
+  }
+
+  /**
+   * Сортирует список в соответствии с данным компаратором,
+   * параллельно в общем пуле {@link ForkJoinPool#commonPool()}, если размер списка не меньше {@link #getDefaultParallelSortThreshold()}.
+   * @param list modifiable list
+   * @see #sort(List, int, ForkJoinPool)
+   */
+  public void sort(List<?> list) {
+    sort(list, getDefaultParallelSortThreshold(), null);
+  }
+
+  /**
+   * Сортирует список в соответствии с данным компаратором.
+   * <br/>
+   * Результат идентичен {@code Collections.sort(list, this)}, однако значения полей сортировки извлекаются из каждой записи
+   * однократно (decorate-sort-undecorate): сначала в компактные массивы ключей (для целочисленных полей и дат &mdash; в массивы примитивов),
+   * затем сортируется массив индексов записей, после чего список переупорядочивается.
+   * Таким образом число извлечений значений полей составляет O(n) вместо O(n log n).
+   * <br/>
+   * Списки размером не меньше {@code parallelThreshold} сортируются параллельно (стабильной сортировкой {@link Arrays#parallelSort(Object[], Comparator)}).
+   * В этом случае компараторы полей должны допускать одновременное использование из нескольких потоков.
+   * <br/>
+   * Если подкласс переопределяет {@link #compare(Object, Object)}, список сортируется обычным образом.
+   *
+   * @param list modifiable list
+   * @param parallelThreshold минимальный размер списка для параллельной сортировки. Неположительное значение отключает параллельную сортировку
+   * @param pool пул для параллельной сортировки, {@code null} для {@link ForkJoinPool#commonPool()}
+   */
+  public void sort(List<?> list, int parallelThreshold, ForkJoinPool pool) {
+    sort(list, SortDelta.FULL, parallelThreshold, pool);
+  }
+
+  /**
+   * Пересортировывает список, уже частично упорядоченный в соответствии с планом {@code delta}.
+   * <br/>
+   * Если список нужно обратить ({@link SortDelta#isReverse()}), он обращается за O(n). Далее, если список отсортирован
+   * по первым {@link SortDelta#getSortedKeyCount()} полям из {@link #fieldNames}, досортировываются только группы
+   * подряд идущих записей с равными значениями этих полей. Упорядоченность списка по этим полям проверяется,
+   * и в случае нарушения список сортируется полностью.
+   * <br/>
+   * Результат идентичен {@code Collections.sort(list, this)}, см. {@link #sort(List, int, ForkJoinPool)},
+   * с точностью до взаимного порядка записей, равных по всем полям: при обращении списка их порядок также обращается.
+   *
+   * @param list modifiable list
+   * @param delta план пересортировки, non-null
+   * @param parallelThreshold минимальный размер списка для параллельной сортировки. Неположительное значение отключает параллельную сортировку
+   * @param pool пул для параллельной сортировки, {@code null} для {@link ForkJoinPool#commonPool()}
+   */
+  public void sort(List<?> list, SortDelta delta, int parallelThreshold, ForkJoinPool pool) {
+    if (delta.isNone() || list.size() < 2) {
+      return;
+    }
+
+    if (isCompareOverridden()) {
+      Collections.sort(list, this);
+      return;
+    }
+
+    final Object[] records = list.toArray();
+
+    if (delta.isReverse()) {
+      for (int i = 0, j = records.length - 1; i < j; i++, j--) {
+        final Object record = records[i];
+        records[i] = records[j];
+        records[j] = record;
       }
+    }
 
-      // строгое сравнение проводится дефолтным компаратором по возрастанию
-      return compareByFields(map1, map2, remainFieldNames, fieldName -> getDefaultFieldComparator(), fieldName -> 1);
+    final Integer[] order = sortOrder(records, Math.min(delta.getSortedKeyCount(), fieldSortOrders.length),
+        parallelThreshold > 0 && records.length >= parallelThreshold, pool);
+
+    if (list instanceof CompactResultset) {
+      // компактный список переставляет свои колонки, не записывая материализованные записи обратно
+      final int[] permutation = new int[order.length];
+      for (int i = 0; i < order.length; i++) {
+        permutation[i] = delta.isReverse() ? records.length - 1 - order[i] : order[i];
+      }
+      ((CompactResultset) list).reorder(permutation);
+      return;
+    }
+
+    // undecorate: перестановка элементов исходного списка
+    @SuppressWarnings("unchecked")
+    final ListIterator<Object> it = ((List<Object>) list).listIterator();
+    for (Integer index: order) {
+      it.next();
+      it.set(records[index]);
+    }
+  }
+
+  /**
+   * @param records
+   * @param sortedKeyCount число первых полей из {@link #fieldNames}, по которым массив записей предположительно уже упорядочен, 0 для полной сортировки
+   * @param parallel whether to sort in parallel
+   * @param pool пул для параллельной сортировки, {@code null} для {@link ForkJoinPool#commonPool()}
+   * @return индексы записей массива в порядке сортировки
+   */
+  protected Integer[] sortOrder(Object[] records, int sortedKeyCount, boolean parallel, ForkJoinPool pool) {
+    final KeyColumn[] keyColumns = extractKeyColumns(records);
+
+    final Integer[] order = new Integer[records.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+
+    // компаратор только читает неизменяемые массивы, поэтому допускает одновременное использование
+    final Comparator<Integer> orderComparator = (i, j) -> compareDecorated(records, keyColumns, i, j);
+
+    if (sortedKeyCount > 0) {
+      // границы групп записей с равными значениями первых sortedKeyCount полей
+      final List<Integer> runBounds = new ArrayList<>();
+      boolean sorted = true;
+      for (int i = 1; i < records.length; i++) {
+        final int cmpResult = compareDecoratedPrefix(records, keyColumns, sortedKeyCount, i - 1, i);
+        if (cmpResult > 0) {
+          sorted = false;
+          break;
+        } else if (cmpResult < 0) {
+          runBounds.add(i);
+        }
+      }
+
+      if (sorted) {
+        runBounds.add(records.length);
+        int runStart = 0;
+        for (int runEnd: runBounds) {
+          if (runEnd - runStart > 1) {
+            Arrays.sort(order, runStart, runEnd, orderComparator);
+          }
+          runStart = runEnd;
+        }
+        return order;
+      }
+      // иначе: упорядоченность нарушена, полная сортировка
+    }
+
+    if (!parallel) {
+      Arrays.sort(order, orderComparator);
+
+    } else if (pool == null || pool == ForkJoinPool.commonPool()) {
+      Arrays.parallelSort(order, orderComparator);
+
+    } else {
+      // задачи параллельной сортировки, запущенной из потока пула, исполняются в этом же пуле
+      try {
+        pool.submit(() -> Arrays.parallelSort(order, orderComparator)).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        } else {
+          throw new IllegalStateException(cause);
+        }
+      }
+    }
+
+    return order;
+  }
+
+  /**
+   * Сравнение двух записей по предварительно извлечённым значениям первых {@code keyCount} полей сортировки (без уточняющего сравнения)
+   */
+  private int compareDecoratedPrefix(Object[] records, KeyColumn[] keyColumns, int keyCount, int i, int j) {
+    if (records[i] == null || records[j] == null) {
+      return compareNullRecords(records[i], records[j]);
+    }
+
+    for (int k = 0; k < keyCount; k++) {
+      final int cmpResult = keyColumns[k].compare(i, j);
+      if (cmpResult != 0) {
+        return cmpResult;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Сравнение двух записей по предварительно извлечённым значениям полей сортировки, эквивалентное {@link #compare(Object, Object)}
+   */
+  private int compareDecorated(Object[] records, KeyColumn[] keyColumns, int i, int j) {
+    final Object record1 = records[i];
+    final Object record2 = records[j];
+
+    if (record1 == null || record2 == null) {
+      return compareNullRecords(record1, record2);
+    }
+
+    for (KeyColumn keyColumn: keyColumns) {
+      final int cmpResult = keyColumn.compare(i, j);
+      if (cmpResult != 0) {
+        // return immediately on the first differing field
+        return cmpResult;
+      }
+    }
+
+    return compareRemainFields(record1, DtoAccessor.forClass(record1.getClass()),
+        record2, DtoAccessor.forClass(record2.getClass()));
+  }
+
+  private boolean isCompareOverridden() {
+    try {
+      return getClass().getMethod("compare", Object.class, Object.class).getDeclaringClass() != RecordComparator.class;
+    } catch (NoSuchMethodException e) {
+      // programmatically impossible
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Извлекает значения полей сортировки из всех записей
+   * @param records
+   * @return массив столбцов ключей, по одному на каждое поле из {@link #fieldNames}
+   */
+  private KeyColumn[] extractKeyColumns(Object[] records) {
+    final KeyColumn[] keyColumns = new KeyColumn[fieldSortOrders.length];
+
+    for (int i = 0; i < keyColumns.length; i++) {
+      final String fieldName = fieldNames.get(i);
+
+      final Object[] values = new Object[records.length];
+      for (int r = 0; r < records.length; r++) {
+        final Object record = records[r];
+        if (record != null) {
+          final DtoAccessor accessor = DtoAccessor.forClass(record.getClass());
+          final int index = getFieldIndexes(accessor).sortFieldIndexes[i];
+          // отсутствующее в классе поле сравнивается как null
+          values[r] = index == -1 ? null : accessor.get(record, index);
+        }
+      }
+
+      KeyColumn keyColumn = null;
+      if (fieldComparators.get(i) == getDefaultFieldComparator()) {
+        keyColumn = LongKeyColumn.tryCreate(values, fieldSortOrders[i]);
+      }
+      if (keyColumn == null) {
+        keyColumn = new ObjectKeyColumn(values, fieldComparators.get(i), fieldSortOrders[i]);
+      }
+      keyColumns[i] = keyColumn;
+    }
+
+    return keyColumns;
+  }
+
+  /**
+   * Столбец извлечённых значений одного поля сортировки для всех записей списка
+   */
+  private interface KeyColumn {
+    /**
+     * Сравнение значений поля двух записей с учётом направления сортировки
+     * @param i индекс первой записи
+     * @param j индекс второй записи
+     */
+    int compare(int i, int j);
+  }
+
+  private static final class ObjectKeyColumn implements KeyColumn {
+    final Object[] values;
+    final Comparator<Object> comparator;
+    final int sortOrder;
+
+    ObjectKeyColumn(Object[] values, Comparator<Object> comparator, int sortOrder) {
+      this.values = values;
+      this.comparator = comparator;
+      this.sortOrder = sortOrder;
+    }
+
+    @Override
+    public int compare(int i, int j) {
+      if (sortOrder < 0) {
+        return comparator.compare(values[j], values[i]);
+      } else {
+        return comparator.compare(values[i], values[j]);
+      }
+    }
+  }
+
+  /**
+   * Примитивное представление столбца целочисленных значений или дат (для компаратора по умолчанию)
+   */
+  private static final class LongKeyColumn implements KeyColumn {
+    final long[] values;
+    final boolean[] nulls;
+    final int sortOrder;
+
+    LongKeyColumn(long[] values, boolean[] nulls, int sortOrder) {
+      this.values = values;
+      this.nulls = nulls;
+      this.sortOrder = sortOrder;
+    }
+
+    /**
+     * @return {@code null} если значения столбца не могут быть представлены примитивами
+     * с сохранением результата сравнения компаратором по умолчанию
+     */
+    static LongKeyColumn tryCreate(Object[] values, int sortOrder) {
+      Class<?> valueClass = null;
+      for (Object value: values) {
+        if (value != null) {
+          if (valueClass == null) {
+            valueClass = value.getClass();
+          } else if (valueClass != value.getClass()) {
+            return null;
+          }
+        }
+      }
+
+      // Note: наследники Date (например, java.sql.Timestamp) сравниваются с точностью, превышающей getTime(), поэтому не поддерживаются
+      final boolean isNumber = valueClass == Integer.class || valueClass == Long.class
+          || valueClass == Short.class || valueClass == Byte.class;
+      final boolean isDate = valueClass == Date.class;
+      if (!isNumber && !isDate) {
+        return null;
+      }
+
+      final long[] longValues = new long[values.length];
+      final boolean[] nulls = new boolean[values.length];
+      for (int i = 0; i < values.length; i++) {
+        final Object value = values[i];
+        if (value == null) {
+          nulls[i] = true;
+        } else {
+          longValues[i] = isDate ? ((Date) value).getTime() : ((Number) value).longValue();
+        }
+      }
+
+      return new LongKeyColumn(longValues, nulls, sortOrder);
+    }
+
+    @Override
+    public int compare(int i, int j) {
+      if (sortOrder < 0) {
+        return compareAsc(j, i);
+      } else {
+        return compareAsc(i, j);
+      }
+    }
+
+    private int compareAsc(int i, int j) {
+      // null-значения сравниваются так же, как в компараторе по умолчанию
+      if (nulls[i] || nulls[j]) {
+        if (nulls[i] && nulls[j]) {
+          return 0;
+        } else {
+          return nulls[i] ? 1 : -1;
+        }
+      }
+      return Long.compare(values[i], values[j]);
     }
   }
   
@@ -1,6 +1,7 @@
 package org.jepria.server.data;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Описание записи
@@ -40,6 +41,52 @@ public interface RecordDefinition {
     return null;
   }
   
+  /**
+   * Определяет минимальный размер списка записей, начиная с которого список сортируется параллельно
+   * @return неположительное значение отключает параллельную сортировку
+   * @see RecordComparator#sort(List, int, ForkJoinPool)
+   */
+  default int getParallelSortThreshold() {
+    return RecordComparator.getDefaultParallelSortThreshold();
+  }
+
+  /**
+   * Определяет пул для параллельной сортировки списка записей
+   * @return {@code null} для {@link ForkJoinPool#commonPool()}
+   * @see RecordComparator#sort(List, int, ForkJoinPool)
+   */
+  default ForkJoinPool getParallelSortPool() {
+    return null;
+  }
+
+  /**
+   * Определяет время жизни результирующих списков поиска в разделяемом между сессиями кеше
+   * (для сущностей, которые многие пользователи ищут с одинаковыми поисковыми шаблонами, например, справочников)
+   * @return время жизни в миллисекундах; неположительное значение отключает разделяемый кеш (каждая сессия хранит собственный список)
+   * @see org.jepria.server.service.rest.SharedResultsetCache
+   */
+  default long getSharedResultsetTtl() {
+    return 0;
+  }
+
+  /**
+   * Определяет минимальное число найденных записей, начиная с которого поиск осуществляется постранично на стороне БД
+   * (если Dao реализует {@link PagedDao}), без загрузки всего результирующего списка в сессию
+   * @return отрицательное значение отключает постраничный поиск
+   */
+  default int getPagedSearchThreshold() {
+    return PagedDao.getDefaultPagedSearchThreshold();
+  }
+
+  /**
+   * Определяет, хранить ли результирующие списки поиска в сессии в компактном (поколоночном) представлении
+   * @return {@code true} для хранения списков в виде {@link CompactResultset}
+   * (записи материализуются только при обращении к ним, например, для возвращаемой страницы)
+   */
+  default boolean isCompactResultset() {
+    return false;
+  }
+  
   class IncompletePrimaryKeyException extends Exception {
     private static final long serialVersionUID = 1L;
     
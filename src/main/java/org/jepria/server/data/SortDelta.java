@@ -0,0 +1,130 @@
+package org.jepria.server.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * План пересортировки списка, уже отсортированного в соответствии с одной конфигурацией сортировки,
+ * в соответствии с другой конфигурацией.
+ * <br/>
+ * Конфигурация сортировки &mdash; <b>упорядоченный</b> map, ключ: имя поля, значение: направление сортировки
+ * (неотрицательное или null: по возрастанию, отрицательное: по убыванию).
+ * <br/>
+ * Возможные планы:
+ * <ul>
+ *   <li>список уже отсортирован ({@link #isNone()});</li>
+ *   <li>список отсортирован по первым {@link #getSortedKeyCount()} полям новой конфигурации,
+ *   и достаточно досортировать каждую группу записей с равными значениями этих полей;</li>
+ *   <li>то же самое, но предварительно список нужно обратить ({@link #isReverse()}), если направления сортировки первых полей сменились на противоположные;</li>
+ *   <li>требуется полная сортировка ({@link #isFullSort()}).</li>
+ * </ul>
+ */
+public final class SortDelta {
+
+  /**
+   * План полной сортировки
+   */
+  public static final SortDelta FULL = new SortDelta(false, false, 0);
+
+  private static final SortDelta NONE = new SortDelta(true, false, 0);
+
+  private final boolean none;
+
+  private final boolean reverse;
+
+  private final int sortedKeyCount;
+
+  private SortDelta(boolean none, boolean reverse, int sortedKeyCount) {
+    this.none = none;
+    this.reverse = reverse;
+    this.sortedKeyCount = sortedKeyCount;
+  }
+
+  /**
+   * @param sortedBy конфигурация, в соответствии с которой список отсортирован в данный момент, {@code null} если список не отсортирован
+   * @param requested конфигурация, в соответствии с которой список нужно отсортировать, non-null
+   * @return non-null
+   */
+  public static SortDelta plan(Map<String, Integer> sortedBy, Map<String, Integer> requested) {
+    if (sortedBy == null || sortedBy.isEmpty() || requested.isEmpty()) {
+      return FULL;
+    }
+
+    final List<Map.Entry<String, Integer>> sortedByList = new ArrayList<>(sortedBy.entrySet());
+    final List<Map.Entry<String, Integer>> requestedList = new ArrayList<>(requested.entrySet());
+
+    // длина общего префикса с совпадающими направлениями сортировки
+    int sameCount = 0;
+    // длина общего префикса с противоположными направлениями сортировки
+    int flippedCount = 0;
+    boolean sameOrder = true;
+    boolean flippedOrder = true;
+
+    final int prefixLength = Math.min(sortedByList.size(), requestedList.size());
+    for (int i = 0; i < prefixLength && (sameOrder || flippedOrder); i++) {
+      final Map.Entry<String, Integer> sortedByEntry = sortedByList.get(i);
+      final Map.Entry<String, Integer> requestedEntry = requestedList.get(i);
+
+      if (sortedByEntry.getKey() == null || !sortedByEntry.getKey().equals(requestedEntry.getKey())) {
+        break;
+      }
+
+      final boolean sameDirection = isDescending(sortedByEntry.getValue()) == isDescending(requestedEntry.getValue());
+      sameOrder &= sameDirection;
+      flippedOrder &= !sameDirection;
+
+      if (sameOrder) {
+        sameCount++;
+      }
+      if (flippedOrder) {
+        flippedCount++;
+      }
+    }
+
+    if (sameCount > 0) {
+      if (sameCount == sortedByList.size() && sameCount == requestedList.size()) {
+        return NONE;
+      }
+      return new SortDelta(false, false, sameCount);
+
+    } else if (flippedCount > 0) {
+      return new SortDelta(false, true, flippedCount);
+
+    } else {
+      return FULL;
+    }
+  }
+
+  private static boolean isDescending(Integer sortOrder) {
+    return sortOrder != null && sortOrder < 0;
+  }
+
+  /**
+   * @return {@code true} если список уже отсортирован в соответствии с новой конфигурацией
+   */
+  public boolean isNone() {
+    return none;
+  }
+
+  /**
+   * @return {@code true} если список нужно предварительно обратить
+   */
+  public boolean isReverse() {
+    return reverse;
+  }
+
+  /**
+   * @return число первых полей новой конфигурации, по которым список отсортирован (после обращения, если {@link #isReverse()})
+   */
+  public int getSortedKeyCount() {
+    return sortedKeyCount;
+  }
+
+  /**
+   * @return {@code true} если требуется полная сортировка
+   */
+  public boolean isFullSort() {
+    return !none && sortedKeyCount == 0;
+  }
+}
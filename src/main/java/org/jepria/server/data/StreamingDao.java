@@ -0,0 +1,27 @@
+package org.jepria.server.data;
+
+import java.util.function.Consumer;
+
+/**
+ * Интерфейс Dao, осуществляющего потоковый поиск записей.
+ * <br/>
+ * Найденные записи передаются обработчику по мере их чтения из курсора, не загружаясь в память списком целиком
+ * (см. {@link DaoSupport#findEach}), что позволяет, например, выгружать большие результирующие списки в Excel,
+ * сразу выводя записи в ответ (см. {@link ExcelDao#print(String[], StreamingDao, Object, Integer, java.util.function.Function, java.io.PrintWriter)}).
+ * <br/>
+ * Для поддержки потокового поиска прикладной интерфейс Dao должен расширять данный интерфейс
+ * (наряду с {@link Dao}), так чтобы его реализовывал и транзакционный прокси Dao:
+ * обработчик вызывается в рамках транзакции вызова метода, пока курсор открыт.
+ */
+public interface StreamingDao {
+
+  /**
+   * Потоковый поиск записей
+   *
+   * @param template поисковый шаблон (объект прикладного класса SearchDto)
+   * @param consumer обработчик записей (объектов прикладного класса Dto), вызываемый для каждой записи
+   * в том же порядке, в котором их вернул бы {@link Dao#find(Object, Integer)}
+   * @param operatorId идентификатор пользователя
+   */
+  void findEach(Object template, Consumer<Object> consumer, Integer operatorId);
+}
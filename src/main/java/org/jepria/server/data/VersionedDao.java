@@ -0,0 +1,26 @@
+package org.jepria.server.data;
+
+import java.util.Map;
+
+/**
+ * Интерфейс Dao, отслеживающего версии записей (например, по столбцу версии строки, дате последнего изменения или ORA_ROWSCN).
+ * <br/>
+ * Версия записи запрашивается до загрузки самой записи, так что условный GET-запрос записи (If-None-Match),
+ * данные которой не изменились, обслуживается без её загрузки (см. {@link org.jepria.server.service.rest.EntityService#getRecordVersion}).
+ * Если Dao не реализует данный интерфейс, ETag записи вычисляется по её загруженному содержимому.
+ * <br/>
+ * Для поддержки версий прикладной интерфейс Dao должен расширять данный интерфейс
+ * (наряду с {@link Dao}), так чтобы его реализовывал и транзакционный прокси Dao.
+ */
+public interface VersionedDao {
+
+  /**
+   * Версия записи
+   *
+   * @param primaryKey первичный ключ записи
+   * @param operatorId идентификатор пользователя
+   * @return значение, изменяющееся при каждом изменении данных записи, или {@code null}, если запись не найдена
+   * или версия не отслеживается (в таком случае запись загружается через {@link Dao#findByPrimaryKey(Map, Integer)})
+   */
+  String findVersion(Map<String, ?> primaryKey, Integer operatorId);
+}
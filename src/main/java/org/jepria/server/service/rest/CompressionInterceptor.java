@@ -0,0 +1,338 @@
+package org.jepria.server.service.rest;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The interceptor compresses response entities with {@code gzip} or {@code deflate} content coding,
+ * according to the {@code Accept-Encoding} request header.
+ * <br/>
+ * The entity is compressed while being written (without buffering it as a whole), but only if its size reaches
+ * the threshold set by the {@link #MIN_SIZE_PROPERTY} system property: smaller entities are sent as-is.
+ * The compression level is set by the {@link #LEVEL_PROPERTY} system property.
+ * <br/>
+ * A flush of a streamed entity (e.g. NDJSON) is never held back: if the threshold is not reached yet,
+ * the entity is sent uncompressed from then on, otherwise the compressed data is sync-flushed.
+ */
+public class CompressionInterceptor implements WriterInterceptor {
+
+  /**
+   * Name of the system property setting the minimum size (in bytes) of a compressed response entity
+   */
+  public static final String MIN_SIZE_PROPERTY = "org.jepria.server.service.rest.CompressionInterceptor.minSize";
+
+  public static final int DEFAULT_MIN_SIZE = 1024;
+
+  /**
+   * Name of the system property setting the compression level: from 0 (no compression) to 9 (best compression),
+   * or -1 for the default level (see {@link Deflater}); values out of the range are clamped
+   */
+  public static final String LEVEL_PROPERTY = "org.jepria.server.service.rest.CompressionInterceptor.level";
+
+  public static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+  public static final String GZIP = "gzip";
+
+  public static final String DEFLATE = "deflate";
+
+  @Context
+  private HttpHeaders requestHeaders;
+
+  @Override
+  public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+    final MultivaluedMap<String, Object> headers = context.getHeaders();
+
+    if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) || !isCompressible(context.getMediaType())) {
+      context.proceed();
+      return;
+    }
+
+    headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+    final String contentCoding = selectContentCoding(requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING));
+    if (contentCoding == null) {
+      context.proceed();
+      return;
+    }
+
+    final int minSize = Integer.getInteger(MIN_SIZE_PROPERTY, DEFAULT_MIN_SIZE);
+    final int level = getLevel();
+
+    final ThresholdOutputStream out = new ThresholdOutputStream(context.getOutputStream(), minSize) {
+      @Override
+      protected DeflaterOutputStream startCompression(OutputStream out) throws IOException {
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, contentCoding);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        return GZIP.equals(contentCoding) ? new GzipStream(out, level) : new DeflateStream(out, level);
+      }
+    };
+    context.setOutputStream(out);
+    try {
+      context.proceed();
+      // the headers must be decided before the container commits the response
+      out.finish();
+    } finally {
+      // if writing the entity failed, the deflater is ended without writing the rest of the compressed data
+      out.abort();
+    }
+  }
+
+  /**
+   * @return the value of the {@link #LEVEL_PROPERTY} system property clamped to the range accepted by {@link Deflater#setLevel},
+   * or {@link #DEFAULT_LEVEL}
+   */
+  static int getLevel() {
+    final int level = Integer.getInteger(LEVEL_PROPERTY, DEFAULT_LEVEL);
+    return Math.max(Deflater.DEFAULT_COMPRESSION, Math.min(level, Deflater.BEST_COMPRESSION));
+  }
+
+  /**
+   * @return {@code false} for media types that are compressed by themselves
+   */
+  protected boolean isCompressible(MediaType mediaType) {
+    if (mediaType == null) {
+      return true;
+    }
+    final String type = mediaType.getType();
+    final String subtype = mediaType.getSubtype();
+    return !("image".equals(type) || "audio".equals(type) || "video".equals(type)
+        || "zip".equals(subtype) || "gzip".equals(subtype) || "x-gzip".equals(subtype));
+  }
+
+  /**
+   * @param acceptEncoding values of the {@code Accept-Encoding} request header, may be null
+   * @return {@link #GZIP}, {@link #DEFLATE} (in order of preference) or null, if neither is acceptable
+   */
+  public static String selectContentCoding(List<String> acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+
+    boolean gzip = false, gzipRefused = false, deflate = false, deflateRefused = false, any = false;
+
+    for (String value: acceptEncoding) {
+      for (String element: value.split(",")) {
+        final String[] parts = element.split(";");
+        final String coding = parts[0].trim().toLowerCase();
+
+        boolean acceptable = true;
+        for (int i = 1; i < parts.length; i++) {
+          final String param = parts[i].trim();
+          if (param.startsWith("q=")) {
+            try {
+              acceptable = Double.parseDouble(param.substring(2)) > 0;
+            } catch (NumberFormatException e) {
+              acceptable = false;
+            }
+          }
+        }
+
+        if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+          gzip |= acceptable;
+          gzipRefused |= !acceptable;
+        } else if (DEFLATE.equals(coding)) {
+          deflate |= acceptable;
+          deflateRefused |= !acceptable;
+        } else if ("*".equals(coding)) {
+          any |= acceptable;
+        }
+      }
+    }
+
+    if (gzip || any && !gzipRefused) {
+      return GZIP;
+    } else if (deflate || any && !deflateRefused) {
+      return DEFLATE;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * The compressing stream, which is finished but not closed
+   */
+  private interface DeflaterOwner {
+    /**
+     * Releases the native deflater memory, without writing the rest of the compressed data
+     */
+    void end();
+  }
+
+  /**
+   * Releases the native deflater memory on finish, since the stream itself is not closed.
+   * Flushes in the sync flush mode, so that a flush sends all the data written so far
+   */
+  private static class GzipStream extends GZIPOutputStream implements DeflaterOwner {
+    GzipStream(OutputStream out, int level) throws IOException {
+      super(out, 8192, true);
+      def.setLevel(level);
+    }
+
+    @Override
+    public void finish() throws IOException {
+      super.finish();
+      end();
+    }
+
+    @Override
+    public void end() {
+      def.end();
+    }
+  }
+
+  /**
+   * @see GzipStream
+   */
+  private static class DeflateStream extends DeflaterOutputStream implements DeflaterOwner {
+    DeflateStream(OutputStream out, int level) {
+      super(out, new Deflater(level), 8192, true);
+    }
+
+    @Override
+    public void finish() throws IOException {
+      super.finish();
+      end();
+    }
+
+    @Override
+    public void end() {
+      def.end();
+    }
+  }
+
+  /**
+   * Buffers the first bytes written, until their number reaches the threshold: then starts the compression,
+   * otherwise (if the stream is finished or flushed before that) writes the bytes uncompressed
+   */
+  private static abstract class ThresholdOutputStream extends OutputStream {
+
+    private final OutputStream out;
+
+    private final int threshold;
+
+    private byte[] buffer;
+
+    private int count = 0;
+
+    /**
+     * null until the compression is started
+     */
+    private DeflaterOutputStream compressed;
+
+    /**
+     * Whether the stream is flushed before reaching the threshold, so that the bytes are written uncompressed
+     */
+    private boolean uncompressed = false;
+
+    private boolean finished = false;
+
+    ThresholdOutputStream(OutputStream out, int threshold) {
+      this.out = out;
+      this.threshold = threshold;
+      // grows up to the threshold as needed
+      this.buffer = new byte[Math.max(Math.min(threshold, 8192), 1)];
+    }
+
+    /**
+     * @return the compressing stream writing into the original one
+     */
+    protected abstract DeflaterOutputStream startCompression(OutputStream out) throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (finished) {
+        throw new IOException("The stream is finished");
+      }
+      if (uncompressed) {
+        out.write(b, off, len);
+        return;
+      }
+      if (compressed == null) {
+        if (count + len < threshold) {
+          if (count + len > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(Math.max(buffer.length * 2, count + len), threshold));
+          }
+          System.arraycopy(b, off, buffer, count, len);
+          count += len;
+          return;
+        }
+        compressed = startCompression(out);
+        compressed.write(buffer, 0, count);
+        buffer = null;
+      }
+      compressed.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (finished) {
+        return;
+      }
+      if (compressed != null) {
+        // sync flush
+        compressed.flush();
+        return;
+      }
+      if (!uncompressed) {
+        // the entity is streamed: rather than holding the buffered bytes back until the threshold is reached
+        // (that may take long or never happen), the compression is given up
+        uncompressed = true;
+        out.write(buffer, 0, count);
+        buffer = null;
+      }
+      out.flush();
+    }
+
+    /**
+     * Writes the remaining bytes, without closing the original stream
+     */
+    void finish() throws IOException {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      if (compressed != null) {
+        compressed.finish();
+      } else if (!uncompressed) {
+        out.write(buffer, 0, count);
+        buffer = null;
+      }
+    }
+
+    /**
+     * Finishes the stream without writing the remaining bytes, releasing the deflater (if any).
+     * Has no effect on the bytes written by {@link #finish()}
+     */
+    void abort() {
+      finished = true;
+      buffer = null;
+      if (compressed instanceof DeflaterOwner) {
+        // Deflater.end may be called repeatedly
+        ((DeflaterOwner) compressed).end();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      finish();
+      out.close();
+    }
+  }
+}
@@ -1,15 +1,96 @@
 package org.jepria.server.service.rest;
 
 import javax.ws.rs.ext.ParamConverter;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.Date;
 
+/**
+ * Конвертер параметров-дат jaxrs-методов по заданному формату (см. {@link DateFormat}).
+ * <br/>
+ * Конвертер потокобезопасен: форматировщик создаётся однократно для формата,
+ * а экземпляры конвертеров переиспользуются всеми запросами (см. {@link DateParamConverterProvider}).
+ */
 public class DateParamConverter implements ParamConverter<Date> {
 
+  protected volatile String format;
+
+  protected volatile DateTimeFormatter formatter;
+
+  /**
+   * @deprecated формат задаётся в конструкторе {@link #DateParamConverter(String)};
+   * поле сохранено для совместимости и содержит формат, заданный методом {@link #setCustomDateFormat}
+   */
+  @Deprecated
   protected DateFormat customDateFormat;
 
+  /**
+   * Разделяется ли конвертер всеми параметрами и запросами (см. {@link DateParamConverterProvider})
+   */
+  private final boolean shared;
+
+  public DateParamConverter() {
+    this(DateFormat.DEFAULT_FORMAT);
+  }
+
+  /**
+   * @param format формат в выражениях, принятых для {@link java.text.SimpleDateFormat}
+   * @throws IllegalArgumentException если формат некорректен
+   */
+  public DateParamConverter(String format) {
+    this(format, false);
+  }
+
+  /**
+   * @param shared {@code true} для конвертера, разделяемого {@link DateParamConverterProvider}
+   */
+  DateParamConverter(String format, boolean shared) {
+    this.format = format;
+    this.formatter = createFormatter(format);
+    this.shared = shared;
+  }
+
+  private static DateTimeFormatter createFormatter(String format) {
+    return new DateTimeFormatterBuilder()
+        // the same as SimpleDateFormat: case-insensitive names, numbers of any width
+        .parseCaseInsensitive()
+        .parseLenient()
+        .appendPattern(format)
+        // the same as SimpleDateFormat: the fields missing in the format default to 01.01
+        .parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+        .parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+        // the strict resolution of the year-of-era requires the era
+        .parseDefaulting(ChronoField.ERA, 1)
+        .toFormatter()
+        // invalid dates (e.g. 2010-02-31) are rejected rather than adjusted, the same as by JepServerUtil.DEFAULT_DATE_TIME_FORMATTER
+        .withResolverStyle(ResolverStyle.STRICT);
+  }
+
+  /**
+   * Заменяет формат данного конвертера
+   * @param customDateFormat формат или {@code null} для формата по умолчанию ({@link DateFormat#DEFAULT_FORMAT})
+   * @throws IllegalStateException для конвертера, разделяемого {@link DateParamConverterProvider}
+   * @deprecated используйте конструктор {@link #DateParamConverter(String)}; метод сохранён для совместимости
+   */
+  @Deprecated
   public void setCustomDateFormat(DateFormat customDateFormat) {
+    if (shared) {
+      throw new IllegalStateException("The format of a shared converter cannot be changed");
+    }
+    final String format = customDateFormat == null ? DateFormat.DEFAULT_FORMAT : customDateFormat.value();
+    this.formatter = createFormatter(format);
+    this.format = format;
     this.customDateFormat = customDateFormat;
   }
 
@@ -20,19 +101,13 @@ public class DateParamConverter implements ParamConverter<Date> {
       return null;
     }
 
-    final String format;
-
-    if (customDateFormat != null) {
-      format = customDateFormat.value();
-    } else {
-      format = DateFormat.DEFAULT_FORMAT;
-    }
-
-    final SimpleDateFormat simpleDateFormat = new SimpleDateFormat(format);
-
     try {
-      return simpleDateFormat.parse(s);
-    } catch (ParseException e) {
+      // the same as SimpleDateFormat: the text following the date is ignored
+      // (so that the default format accepts both date and date-time values)
+      final ParsePosition position = new ParsePosition(0);
+      final TemporalAccessor parsed = formatter.parse(s, position);
+      return Date.from(toInstant(parsed));
+    } catch (DateTimeException e) {
       throw new BadParamException(
               null,
               null,
@@ -41,9 +116,35 @@ public class DateParamConverter implements ParamConverter<Date> {
               e);
     }
   }
+
+  /**
+   * Fields missing in the format are taken from 01.01.1970 00:00 in the default time zone, the same as by SimpleDateFormat
+   */
+  private static Instant toInstant(TemporalAccessor parsed) {
+    if (parsed.isSupported(ChronoField.INSTANT_SECONDS)) {
+      return Instant.from(parsed);
+    }
+
+    LocalDate date = parsed.query(TemporalQueries.localDate());
+    if (date == null) {
+      date = LocalDate.of(1970, 1, 1);
+    }
+    LocalTime time = parsed.query(TemporalQueries.localTime());
+    if (time == null) {
+      time = LocalTime.MIDNIGHT;
+    }
+    ZoneId zone = parsed.query(TemporalQueries.zone());
+    if (zone == null) {
+      zone = ZoneId.systemDefault();
+    }
+    return ZonedDateTime.of(date, time, zone).toInstant();
+  }
+
   @Override
   public String toString(Date date) {
-    // TODO why to invoke this?
-    throw new UnsupportedOperationException();
+    if (date == null) {
+      return null;
+    }
+    return formatter.format(ZonedDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
   }
 }
@@ -5,23 +5,30 @@ import javax.ws.rs.ext.ParamConverterProvider;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DateParamConverterProvider implements ParamConverterProvider {
+
+  /**
+   * Конвертеры, созданные для форматов дат, ключ: формат.
+   * Конвертеры неизменяемы и потокобезопасны, поэтому создаются однократно для формата и переиспользуются всеми параметрами и запросами
+   */
+  private static final Map<String, DateParamConverter> converters = new ConcurrentHashMap<>();
+
   @Override
   public <T> ParamConverter<T> getConverter(Class<T> aClass, Type type, Annotation[] annotations) {
     if (Date.class.equals(type)) {
-      final DateParamConverter dateParamConverter =
-              new DateParamConverter();
+      String format = DateFormat.DEFAULT_FORMAT;
 
       for (Annotation annotation : annotations) {
         if (DateFormat.class.equals(
                 annotation.annotationType())) {
-          dateParamConverter.
-                  setCustomDateFormat((DateFormat) annotation);
+          format = ((DateFormat) annotation).value();
         }
       }
 
-      return (ParamConverter<T>) dateParamConverter;
+      return (ParamConverter<T>) converters.computeIfAbsent(format, f -> new DateParamConverter(f, true));
     }
     return null;
   }
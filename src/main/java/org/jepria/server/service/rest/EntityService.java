@@ -19,6 +19,18 @@ public interface EntityService {
    * @throws NoSuchElementException if the requested recordId does not exist
    */
   Object getRecordById(String recordId, Credential credential) throws NoSuchElementException;
+
+  /**
+   * Возвращает версию записи без загрузки самой записи, так что клиент может не запрашивать повторно не изменившиеся данные
+   * (см. {@link EntityTagUtil#forVersion})
+   * @param recordId
+   * @param credential
+   * @return версия записи или {@code null}, если версия не отслеживается (ETag вычисляется по содержимому загруженной записи)
+   * @throws NoSuchElementException if the requested recordId does not exist
+   */
+  default String getRecordVersion(String recordId, Credential credential) throws NoSuchElementException {
+    return null;
+  }
   
   /**
    * @param record
@@ -3,6 +3,7 @@ package org.jepria.server.service.rest;
 import org.jepria.server.data.Dao;
 import org.jepria.server.data.RecordDefinition;
 import org.jepria.server.data.RecordDefinition.IncompletePrimaryKeyException;
+import org.jepria.server.data.VersionedDao;
 import org.jepria.server.service.security.Credential;
 
 import java.util.List;
@@ -53,11 +54,33 @@ public class EntityServiceImpl implements EntityService {
     return record;
   }
 
+  /**
+   * {@inheritDoc}
+   * <br/>
+   * Версия запрашивается у Dao, реализующего {@link VersionedDao}, для прочих Dao не отслеживается.
+   */
+  @Override
+  public String getRecordVersion(String recordId, Credential credential) throws NoSuchElementException {
+    if (!(dao instanceof VersionedDao)) {
+      return null;
+    }
+
+    final Map<String, ?> primaryKeyMap;
+    try {
+      primaryKeyMap = recordDefinition.parseRecordId(recordId);
+    } catch (IncompletePrimaryKeyException e) {
+      throw new IllegalArgumentException("The recordId [" + recordId + "] cannot be parsed against the primary key: incomplete");
+    }
+
+    return ((VersionedDao) dao).findVersion(primaryKeyMap, credential == null ? null : credential.getOperatorId());
+  }
+
   @Override
   public String create(Object record, Credential credential) {
     final Object daoResult;
 
     daoResult = dao.create(record, credential == null ? null : credential.getOperatorId());
+    invalidateSharedResultsets();
 
     return daoResult.toString();// TODO convert like Parser
   }
@@ -73,6 +96,7 @@ public class EntityServiceImpl implements EntityService {
     }
 
     dao.delete(primaryKeyMap, credential == null ? null : credential.getOperatorId());
+    invalidateSharedResultsets();
   }
 
   @Override
@@ -86,6 +110,15 @@ public class EntityServiceImpl implements EntityService {
     }
     
     dao.update(primaryKeyMap, newRecord, credential == null ? null : credential.getOperatorId());
+    invalidateSharedResultsets();
   }
 
+  /**
+   * Удаляет результирующие списки сущности из разделяемого кеша после изменения её данных
+   */
+  protected void invalidateSharedResultsets() {
+    if (recordDefinition.getSharedResultsetTtl() > 0) {
+      SharedResultsetCache.getInstance().invalidate(SharedResultsetCache.getEntityName(dao));
+    }
+  }
 }
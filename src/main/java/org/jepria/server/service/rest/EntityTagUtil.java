@@ -0,0 +1,74 @@
+package org.jepria.server.service.rest;
+
+import com.google.gson.Gson;
+
+import javax.ws.rs.core.EntityTag;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Построение HTTP ETag для условных GET-запросов (If-None-Match).
+ * <br/>
+ * Строятся сильные (strong) ETag: одни и те же данные могут выдаваться в разных представлениях (JSON, CBOR, сжатом),
+ * поэтому в ETag, помимо версии или содержимого данных, учитывается ключ представления
+ * (см. {@link JaxrsAdapterBase#getRepresentation()}), так что разные представления одних данных получают разные ETag.
+ */
+public final class EntityTagUtil {
+
+  private EntityTagUtil() {}
+
+  /**
+   * Для вычисления хеша записи используется не общий контекстно-зависимый сериализатор, а просто _некий_ сериализатор
+   * (см. {@link TemplateTokenUtil}), сериализующий все поля записи
+   */
+  private static final Gson recordSerializer = new Gson();
+
+  /**
+   * @param record запись
+   * @param representation ключ представления, может быть {@code null}
+   * @return ETag, вычисленный по содержимому записи, или {@code null}, если запись {@code null}
+   */
+  public static EntityTag forRecord(Object record, String representation) {
+    return record == null ? null : create("record", recordSerializer.toJson(record), representation);
+  }
+
+  /**
+   * @param version версия ресурса (например, {@link PostGetSearchService#getResultsetVersion} или {@link EntityService#getRecordVersion})
+   * @param representation ключ представления, может быть {@code null}
+   * @return ETag версии или {@code null}, если версия {@code null}
+   */
+  public static EntityTag forVersion(String version, String representation) {
+    return version == null ? null : create("version", version, representation);
+  }
+
+  /**
+   * Значение ETag &mdash; хеш его составляющих: версия ресурса может содержать символы, недопустимые в ETag
+   */
+  private static EntityTag create(String kind, String content, String representation) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is supported by every Java platform
+      throw new IllegalStateException(e);
+    }
+    for (String component: new String[] {kind, content, representation}) {
+      if (component == null) {
+        digest.update((byte) 0);
+      } else {
+        final byte[] bytes = component.getBytes(StandardCharsets.UTF_8);
+        // length-prefixed, so that the components cannot be shifted into each other
+        digest.update((byte) 1);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+      }
+    }
+
+    // 128 bits are enough to tell versions of the same resource apart
+    return new EntityTag(Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), 16)), false);
+  }
+}
@@ -1,15 +1,18 @@
 package org.jepria.server.service.rest;
 
-import com.google.gson.Gson;
 import org.jepria.server.data.ColumnSortConfigurationDto;
 import org.jepria.server.data.SearchRequestDto;
 import org.jepria.server.data.SearchResultDto;
 import org.jepria.server.service.security.JepSecurityContext;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.io.Serializable;
 import java.net.URI;
@@ -37,6 +40,57 @@ public class JaxrsAdapterBase {
   @Context
   protected JepSecurityContext securityContext;
 
+  @Context
+  protected HttpServletResponse response;
+
+  /**
+   * JAX-RS request, for evaluating the request preconditions
+   */
+  @Context
+  protected Request requestContext;
+
+  /**
+   * Conditional GET support: responds {@code 304 Not Modified} if the request {@code If-None-Match} header matches the entity tag,
+   * otherwise sets the {@code ETag} response header.
+   * Applies to GET and HEAD requests only, so that the adapter methods may be reused in other requests (e.g. Extended-Response)
+   * @param entityTag supplier of the entity tag of the current resource state, supplying null if the state is not tracked
+   * @return {@code true} if the {@code ETag} header is set, {@code false} if the request is not a GET or the state is not tracked
+   * @throws WebApplicationException with the 304 response
+   */
+  protected boolean evaluateEntityTag(Supplier<EntityTag> entityTag) {
+    if (!(HttpMethod.GET.equals(request.getMethod()) || HttpMethod.HEAD.equals(request.getMethod()))) {
+      return false;
+    }
+
+    final EntityTag tag = entityTag.get();
+    if (tag == null) {
+      return false;
+    }
+
+    final Response.ResponseBuilder notModified = requestContext.evaluatePreconditions(tag);
+    if (notModified != null) {
+      // 304
+      throw new WebApplicationException(notModified.build());
+    }
+
+    response.setHeader(HttpHeaders.ETAG, tag.toString());
+    // the entity tag is strong, so it differs for the representations negotiated by the request headers
+    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    return true;
+  }
+
+  /**
+   * Key of the response representation, that is part of a strong entity tag (see {@link EntityTagUtil}):
+   * the same data is sent as different bytes for different media types (negotiated by the {@code Accept} header)
+   * and content codings (see {@link CompressionInterceptor#selectContentCoding})
+   * @return non-null
+   */
+  protected String getRepresentation() {
+    final Enumeration<String> acceptEncoding = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+    final String contentCoding = CompressionInterceptor.selectContentCoding(acceptEncoding == null ? null : Collections.list(acceptEncoding));
+    return request.getHeader(HttpHeaders.ACCEPT) + "; " + contentCoding;
+  }
+
   /**
    * Adapter for endpoint methods related to entity operations
    */
@@ -50,14 +104,23 @@ public class JaxrsAdapterBase {
 
     public Object getRecordById(String recordId) {
       final Object record;
+      final boolean entityTagSet;
 
       try {
+        // the record version is evaluated before loading the record, so that 304 is sent without loading it
+        entityTagSet = evaluateEntityTag(() -> EntityTagUtil.forVersion(
+            entityService.get().getRecordVersion(recordId, securityContext.getCredential()), getRepresentation()));
         record = entityService.get().getRecordById(recordId, securityContext.getCredential());
       } catch (NoSuchElementException e) {
         // 404
         throw new NotFoundException(e);
       }
 
+      if (!entityTagSet) {
+        // the version is not tracked: the entity tag is evaluated by the record contents
+        evaluateEntityTag(() -> EntityTagUtil.forRecord(record, getRepresentation()));
+      }
+
       return record;
     }
 
@@ -138,8 +201,7 @@ public class JaxrsAdapterBase {
       public SearchRequestImpl(Object templateDto, Map<String, Integer> listSortConfig) {
         this.templateDto = templateDto;
 
-        // для преобразования в токен используется не общий контексно-зависимый сериализатор, а просто _некий_ сериализатор
-        this.templateToken = templateDto == null ? null : new Gson().toJson(templateDto);
+        this.templateToken = TemplateTokenUtil.createTemplateToken(templateDto);
 
         this.listSortConfig = listSortConfig;
       }
@@ -408,6 +470,7 @@ public class JaxrsAdapterBase {
 
       try {
         invalidateResultsetOnNoCache(searchId, cacheControl);
+        evaluateEntityTag(() -> EntityTagUtil.forVersion(searchService.get().getResultsetVersion(searchId, securityContext.getCredential()), getRepresentation()));
         records = searchService.get().getResultset(searchId, securityContext.getCredential());
       } catch (NoSuchElementException e) {
         // 404
@@ -423,6 +486,37 @@ public class JaxrsAdapterBase {
       }
     }
 
+    /**
+     * Returns the whole resultset for streaming it to the client record by record,
+     * for application methods annotated with {@code @Produces(JsonBindingProvider.APPLICATION_NDJSON)}
+     * (or {@code application/json} for a JSON array written incrementally).
+     * Large resultsets of a paged search are loaded from the database while being written, without loading them into the memory
+     * @param searchId
+     * @param cacheControl Cache-Control header value
+     * @return null for an empty resultset (204)
+     * @see PostGetSearchService#getResultsetStream
+     */
+    public ResultsetStream getResultsetStream(String searchId, String cacheControl) {
+
+      final Iterable<?> records;
+
+      try {
+        invalidateResultsetOnNoCache(searchId, cacheControl);
+        records = searchService.get().getResultsetStream(searchId, securityContext.getCredential());
+      } catch (NoSuchElementException e) {
+        // 404
+        throw new NotFoundException(e);
+      }
+
+      if (records == null || records instanceof Collection && ((Collection<?>) records).isEmpty()) {
+        // 204
+        return null;
+      } else {
+
+        return new ResultsetStream(records);
+      }
+    }
+
     // TODO move the constant out of here?
     protected static final int DEFAULT_PAGE_SIZE = 25;
 
@@ -448,6 +542,7 @@ public class JaxrsAdapterBase {
 
       try {
         invalidateResultsetOnNoCache(searchId, cacheControl);
+        evaluateEntityTag(() -> EntityTagUtil.forVersion(searchService.get().getResultsetVersion(searchId, securityContext.getCredential()), getRepresentation()));
         records = searchService.get().getResultsetPaged(searchId, pageSize, page, securityContext.getCredential());
       } catch (NoSuchElementException e) {
         // 404
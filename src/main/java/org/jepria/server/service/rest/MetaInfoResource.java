@@ -62,6 +62,41 @@ public class MetaInfoResource extends JaxrsAdapterBase {
     return Response.ok(responseBodyMap).build();
   }
   
+  /**
+   * Текущее использование памяти результирующими списками поиска: сессии пользователя, всех сессий приложения
+   * и разделяемого между сессиями кеша
+   */
+  @GET
+  @Path("/search-memory")
+  public Response getSearchMemoryUsage() {
+    Map<String, Object> responseBodyMap = new LinkedHashMap<>();
+
+    // the monitoring request must not create a session (nor a search pool) of its own
+    final SessionSearchPool searchPool = SessionSearchPool.getIfPresent(request.getSession(false));
+    Map<String, Object> sessionMap = new LinkedHashMap<>();
+    sessionMap.put("searchCount", searchPool == null ? 0 : searchPool.getSearchIds().size());
+    sessionMap.put("rowCount", searchPool == null ? 0L : searchPool.getRowCount());
+    sessionMap.put("maxSearchCount", Integer.getInteger(SessionSearchPool.MAX_SEARCH_COUNT_PROPERTY, SessionSearchPool.DEFAULT_MAX_SEARCH_COUNT));
+    sessionMap.put("maxRowCount", Integer.getInteger(SessionSearchPool.MAX_ROW_COUNT_PROPERTY, SessionSearchPool.DEFAULT_MAX_ROW_COUNT));
+    responseBodyMap.put("session", sessionMap);
+
+    Map<String, Object> globalMap = new LinkedHashMap<>();
+    globalMap.put("sessionCount", SessionSearchPool.getSessionCount());
+    globalMap.put("rowCount", SessionSearchPool.getGlobalRowCount());
+    globalMap.put("maxRowCount", Integer.getInteger(SessionSearchPool.GLOBAL_MAX_ROW_COUNT_PROPERTY, SessionSearchPool.DEFAULT_GLOBAL_MAX_ROW_COUNT));
+    responseBodyMap.put("global", globalMap);
+
+    final SharedResultsetCache sharedResultsetCache = SharedResultsetCache.getInstance();
+    Map<String, Object> sharedMap = new LinkedHashMap<>();
+    sharedMap.put("entryCount", sharedResultsetCache.getEntryCount());
+    sharedMap.put("rowCount", sharedResultsetCache.getRowCount());
+    sharedMap.put("maxEntryCount", Integer.getInteger(SharedResultsetCache.MAX_ENTRY_COUNT_PROPERTY, SharedResultsetCache.DEFAULT_MAX_ENTRY_COUNT));
+    sharedMap.put("maxRowCount", Integer.getInteger(SharedResultsetCache.MAX_ROW_COUNT_PROPERTY, SharedResultsetCache.DEFAULT_MAX_ROW_COUNT));
+    responseBodyMap.put("shared", sharedMap);
+
+    return Response.ok(responseBodyMap).build();
+  }
+
   @GET
   @Path("/oauth")
   @JsonConfig(serializeNulls = true)
@@ -73,6 +73,30 @@ public interface PostGetSearchService {
    */
   List<?> getResultset(String searchId, Credential credential) throws NoSuchElementException;
 
+  /**
+   * Возвращает результирующий список для потоковой выдачи клиенту (например, в формате NDJSON):
+   * реализация может загружать записи по мере обхода, не загружая весь список в память
+   * @param searchId
+   * @param credential
+   * @return записи в порядке сортировки, non-null
+   * @throws NoSuchElementException if the requested searchId does not exist
+   */
+  default Iterable<?> getResultsetStream(String searchId, Credential credential) throws NoSuchElementException {
+    return getResultset(searchId, credential);
+  }
+
+  /**
+   * Возвращает версию результирующего списка в текущей сортировке: версия изменяется при каждой загрузке или пересортировке списка,
+   * так что клиент может не запрашивать повторно не изменившиеся данные (см. {@link EntityTagUtil#forVersion})
+   * @param searchId
+   * @param credential
+   * @return уникальная версия или {@code null}, если версия не отслеживается
+   * @throws NoSuchElementException if the requested searchId does not exist
+   */
+  default String getResultsetVersion(String searchId, Credential credential) throws NoSuchElementException {
+    return null;
+  }
+
   /**
    * @param searchId
    * @return
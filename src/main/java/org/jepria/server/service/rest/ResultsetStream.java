@@ -0,0 +1,28 @@
+package org.jepria.server.service.rest;
+
+import java.util.Iterator;
+
+/**
+ * Результирующий список поиска для потоковой выдачи клиенту (см. {@link JaxrsAdapterBase.PostGetSearchEndpointAdapter#getResultsetStream}).
+ * <br/>
+ * Entity provider'ы записывают такой список как массив запись за записью, по мере обхода
+ * (записи могут загружаться из БД во время обхода), а не как единый объект.
+ * Прочие {@link Iterable} сущности (например, Dto, реализующие {@link Iterable}) сериализуются обычным образом.
+ */
+public final class ResultsetStream implements Iterable<Object> {
+
+  private final Iterable<?> records;
+
+  /**
+   * @param records non-null
+   */
+  public ResultsetStream(Iterable<?> records) {
+    this.records = records;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<Object> iterator() {
+    return (Iterator<Object>) records.iterator();
+  }
+}
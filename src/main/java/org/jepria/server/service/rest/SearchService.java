@@ -1,6 +1,5 @@
 package org.jepria.server.service.rest;
 
-import com.google.gson.Gson;
 import org.jepria.server.service.security.Credential;
 
 import java.io.Serializable;
@@ -44,8 +43,7 @@ public interface SearchService {
       this.templateDto = templateDto;
       this.listSortConfig = listSortConfig;
 
-      // для преобразования в токен используется не общий контексно-зависимый сериализатор, а просто _некий_ сериализатор
-      this.templateToken = templateDto == null ? null : new Gson().toJson(templateDto);
+      this.templateToken = TemplateTokenUtil.createTemplateToken(templateDto);
     }
   }
   
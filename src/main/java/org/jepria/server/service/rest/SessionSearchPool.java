@@ -0,0 +1,484 @@
+package org.jepria.server.service.rest;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionEvent;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пул поисков, сохранённых в HTTP-сессии.
+ * <br/>
+ * Один и тот же клиент может одновременно работать с несколькими поисками (в том числе по одной и той же сущности):
+ * каждый уникальный поиск (сущность + поисковый шаблон + конфигурация сортировки) имеет собственный searchId ({@link #createSearchId}), и его атрибуты (поисковый запрос,
+ * результирующий список, признаки сортировки) хранятся в сессии под ключами с префиксом {@link #getSearchAttrKeyPrefix(String)}.
+ * <br/>
+ * Пул ограничивает число поисков и суммарное число записей в их результирующих списках,
+ * вытесняя (вместе со всеми их атрибутами сессии) давнее всего использованные поиски.
+ * Ограничения задаются системными свойствами {@link #MAX_SEARCH_COUNT_PROPERTY} и {@link #MAX_ROW_COUNT_PROPERTY}.
+ * <br/>
+ * Кроме того, суммарное число записей в результирующих списках поисков всех сессий приложения ограничивается
+ * системным свойством {@link #GLOBAL_MAX_ROW_COUNT_PROPERTY}: при превышении ограничения вытесняются давнее всего использованные поиски
+ * любых сессий. Поток одной сессии не изменяет атрибуты другой сессии (её запросы могут в этот момент использовать поиск):
+ * поиск другой сессии лишь отмечается вытесненным, а его атрибуты удаляются при следующем вытеснении ({@link #evict})
+ * в потоке самой сессии либо при завершении сессии. Поиски, результирующий список которых не может быть размещён в сессии ({@link #isAdmissible(long)}),
+ * осуществляются постранично на стороне БД (если Dao это поддерживает, см. {@link org.jepria.server.data.PagedDao}).
+ */
+public class SessionSearchPool implements Serializable, HttpSessionBindingListener, HttpSessionActivationListener {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Имя системного свойства, определяющего максимальное число поисков в пуле одной сессии
+   */
+  public static final String MAX_SEARCH_COUNT_PROPERTY = "org.jepria.server.service.rest.SessionSearchPool.maxSearchCount";
+
+  public static final int DEFAULT_MAX_SEARCH_COUNT = 5;
+
+  /**
+   * Имя системного свойства, определяющего максимальное суммарное число записей в результирующих списках поисков одной сессии.
+   * Текущий (используемый в данный момент) поиск не вытесняется, даже если его результирующий список превышает ограничение
+   */
+  public static final String MAX_ROW_COUNT_PROPERTY = "org.jepria.server.service.rest.SessionSearchPool.maxRowCount";
+
+  public static final int DEFAULT_MAX_ROW_COUNT = 200000;
+
+  /**
+   * Имя системного свойства, определяющего максимальное суммарное число записей в результирующих списках поисков всех сессий приложения
+   */
+  public static final String GLOBAL_MAX_ROW_COUNT_PROPERTY = "org.jepria.server.service.rest.SessionSearchPool.globalMaxRowCount";
+
+  public static final int DEFAULT_GLOBAL_MAX_ROW_COUNT = 5000000;
+
+  private static final String SESSION_ATTR_KEY = "SearchService;key=pool;";
+
+  /**
+   * Пулы активных сессий приложения
+   */
+  private static final Set<SessionSearchPool> pools = Collections.newSetFromMap(new WeakHashMap<>());
+
+  /**
+   * Суммарное число записей в результирующих списках поисков пулов {@link #pools}
+   */
+  private static final AtomicLong globalRowCount = new AtomicLong();
+
+  /**
+   * @param session non-null
+   * @return пул поисков данной сессии, non-null
+   */
+  public static SessionSearchPool get(HttpSession session) {
+    SessionSearchPool pool = (SessionSearchPool) session.getAttribute(SESSION_ATTR_KEY);
+    if (pool == null) {
+      synchronized (SessionSearchPool.class) {
+        pool = (SessionSearchPool) session.getAttribute(SESSION_ATTR_KEY);
+        if (pool == null) {
+          pool = new SessionSearchPool();
+          session.setAttribute(SESSION_ATTR_KEY, pool);
+        }
+      }
+    }
+    pool.register();
+    return pool;
+  }
+
+  /**
+   * В отличие от {@link #get(HttpSession)}, не создаёт пул (например, для мониторинга)
+   * @param session may be null
+   * @return пул поисков данной сессии или {@code null}, если сессия отсутствует или не имеет пула
+   */
+  public static SessionSearchPool getIfPresent(HttpSession session) {
+    if (session == null) {
+      return null;
+    }
+    final SessionSearchPool pool = (SessionSearchPool) session.getAttribute(SESSION_ATTR_KEY);
+    if (pool != null) {
+      pool.register();
+    }
+    return pool;
+  }
+
+  /**
+   * Создаёт searchId поиска.
+   * <br/>
+   * searchId состоит из двух частей, разделённых точкой: SHA-256-отпечатка кортежа {session,entity,template}
+   * и SHA-256-отпечатка конфигурации сортировки. Таким образом поиски с одинаковым поисковым шаблоном,
+   * различающиеся только сортировкой, имеют общий префикс {@link #getTemplatePrefix(String)}.
+   * @param sessionId
+   * @param entityName
+   * @param templateToken
+   * @param sortConfig <b>упорядоченная</b> конфигурация сортировки, может быть null
+   * @return non-null
+   */
+  public static String createSearchId(String sessionId, String entityName, String templateToken, Map<String, Integer> sortConfig) {
+    final List<String> sortComponents = new ArrayList<>();
+    if (sortConfig != null) {
+      for (Map.Entry<String, Integer> entry: sortConfig.entrySet()) {
+        sortComponents.add(entry.getKey());
+        sortComponents.add(entry.getValue() == null ? null : entry.getValue().toString());
+      }
+    }
+    return digest(16, Arrays.asList(sessionId, entityName, templateToken)) + "." + digest(8, sortComponents);
+  }
+
+  /**
+   * @param searchId
+   * @return общий префикс searchId поисков с одинаковым поисковым шаблоном, см. {@link #createSearchId}
+   */
+  public static String getTemplatePrefix(String searchId) {
+    final int index = searchId.indexOf('.');
+    return index == -1 ? searchId : searchId.substring(0, index + 1);
+  }
+
+  /**
+   * @param length число байт отпечатка
+   * @param components компоненты, may contain nulls
+   * @return hex-представление первых {@code length} байт SHA-256-отпечатка последовательности компонентов
+   */
+  private static String digest(int length, List<String> components) {
+    final MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is supported by every Java platform
+      throw new IllegalStateException(e);
+    }
+
+    for (String component: components) {
+      if (component == null) {
+        messageDigest.update((byte) 0);
+      } else {
+        // the length prefix separates the components unambiguously
+        final byte[] bytes = component.getBytes(StandardCharsets.UTF_8);
+        messageDigest.update((byte) 1);
+        messageDigest.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        messageDigest.update(bytes);
+      }
+    }
+
+    final byte[] digest = messageDigest.digest();
+    final StringBuilder sb = new StringBuilder(length * 2);
+    for (int i = 0; i < length; i++) {
+      sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param searchId
+   * @return префикс ключей атрибутов сессии, принадлежащих данному поиску
+   */
+  public static String getSearchAttrKeyPrefix(String searchId) {
+    return "SearchService;searchId=" + searchId;
+  }
+
+  /**
+   * Сведения о поиске в пуле
+   */
+  private static class Entry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    int rowCount;
+
+    /**
+     * по {@link System#currentTimeMillis()}
+     */
+    long lastAccessTime = System.currentTimeMillis();
+
+    /**
+     * Поиск вытеснен при превышении глобального ограничения, но его атрибуты ещё не удалены из сессии
+     */
+    boolean evicted;
+  }
+
+  /**
+   * access-ordered: от давнее всего использованного поиска к последнему использованному
+   */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Учитывается ли пул в {@link #pools} и {@link #globalRowCount}
+   */
+  private transient boolean registered;
+
+  protected SessionSearchPool() {
+  }
+
+  private void register() {
+    if (!registered) {
+      synchronized (pools) {
+        synchronized (this) {
+          if (!registered) {
+            pools.add(this);
+            globalRowCount.addAndGet(getRowCount());
+            registered = true;
+          }
+        }
+      }
+    }
+  }
+
+  private void unregister() {
+    synchronized (pools) {
+      synchronized (this) {
+        if (registered) {
+          pools.remove(this);
+          globalRowCount.addAndGet(-getRowCount());
+          registered = false;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void valueBound(HttpSessionBindingEvent event) {
+  }
+
+  /**
+   * Сессия завершена (или пул удалён из сессии): записи её поисков больше не учитываются в глобальном ограничении
+   */
+  @Override
+  public void valueUnbound(HttpSessionBindingEvent event) {
+    unregister();
+  }
+
+  @Override
+  public void sessionWillPassivate(HttpSessionEvent se) {
+    unregister();
+  }
+
+  @Override
+  public void sessionDidActivate(HttpSessionEvent se) {
+    register();
+  }
+
+  /**
+   * Отмечает поиск как последний использованный
+   * @param searchId
+   * @return {@code true} если поиск содержится в пуле и не вытеснен
+   */
+  public synchronized boolean touch(String searchId) {
+    final Entry entry = entries.get(searchId);
+    if (entry == null || entry.evicted) {
+      return false;
+    }
+    entry.lastAccessTime = System.currentTimeMillis();
+    return true;
+  }
+
+  /**
+   * Добавляет поиск в пул (если он ещё не содержится в пуле или вытеснен) и отмечает его как последний использованный
+   * @param searchId
+   * @return {@code true} если поиск уже содержался в пуле; {@code false} если поиск добавлен, в том числе взамен вытесненного:
+   * атрибуты сессии вытесненного поиска могут быть ещё не удалены и должны быть инвалидированы
+   */
+  public synchronized boolean put(String searchId) {
+    if (touch(searchId)) {
+      return true;
+    }
+    entries.put(searchId, new Entry());
+    return false;
+  }
+
+  /**
+   * Сохраняет размер результирующего списка поиска для учёта в ограничении {@link #MAX_ROW_COUNT_PROPERTY}
+   * @param searchId
+   * @param rowCount 0 если результирующий список не сохранён в сессии, а также если записи списка принадлежат не поиску:
+   * список разделяемого кеша {@link SharedResultsetCache} (учитывается ограничениями кеша) или список другого поиска сессии
+   */
+  public synchronized void setRowCount(String searchId, int rowCount) {
+    Entry entry = entries.get(searchId);
+    if (entry != null && !entry.evicted) {
+      if (registered) {
+        globalRowCount.addAndGet(rowCount - entry.rowCount);
+      }
+      entry.rowCount = rowCount;
+      entry.lastAccessTime = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Проверяет, может ли результирующий список данного размера быть размещён в сессии.
+   * <br/>
+   * Давние поиски сессии вытесняются при превышении ограничения одной сессии, поэтому список сравнивается с ограничением сессии сам по себе.
+   * Ограничение всего приложения, напротив, проверяется с учётом текущего использования: список, который не помещается
+   * в оставшийся объём, не загружается, чтобы не вытеснять поиски других сессий.
+   * @param rowCount число записей результирующего списка
+   * @return {@code false} если список превышает ограничение числа записей одной сессии
+   * или не помещается в оставшийся объём ограничения всего приложения
+   */
+  public boolean isAdmissible(long rowCount) {
+    return rowCount <= Integer.getInteger(MAX_ROW_COUNT_PROPERTY, DEFAULT_MAX_ROW_COUNT)
+        && globalRowCount.get() + rowCount <= Integer.getInteger(GLOBAL_MAX_ROW_COUNT_PROPERTY, DEFAULT_GLOBAL_MAX_ROW_COUNT);
+  }
+
+  /**
+   * @return идентификаторы (не вытесненных) поисков пула, от давнее всего использованного к последнему использованному
+   */
+  public synchronized List<String> getSearchIds() {
+    final List<String> searchIds = new ArrayList<>();
+    for (Map.Entry<String, Entry> entry: entries.entrySet()) {
+      if (!entry.getValue().evicted) {
+        searchIds.add(entry.getKey());
+      }
+    }
+    return searchIds;
+  }
+
+  /**
+   * @return суммарное число записей в результирующих списках поисков пула
+   */
+  public synchronized long getRowCount() {
+    long rowCount = 0;
+    for (Entry entry: entries.values()) {
+      rowCount += entry.rowCount;
+    }
+    return rowCount;
+  }
+
+  /**
+   * Вытесняет из пула давнее всего использованные поиски (кроме указанного), пока пул превышает ограничения,
+   * и удаляет атрибуты сессии вытесненных поисков, в том числе поисков, ранее вытесненных при превышении глобального ограничения.
+   * Вызывается в потоке запроса данной сессии
+   * @param session сессия, которой принадлежит пул
+   * @param retainedSearchId поиск, который не должен быть вытеснен (как правило, текущий)
+   */
+  public void evict(HttpSession session, String retainedSearchId) {
+    final int maxSearchCount = Integer.getInteger(MAX_SEARCH_COUNT_PROPERTY, DEFAULT_MAX_SEARCH_COUNT);
+    final int maxRowCount = Integer.getInteger(MAX_ROW_COUNT_PROPERTY, DEFAULT_MAX_ROW_COUNT);
+
+    final List<String> evictedSearchIds = new ArrayList<>();
+
+    synchronized (this) {
+      // поиски, вытесненные потоками других сессий
+      final Iterator<Map.Entry<String, Entry>> evictedIt = entries.entrySet().iterator();
+      while (evictedIt.hasNext()) {
+        final Map.Entry<String, Entry> entry = evictedIt.next();
+        if (entry.getValue().evicted && !entry.getKey().equals(retainedSearchId)) {
+          evictedIt.remove();
+          evictedSearchIds.add(entry.getKey());
+        }
+      }
+
+      long rowCount = getRowCount();
+
+      final Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+      while ((entries.size() > maxSearchCount || rowCount > maxRowCount) && it.hasNext()) {
+        final Map.Entry<String, Entry> entry = it.next();
+        if (!entry.getKey().equals(retainedSearchId)) {
+          rowCount -= entry.getValue().rowCount;
+          if (registered) {
+            globalRowCount.addAndGet(-entry.getValue().rowCount);
+          }
+          it.remove();
+          evictedSearchIds.add(entry.getKey());
+        }
+      }
+    }
+
+    for (String searchId: evictedSearchIds) {
+      removeSearchAttributes(session, searchId);
+    }
+
+    evictGlobal(this, retainedSearchId);
+  }
+
+  /**
+   * Вытесняет давнее всего использованные поиски всех сессий (кроме указанного), пока превышено ограничение {@link #GLOBAL_MAX_ROW_COUNT_PROPERTY}.
+   * Поиски других сессий только отмечаются вытесненными, см. {@link #markEvicted(String)}
+   */
+  private static void evictGlobal(SessionSearchPool retainedPool, String retainedSearchId) {
+    final int globalMaxRowCount = Integer.getInteger(GLOBAL_MAX_ROW_COUNT_PROPERTY, DEFAULT_GLOBAL_MAX_ROW_COUNT);
+
+    while (globalRowCount.get() > globalMaxRowCount) {
+      final List<SessionSearchPool> poolsSnapshot;
+      synchronized (pools) {
+        poolsSnapshot = new ArrayList<>(pools);
+      }
+
+      SessionSearchPool oldestPool = null;
+      String oldestSearchId = null;
+      long oldestAccessTime = Long.MAX_VALUE;
+
+      for (SessionSearchPool pool: poolsSnapshot) {
+        synchronized (pool) {
+          // entries are access-ordered: the first eligible entry is the oldest one of the pool
+          for (Map.Entry<String, Entry> entry: pool.entries.entrySet()) {
+            if (entry.getValue().rowCount > 0 && !(pool == retainedPool && entry.getKey().equals(retainedSearchId))) {
+              if (entry.getValue().lastAccessTime < oldestAccessTime) {
+                oldestPool = pool;
+                oldestSearchId = entry.getKey();
+                oldestAccessTime = entry.getValue().lastAccessTime;
+              }
+              break;
+            }
+          }
+        }
+      }
+
+      if (oldestPool == null) {
+        // only the retained search holds records
+        break;
+      }
+
+      oldestPool.markEvicted(oldestSearchId);
+    }
+  }
+
+  /**
+   * Отмечает поиск вытесненным: его записи больше не учитываются в ограничениях, поиск не используется
+   * ({@link #touch(String)}, {@link #getSearchIds()}), но атрибуты сессии не удаляются, так как вытеснение
+   * может осуществляться в потоке другой сессии, а запрос сессии пула может в этот момент использовать поиск.
+   * Атрибуты удаляются при следующем вызове {@link #evict(HttpSession, String)} в потоке данной сессии
+   * @param searchId
+   */
+  private synchronized void markEvicted(String searchId) {
+    final Entry entry = entries.get(searchId);
+    if (entry == null || entry.evicted) {
+      return;
+    }
+    if (registered) {
+      globalRowCount.addAndGet(-entry.rowCount);
+    }
+    entry.rowCount = 0;
+    entry.evicted = true;
+  }
+
+  /**
+   * @return суммарное число записей в результирующих списках поисков всех сессий приложения
+   */
+  public static long getGlobalRowCount() {
+    return globalRowCount.get();
+  }
+
+  /**
+   * @return число сессий приложения, имеющих пул поисков
+   */
+  public static int getSessionCount() {
+    synchronized (pools) {
+      return pools.size();
+    }
+  }
+
+  private static void removeSearchAttributes(HttpSession session, String searchId) {
+    final String keyPrefix = getSearchAttrKeyPrefix(searchId) + ";";
+
+    final List<String> keys = new ArrayList<>();
+    final Enumeration<String> attributeNames = session.getAttributeNames();
+    while (attributeNames.hasMoreElements()) {
+      final String key = attributeNames.nextElement();
+      if (key.startsWith(keyPrefix)) {
+        keys.add(key);
+      }
+    }
+
+    for (String key: keys) {
+      session.removeAttribute(key);
+    }
+  }
+}
@@ -0,0 +1,645 @@
+package org.jepria.server.service.rest;
+
+import org.jepria.server.data.CompactResultset;
+import org.jepria.server.data.Dao;
+import org.jepria.server.data.DtoAccessor;
+import org.jepria.server.data.PagedDao;
+import org.jepria.server.data.RecordComparator;
+import org.jepria.server.data.RecordDefinition;
+import org.jepria.server.data.SortDelta;
+import org.jepria.server.service.security.Credential;
+
+import javax.servlet.http.HttpSession;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Общая часть сессионных реализаций поисковых сервисов ({@link SearchServiceImpl}, {@link PostGetSearchServiceImpl}):
+ * атрибуты поисков в сессии, DAO-поиск, сортировка результирующего списка и постраничный поиск на стороне БД.
+ * <br/>
+ * Один и тот же клиент может работать одновременно с несколькими поисками (в том числе на одну и ту же сущность):
+ * уникальность поиска определяется сущностью и составом поискового запроса (поисковым шаблоном и конфигурацией сортировки),
+ * каждый уникальный поиск имеет собственный searchId и хранится в пуле поисков сессии {@link SessionSearchPool},
+ * ограниченном по числу поисков и суммарному числу записей результирующих списков.
+ * Новый поиск, отличающийся от поиска пула только конфигурацией сортировки, не загружает результирующий список заново,
+ * а пересортировывает копию списка этого поиска (см. {@link #reuseSiblingResultset(String)}, {@link SortDelta}).
+ * @param <R> тип поискового запроса
+ */
+public abstract class SessionSearchServiceBase<R> {
+
+  protected final Dao dao;
+
+  protected final RecordDefinition recordDefinition;
+
+  protected final Supplier<HttpSession> session;
+
+  private final String entityName;
+
+  /**
+   *
+   * @param dao
+   * @param recordDefinition
+   * @param session используется Supplier потому что сессия – вещь зыбкая, неперсистентная (имеет право изменяться от вызова к вызову или с течением времени)
+   */
+  protected SessionSearchServiceBase(Dao dao, RecordDefinition recordDefinition, Supplier<HttpSession> session) {
+
+    this.dao = dao;
+
+    this.recordDefinition = recordDefinition;
+
+    this.session = session;
+
+    entityName = SharedResultsetCache.getEntityName(dao);
+  }
+
+  /**
+   * @param searchRequest non-null
+   * @return поисковый шаблон запроса
+   */
+  protected abstract Object getTemplate(R searchRequest);
+
+  /**
+   * @param searchRequest non-null
+   * @return токен поискового шаблона запроса, см. {@link TemplateTokenUtil}
+   */
+  protected abstract String getTemplateToken(R searchRequest);
+
+  /**
+   * @param searchRequest non-null
+   * @return <b>упорядоченная</b> конфигурация сортировки запроса, может быть null
+   */
+  protected abstract Map<String, Integer> getListSortConfig(R searchRequest);
+
+  /**
+   * Создаёт searchId для кортежа {session,entity,template,sort}, см. {@link SessionSearchPool#createSearchId}
+   * @param searchRequest
+   * @return non-null
+   */
+  protected String createSearchId(R searchRequest) {
+    final String templateToken = searchRequest == null ? null : getTemplateToken(searchRequest);
+    final Map<String, Integer> listSortConfig = searchRequest == null ? null : getListSortConfig(searchRequest);
+    return SessionSearchPool.createSearchId(session.get().getId(), entityName, templateToken, listSortConfig);
+  }
+
+  /**
+   * Определяет владельца результирующего списка в разделяемом кеше {@link SharedResultsetCache}:
+   * списки разных владельцев не разделяются
+   * @param credential
+   * @return по умолчанию operatorId; реализация может вернуть, например, отпечаток набора ролей пользователя,
+   * если результат поиска зависит только от них
+   */
+  protected Object getSharedResultsetOwner(Credential credential) {
+    return credential == null ? null : credential.getOperatorId();
+  }
+
+  /**
+   * Property-интерфейс для управления атрибутами сессии
+   * @param <T>
+   */
+  protected static interface Property<T> {
+    T get(String searchId);
+    void set(String searchId, T object);
+  }
+
+  /**
+   * Контейнер сохранённого в сессию клиентского поискового запроса.
+   */
+  //  паттерн "Свойство" использован для инкапсуляции чтения и записи атрибута сессии
+  protected final Property<R> sessionSearchRequest = new Property<R>() {
+    @Override
+    @SuppressWarnings("unchecked")
+    public R get(String searchId) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=sreq;";
+      return (R)session.get().getAttribute(key);
+    }
+    @Override
+    public void set(String searchId, R searchRequest) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=sreq;";
+      if (searchRequest == null) {
+        session.get().removeAttribute(key);
+      } else {
+        session.get().setAttribute(key, searchRequest);
+      }
+    }
+  };
+
+  /**
+   * Контейнер сохранённого в сессию результирующего списка в соответствии с последним клиентским запросом
+   */
+  //  паттерн "Свойство" использован для инкапсуляции чтения и записи атрибута сессии
+  protected final Property<List<?>> sessionResultset = new Property<List<?>>() {
+    @Override
+    public List<?> get(String searchId) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=rset;";
+      return (List<?>)session.get().getAttribute(key);
+    }
+    @Override
+    public void set(String searchId, List<?> resultset) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=rset;";
+      if (resultset == null) {
+        session.get().removeAttribute(key);
+      } else {
+        session.get().setAttribute(key, resultset);
+      }
+    }
+  };
+
+  /**
+   * Контейнер сохранённого в сессию признака, является ли сохранённый в сессии результирующий список
+   * отсортированным в соответствии с последним клиентским запросом
+   */
+  //  паттерн "Свойство" использован для инкапсуляции чтения и записи атрибута сессии
+  protected final Property<Boolean> sessionResultsetSortValid = new Property<Boolean>() {
+    @Override
+    public Boolean get(String searchId) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=sort;";
+      return Boolean.TRUE.equals(session.get().getAttribute(key));
+    }
+    @Override
+    public void set(String searchId, Boolean resultsetSortValid) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=sort;";
+      if (Boolean.FALSE.equals(resultsetSortValid)) {
+        session.get().removeAttribute(key);
+      } else {
+        session.get().setAttribute(key, true);
+      }
+    }
+
+  };
+
+  /**
+   * Контейнер сохранённой в сессию конфигурации сортировки, в соответствии с которой в данный момент
+   * отсортирован сохранённый в сессии результирующий список (независимо от валидности сортировки).
+   * Используется для инкрементальной пересортировки списка при изменении конфигурации сортировки, см. {@link SortDelta}
+   */
+  //  паттерн "Свойство" использован для инкапсуляции чтения и записи атрибута сессии
+  protected final Property<Map<String, Integer>> sessionResultsetSortConfig = new Property<Map<String, Integer>>() {
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Integer> get(String searchId) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=sortcfg;";
+      return (Map<String, Integer>)session.get().getAttribute(key);
+    }
+    @Override
+    public void set(String searchId, Map<String, Integer> sortConfig) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=sortcfg;";
+      if (sortConfig == null) {
+        session.get().removeAttribute(key);
+      } else {
+        session.get().setAttribute(key, sortConfig);
+      }
+    }
+  };
+
+  /**
+   * Признак того, что результирующий список, сохранённый в сессию, является списком разделяемого кеша {@link SharedResultsetCache}
+   * (неизменяемым и используемым другими сессиями) или списком другого поиска сессии (см. {@link #reuseSiblingResultset(String)});
+   * такой список копируется перед сортировкой
+   */
+  //  паттерн "Свойство" использован для инкапсуляции чтения и записи атрибута сессии
+  protected final Property<Boolean> sessionResultsetShared = new Property<Boolean>() {
+    @Override
+    public Boolean get(String searchId) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=shared;";
+      return Boolean.TRUE.equals(session.get().getAttribute(key));
+    }
+    @Override
+    public void set(String searchId, Boolean resultsetShared) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=shared;";
+      if (Boolean.FALSE.equals(resultsetShared)) {
+        session.get().removeAttribute(key);
+      } else {
+        session.get().setAttribute(key, resultsetShared);
+      }
+    }
+  };
+
+  /**
+   * Контейнер сохранённого в сессию числа найденных записей при постраничном поиске (см. {@link PagedDao})
+   */
+  //  паттерн "Свойство" использован для инкапсуляции чтения и записи атрибута сессии
+  protected final Property<Integer> sessionPagedResultsetSize = new Property<Integer>() {
+    @Override
+    public Integer get(String searchId) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=count;";
+      return (Integer)session.get().getAttribute(key);
+    }
+    @Override
+    public void set(String searchId, Integer resultsetSize) {
+      String key = SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=count;";
+      if (resultsetSize == null) {
+        session.get().removeAttribute(key);
+      } else {
+        session.get().setAttribute(key, resultsetSize);
+      }
+    }
+  };
+
+  /**
+   * Добавляет поиск в пул поисков сессии, инвалидирует результирующий список нового поиска
+   * и сохраняет поисковые параметры в сессию.
+   * <br/>
+   * Поисковый шаблон и конфигурация сортировки входят в searchId, поэтому параметры существующего поиска
+   * совпадают с новыми, и его результирующий список и сортировка остаются валидными.
+   * @param searchRequest
+   * @param reload инвалидировать ли результирующий список существующего поиска (и список разделяемого кеша)
+   * @return searchId
+   */
+  protected String putSearch(R searchRequest, boolean reload) {
+
+    final String searchId = createSearchId(searchRequest);
+
+    // добавляем поиск в пул поисков сессии (или отмечаем существующий поиск как последний использованный)
+    final SessionSearchPool searchPool = SessionSearchPool.get(session.get());
+    // атрибуты поиска, вытесненного при превышении глобального ограничения, могут оставаться в сессии
+    if (!searchPool.put(searchId) || sessionSearchRequest.get(searchId) == null) {
+      invalidateResultsetAndSort(searchId);
+    }
+
+    if (reload) {
+      invalidateResultsetAndSort(searchId);
+      removeSharedResultset(searchRequest);
+    } else if (sessionResultset.get(searchId) == null) {
+      reuseSiblingResultset(searchId);
+    }
+
+
+    // сохраняем новые поисковые параметры
+    sessionSearchRequest.set(searchId, searchRequest);
+
+    searchPool.evict(session.get(), searchId);
+
+    return searchId;
+  }
+
+  /**
+   * Удаляет результирующий список поискового шаблона из разделяемого кеша {@link SharedResultsetCache} (если кеш используется)
+   * @param searchRequest
+   */
+  protected void removeSharedResultset(R searchRequest) {
+    if (recordDefinition.getSharedResultsetTtl() > 0) {
+      SharedResultsetCache.getInstance().remove(entityName, searchRequest == null ? null : getTemplateToken(searchRequest));
+    }
+  }
+
+  /**
+   * Переиспользует для нового поиска результирующий список поиска пула сессии с тем же поисковым шаблоном
+   * (отличающегося только конфигурацией сортировки): список не загружается заново, а пересортировывается (см. {@link SortDelta}).
+   * Список используется обоими поисками, поэтому копируется перед сортировкой.
+   * @param searchId новый поиск, не имеющий результирующего списка
+   */
+  protected void reuseSiblingResultset(String searchId) {
+    final SessionSearchPool searchPool = SessionSearchPool.get(session.get());
+    final String templatePrefix = SessionSearchPool.getTemplatePrefix(searchId);
+
+    final List<String> searchIds = searchPool.getSearchIds();
+    // начиная с последнего использованного поиска
+    for (int i = searchIds.size() - 1; i >= 0; i--) {
+      final String siblingSearchId = searchIds.get(i);
+      if (siblingSearchId.equals(searchId) || !siblingSearchId.startsWith(templatePrefix)
+          || !sessionResultsetSortValid.get(siblingSearchId)) {
+        continue;
+      }
+
+      final List<?> resultset = sessionResultset.get(siblingSearchId);
+      if (resultset != null) {
+        sessionResultset.set(searchId, resultset);
+        sessionResultsetSortConfig.set(searchId, sessionResultsetSortConfig.get(siblingSearchId));
+        sessionResultsetShared.set(searchId, true);
+        onResultsetChanged(searchId);
+        // записи учитываются в пуле поиском, которому принадлежит список, до его копирования
+        searchPool.setRowCount(searchId, 0);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Вызывается после изменения результирующего списка поиска в сессии: загрузки, сортировки или переиспользования списка другого поиска
+   * @param searchId
+   */
+  protected void onResultsetChanged(String searchId) {
+  }
+
+  /**
+   * Осуществляет DAO-поиск и сохраняет результирующий список в сессию
+   */
+  protected void doSearch(String searchId, Credential credential) {
+
+    final R searchRequest = sessionSearchRequest.get(searchId);
+    if (searchRequest == null) {
+      throw new IllegalStateException("The session attribute must have already been set at this point");
+    }
+
+    List<?> resultset;
+
+    final long sharedResultsetTtl = recordDefinition.getSharedResultsetTtl();
+    if (sharedResultsetTtl > 0) {
+      // сессия хранит только ссылку на список разделяемого кеша
+      resultset = SharedResultsetCache.getInstance().get(entityName, getTemplateToken(searchRequest),
+          getSharedResultsetOwner(credential), sharedResultsetTtl,
+          () -> dao.find(
+              getTemplate(searchRequest),
+              credential == null ? null : credential.getOperatorId()));
+    } else {
+      resultset = dao.find(
+              getTemplate(searchRequest),
+              credential == null ? null : credential.getOperatorId());
+    }
+
+    if (resultset == null) {
+      resultset = new ArrayList<>();
+    } else if (sharedResultsetTtl <= 0 && recordDefinition.isCompactResultset()) {
+      // сессия хранит список в компактном представлении, записи материализуются только при обращении к ним
+      resultset = CompactResultset.compact(resultset);
+    }
+
+    // сессионный атрибут проставляется именно в doSearch
+    sessionResultset.set(searchId, resultset);
+    // новый список не отсортирован
+    sessionResultsetSortConfig.set(searchId, null);
+    sessionResultsetShared.set(searchId, sharedResultsetTtl > 0);
+    onResultsetChanged(searchId);
+
+    // учёт размера результирующего списка в пуле поисков сессии, вытеснение давних поисков;
+    // записи списка разделяемого кеша учитываются ограничениями самого кеша, а не каждой использующей его сессии
+    final SessionSearchPool searchPool = SessionSearchPool.get(session.get());
+    searchPool.setRowCount(searchId, sharedResultsetTtl > 0 ? 0 : resultset.size());
+    searchPool.evict(session.get(), searchId);
+  }
+
+  /**
+   * Осуществляет сортировку результирующего списка, сохранённого в сессию, и выставляет сессионный признак валидности его сортировки
+   */
+  protected void doSort(String searchId) {
+
+    final R searchRequest = sessionSearchRequest.get(searchId);
+    if (searchRequest == null) {
+      throw new IllegalStateException("The session attribute must have already been set at this point");
+    }
+
+
+    Map<String, Integer> listSortConfig = getListSortConfig(searchRequest);
+    if (listSortConfig != null && !listSortConfig.isEmpty()) {
+
+      List<?> resultset = sessionResultset.get(searchId);
+
+      if (resultset == null) {
+        throw new IllegalStateException("The session attribute must have already been set at this point");
+      }
+
+      if (resultset.size() > 1) { // sort lengthy lists only
+
+        if (sessionResultsetShared.get(searchId)) {
+          // copy-on-sort: the shared list is used by other sessions or searches, so the search sorts its own list of the (shared) records
+          resultset = resultset instanceof CompactResultset ? ((CompactResultset) resultset).copy() : new ArrayList<>(resultset);
+          sessionResultset.set(searchId, resultset);
+          sessionResultsetShared.set(searchId, false);
+
+          // копия списка другого поиска сессии принадлежит теперь данному поиску (копия списка разделяемого кеша ссылается на записи кеша)
+          if (recordDefinition.getSharedResultsetTtl() <= 0) {
+            final SessionSearchPool searchPool = SessionSearchPool.get(session.get());
+            searchPool.setRowCount(searchId, resultset.size());
+            searchPool.evict(session.get(), searchId);
+          }
+        }
+
+        final Comparator<Object> sortComparator = createRecordComparator(listSortConfig);
+
+        if (sortComparator instanceof RecordComparator) {
+          // список, уже отсортированный по другой конфигурации, пересортировывается инкрементально (если возможно);
+          // значения полей сортировки извлекаются из записей однократно, большие списки сортируются параллельно
+          final SortDelta sortDelta = SortDelta.plan(sessionResultsetSortConfig.get(searchId), listSortConfig);
+          ((RecordComparator) sortComparator).sort(resultset, sortDelta,
+              recordDefinition.getParallelSortThreshold(), recordDefinition.getParallelSortPool());
+        } else {
+          Collections.sort(resultset, sortComparator);
+        }
+        // sorting affects the session attribute as well
+
+        sessionResultsetSortConfig.set(searchId, new LinkedHashMap<>(listSortConfig));
+      }
+    }
+
+    // сессионный атрибут проставляется именно в doSort
+    sessionResultsetSortValid.set(searchId, true);
+    onResultsetChanged(searchId);
+  }
+
+  /**
+   * Создаёт Comparator записей для сортировки списка
+   * @param listSortConfig <b>ordered</b> map, see {@link }
+   * @return
+   */
+  protected Comparator<Object> createRecordComparator(Map<String, Integer> listSortConfig) {
+
+    return new RecordComparator(new ArrayList<>(listSortConfig.keySet()),
+        fieldName -> recordDefinition.getFieldComparator(fieldName),
+        fieldName -> {
+          if (listSortConfig != null) {
+            Integer sortOrder = listSortConfig.get(fieldName);
+            if (sortOrder != null) {
+              return sortOrder;
+            }
+          }
+          return 1;
+        });
+  }
+
+  /**
+   *
+   * @param credential
+   * @param sort whether to return a resultset in "raw" order (as-is, without applying sort configuration from the search request), or with requested sort configuration applied
+   * @return non-null, at least empty
+   */
+  protected List<?> getResultsetLocal(String searchId, Credential credential, boolean sort) {
+
+    // поиск (если необходимо)
+    List<?> resultset = sessionResultset.get(searchId);
+
+    if (resultset == null) {// поиск не осуществлялся или был инвалидирован
+      doSearch(searchId, credential);
+    }
+
+
+    if (sort) {// сортировка (если необходимо)
+
+      boolean resultsetSortValid = sessionResultsetSortValid.get(searchId);
+
+      if (!resultsetSortValid) {// сортировка не осуществлялась или была инвалидирована
+        doSort(searchId);
+      }
+    }
+
+
+    // check session/resultset state
+    resultset = sessionResultset.get(searchId);
+    if (resultset == null) {
+      throw new IllegalStateException("The session attribute must have already been set at this point");
+    }
+
+    return resultset;
+  }
+
+  /**
+   * Определяет, осуществлять ли поиск постранично на стороне БД (см. {@link PagedDao}), без загрузки всего результирующего списка в сессию
+   * @param searchId
+   * @param credential
+   * @return {@code true} если Dao реализует {@link PagedDao}, результирующий список ещё не загружен в сессию
+   * и число найденных записей превышает {@link RecordDefinition#getPagedSearchThreshold()}
+   * или ограничения пула поисков сессии ({@link SessionSearchPool#isAdmissible(long)})
+   * <br/>
+   * Для определения числа найденных записей перед загрузкой списка выполняется дополнительный запрос {@link PagedDao#count}
+   * (однократно для поиска). Запрос не выполняется, если поисковый шаблон ограничивает число записей ({@link #getMaxRowCount})
+   * так, что результирующий список заведомо не превышает ни порога постраничного поиска, ни ограничений пула поисков.
+   */
+  protected boolean isPagedSearch(String searchId, Credential credential) {
+    if (!(dao instanceof PagedDao)) {
+      return false;
+    }
+
+    if (sessionResultset.get(searchId) != null) {
+      // the resultset has already been loaded into the session
+      return false;
+    }
+
+    final int pagedSearchThreshold = recordDefinition.getPagedSearchThreshold();
+    if (pagedSearchThreshold < 0) {
+      return false;
+    }
+
+    final R searchRequest = sessionSearchRequest.get(searchId);
+    final Integer maxRowCount = searchRequest == null ? null : getMaxRowCount(searchRequest);
+    if (maxRowCount != null && maxRowCount >= 0 && maxRowCount <= pagedSearchThreshold
+        && SessionSearchPool.get(session.get()).isAdmissible(maxRowCount)) {
+      // the resultset fits into the session whatever its size: no need to count the records
+      return false;
+    }
+
+    final int resultsetSize = getPagedResultsetSize(searchId, credential);
+
+    // admission control: the resultset exceeding the session search pool limits is not loaded into the session at all
+    return resultsetSize > pagedSearchThreshold || !SessionSearchPool.get(session.get()).isAdmissible(resultsetSize);
+  }
+
+  /**
+   * Имя поля поискового шаблона, ограничивающего число найденных записей (см. {@link Dao#find})
+   */
+  protected static final String MAX_ROW_COUNT_FIELD_NAME = "maxRowCount";
+
+  /**
+   * @param searchRequest non-null
+   * @return ограничение числа записей результирующего списка, заданное полем {@link #MAX_ROW_COUNT_FIELD_NAME} поискового шаблона
+   * (объекта SearchDto или Map), или {@code null}, если шаблон не ограничивает число записей
+   */
+  protected Integer getMaxRowCount(R searchRequest) {
+    final Object template = getTemplate(searchRequest);
+
+    final Object maxRowCount;
+    if (template == null) {
+      maxRowCount = null;
+    } else if (template instanceof Map) {
+      maxRowCount = ((Map<?, ?>) template).get(MAX_ROW_COUNT_FIELD_NAME);
+    } else {
+      final DtoAccessor accessor = DtoAccessor.forClass(template.getClass());
+      final int index = accessor.indexOf(MAX_ROW_COUNT_FIELD_NAME);
+      maxRowCount = index == -1 ? null : accessor.get(template, index);
+    }
+
+    return maxRowCount instanceof Number ? ((Number) maxRowCount).intValue() : null;
+  }
+
+  /**
+   * Осуществляет DAO-подсчёт найденных записей (однократно для поиска) и сохраняет его результат в сессию
+   * @param searchId
+   * @param credential
+   * @return число найденных записей
+   */
+  protected int getPagedResultsetSize(String searchId, Credential credential) {
+    Integer resultsetSize = sessionPagedResultsetSize.get(searchId);
+
+    if (resultsetSize == null) {
+      final R searchRequest = sessionSearchRequest.get(searchId);
+      if (searchRequest == null) {
+        throw new IllegalStateException("The session attribute must have already been set at this point");
+      }
+
+      resultsetSize = ((PagedDao) dao).count(
+          getTemplate(searchRequest),
+          credential == null ? null : credential.getOperatorId());
+
+      sessionPagedResultsetSize.set(searchId, resultsetSize);
+    }
+
+    return resultsetSize;
+  }
+
+  /**
+   * Осуществляет DAO-поиск только записей запрошенной страницы, отсортированных на стороне БД
+   * @param searchId
+   * @param pageSize
+   * @param page
+   * @param credential
+   * @return записи страницы или {@code null}, если страница не содержит записей
+   */
+  protected List<?> doSearchPage(String searchId, int pageSize, int page, Credential credential) {
+
+    final R searchRequest = sessionSearchRequest.get(searchId);
+    if (searchRequest == null) {
+      throw new IllegalStateException("The session attribute must have already been set at this point");
+    }
+
+    final int offset = pageSize * (page - 1);
+    if (offset >= getPagedResultsetSize(searchId, credential)) {
+      return null;
+    }
+
+    final List<?> pageRecords = ((PagedDao) dao).find(
+        getTemplate(searchRequest),
+        getListSortConfig(searchRequest),
+        offset,
+        pageSize,
+        credential == null ? null : credential.getOperatorId());
+
+    if (pageRecords == null || pageRecords.isEmpty()) {
+      return null;
+    }
+
+    return Collections.unmodifiableList(pageRecords);
+  }
+
+  protected static List<?> paging(List<?> resultset, int pageSize, int page) {
+    if (resultset == null) {
+      return null;
+    }
+
+    final int fromIndex = pageSize * (page - 1);
+
+    if (fromIndex >= resultset.size()) {
+      return null;
+    }
+
+    final int toIndex = Math.min(resultset.size(), fromIndex + pageSize);
+
+    if (fromIndex < toIndex) {
+
+      List<?> pageRecords = Collections.unmodifiableList(resultset.subList(fromIndex, toIndex));
+      return pageRecords;
+
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Invalidates both resultset and sort
+   */
+  protected void invalidateResultsetAndSort(String searchId) {
+    sessionResultset.set(searchId, null);
+    sessionResultsetSortValid.set(searchId, false);
+    sessionResultsetSortConfig.set(searchId, null);
+    sessionResultsetShared.set(searchId, false);
+    sessionPagedResultsetSize.set(searchId, null);
+    SessionSearchPool.get(session.get()).setRowCount(searchId, 0);
+  }
+}
@@ -0,0 +1,293 @@
+package org.jepria.server.service.rest;
+
+import org.jepria.server.data.Dao;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Разделяемый между сессиями (application-scoped) кеш результирующих списков поиска.
+ * <br/>
+ * Предназначен для поисков, которые многие пользователи выполняют с одинаковыми поисковыми шаблонами (например, по справочникам):
+ * результирующий список загружается из БД однократно и хранится в единственном экземпляре,
+ * а сессии хранят только ссылку на него (и копируют список ссылок на записи лишь для сортировки).
+ * <br/>
+ * Ключ кеша: сущность + поисковый шаблон + владелец результата (как правило, operatorId, см. {@link SearchServiceImpl#getSharedResultsetOwner}).
+ * Одновременные запросы по одному ключу выполняют единственную загрузку.
+ * <br/>
+ * Записи кеша устаревают по истечении времени жизни, задаваемого для каждой сущности
+ * ({@link org.jepria.server.data.RecordDefinition#getSharedResultsetTtl()}), и вытесняются давнее всего использованные,
+ * пока кеш превышает ограничения, задаваемые системными свойствами {@link #MAX_ENTRY_COUNT_PROPERTY} и {@link #MAX_ROW_COUNT_PROPERTY}.
+ * <br/>
+ * Списки, возвращаемые кешем, неизменяемы.
+ */
+public class SharedResultsetCache {
+
+  /**
+   * Имя системного свойства, определяющего максимальное число результирующих списков в кеше
+   */
+  public static final String MAX_ENTRY_COUNT_PROPERTY = "org.jepria.server.service.rest.SharedResultsetCache.maxEntryCount";
+
+  public static final int DEFAULT_MAX_ENTRY_COUNT = 100;
+
+  /**
+   * Имя системного свойства, определяющего максимальное суммарное число записей в результирующих списках кеша
+   */
+  public static final String MAX_ROW_COUNT_PROPERTY = "org.jepria.server.service.rest.SharedResultsetCache.maxRowCount";
+
+  public static final int DEFAULT_MAX_ROW_COUNT = 1000000;
+
+  private static final SharedResultsetCache instance = new SharedResultsetCache();
+
+  /**
+   * @return non-null
+   */
+  public static SharedResultsetCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Определяет имя сущности Dao для ключей кеша (а также searchId поисков).
+   * <br/>
+   * Dao, как правило, является прокси (см. {@link org.jepria.compat.server.dao.transaction.TransactionFactory#createProxy}),
+   * имя класса которого не связано с сущностью, поэтому сущность определяется прикладным Dao-интерфейсом:
+   * первым интерфейсом класса Dao (или его суперклассов), расширяющим {@link Dao} и не принадлежащим пакету {@link Dao}.
+   * Поэтому прикладные Dao различных сущностей должны реализовывать различные прикладные Dao-интерфейсы.
+   * @param dao non-null
+   * @return полное имя прикладного Dao-интерфейса, либо полное имя класса Dao, если такой интерфейс не найден
+   */
+  public static String getEntityName(Dao dao) {
+    for (Class<?> cls = dao.getClass(); cls != null; cls = cls.getSuperclass()) {
+      for (Class<?> iface: cls.getInterfaces()) {
+        if (Dao.class.isAssignableFrom(iface) && !iface.getName().startsWith(DAO_PACKAGE_PREFIX)) {
+          return iface.getName();
+        }
+      }
+    }
+    if (Proxy.isProxyClass(dao.getClass())) {
+      // the proxy implements the library interfaces only: the entity cannot be distinguished
+      return dao.getClass().getInterfaces()[0].getName();
+    }
+    return dao.getClass().getName();
+  }
+
+  private static final String DAO_PACKAGE_PREFIX = Dao.class.getName().substring(0, Dao.class.getName().lastIndexOf('.') + 1);
+
+  private static final class Key {
+    final String entityName;
+    final String templateToken;
+    final Object owner;
+
+    Key(String entityName, String templateToken, Object owner) {
+      this.entityName = entityName;
+      this.templateToken = templateToken;
+      this.owner = owner;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(entityName, key.entityName)
+          && Objects.equals(templateToken, key.templateToken)
+          && Objects.equals(owner, key.owner);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(entityName, templateToken, owner);
+    }
+  }
+
+  private static final class Entry {
+    final List<?> resultset;
+    /**
+     * по {@link System#nanoTime()}
+     */
+    final long expiresAt;
+
+    Entry(List<?> resultset, long expiresAt) {
+      this.resultset = resultset;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * access-ordered: от давнее всего использованного списка к последнему использованному
+   */
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Загрузки, выполняемые в данный момент
+   */
+  private final Map<Key, CompletableFuture<List<?>>> loads = new HashMap<>();
+
+  private long rowCount = 0;
+
+  protected SharedResultsetCache() {
+  }
+
+  /**
+   * Возвращает закешированный результирующий список или загружает его (однократно для одновременных запросов по одному ключу)
+   * @param entityName
+   * @param templateToken
+   * @param owner владелец результата: результаты разных владельцев не разделяются
+   * @param ttl время жизни записи кеша, в миллисекундах, positive
+   * @param loader загрузчик результирующего списка
+   * @return неизменяемый список, non-null
+   */
+  public List<?> get(String entityName, String templateToken, Object owner, long ttl, Supplier<List<?>> loader) {
+    final Key key = new Key(entityName, templateToken, owner);
+
+    final CompletableFuture<List<?>> load;
+    final boolean loadHere;
+
+    synchronized (this) {
+      final Entry entry = entries.get(key);
+      if (entry != null) {
+        if (entry.expiresAt - System.nanoTime() > 0) {
+          return entry.resultset;
+        }
+        removeEntry(key);
+      }
+
+      final CompletableFuture<List<?>> existingLoad = loads.get(key);
+      if (existingLoad != null) {
+        load = existingLoad;
+        loadHere = false;
+      } else {
+        load = new CompletableFuture<>();
+        loads.put(key, load);
+        loadHere = true;
+      }
+    }
+
+    if (loadHere) {
+      // загрузка выполняется вне блокировки кеша
+      try {
+        List<?> resultset = loader.get();
+        resultset = Collections.unmodifiableList(resultset == null ? new ArrayList<>() : resultset);
+        put(key, resultset, ttl, load);
+        load.complete(resultset);
+      } catch (RuntimeException | Error e) {
+        synchronized (this) {
+          loads.remove(key, load);
+        }
+        load.completeExceptionally(e);
+        throw e;
+      }
+    }
+
+    try {
+      return load.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException | CompletionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new IllegalStateException(cause);
+      }
+    }
+  }
+
+  private synchronized void put(Key key, List<?> resultset, long ttl, CompletableFuture<List<?>> load) {
+    if (loads.get(key) == load) {
+      loads.remove(key);
+
+      removeEntry(key);
+      entries.put(key, new Entry(resultset, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl)));
+      rowCount += resultset.size();
+
+      evict();
+    }
+  }
+
+  private void removeEntry(Key key) {
+    final Entry entry = entries.remove(key);
+    if (entry != null) {
+      rowCount -= entry.resultset.size();
+    }
+  }
+
+  /**
+   * Вытесняет устаревшие и давнее всего использованные списки, пока кеш превышает ограничения
+   */
+  private void evict() {
+    final int maxEntryCount = Integer.getInteger(MAX_ENTRY_COUNT_PROPERTY, DEFAULT_MAX_ENTRY_COUNT);
+    final int maxRowCount = Integer.getInteger(MAX_ROW_COUNT_PROPERTY, DEFAULT_MAX_ROW_COUNT);
+
+    final long now = System.nanoTime();
+    final Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      final Entry entry = it.next();
+      if (entries.size() > maxEntryCount || rowCount > maxRowCount || entry.expiresAt - now <= 0) {
+        rowCount -= entry.resultset.size();
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Удаляет из кеша результирующие списки поискового шаблона (всех владельцев), например, при явном запросе клиента на повторный поиск,
+   * так что следующее обращение загрузит их заново
+   * @param entityName
+   * @param templateToken
+   */
+  public synchronized void remove(String entityName, String templateToken) {
+    final Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      final Map.Entry<Key, Entry> entry = it.next();
+      if (Objects.equals(entityName, entry.getKey().entityName) && Objects.equals(templateToken, entry.getKey().templateToken)) {
+        rowCount -= entry.getValue().resultset.size();
+        it.remove();
+      }
+    }
+    loads.keySet().removeIf(key -> Objects.equals(entityName, key.entityName) && Objects.equals(templateToken, key.templateToken));
+  }
+
+  /**
+   * Удаляет из кеша все результирующие списки сущности (например, после изменения её данных)
+   * @param entityName
+   */
+  public synchronized void invalidate(String entityName) {
+    final Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      final Map.Entry<Key, Entry> entry = it.next();
+      if (Objects.equals(entityName, entry.getKey().entityName)) {
+        rowCount -= entry.getValue().resultset.size();
+        it.remove();
+      }
+    }
+    // выполняемые в данный момент загрузки могли прочитать устаревшие данные
+    loads.keySet().removeIf(key -> Objects.equals(entityName, key.entityName));
+  }
+
+  /**
+   * @return число результирующих списков в кеше
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * @return суммарное число записей в результирующих списках кеша
+   */
+  public synchronized long getRowCount() {
+    return rowCount;
+  }
+}
@@ -0,0 +1,26 @@
+package org.jepria.server.service.rest;
+
+import com.google.gson.Gson;
+
+/**
+ * Преобразование поисковых шаблонов в строковые токены, используемые для сравнения двух шаблонов на equals
+ * (сравнение оригинальных объектов может быть ненадёжным).
+ */
+public final class TemplateTokenUtil {
+
+  private TemplateTokenUtil() {}
+
+  /**
+   * Для преобразования в токен используется не общий контекстно-зависимый сериализатор, а просто _некий_ сериализатор.
+   * Экземпляр Gson потокобезопасен, поэтому создаётся однократно (и его кеш адаптеров типов переиспользуется всеми запросами)
+   */
+  private static final Gson templateTokenSerializer = new Gson();
+
+  /**
+   * @param templateDto поисковый шаблон
+   * @return строковый токен поискового шаблона или {@code null}, если шаблон {@code null}
+   */
+  public static String createTemplateToken(Object templateDto) {
+    return templateDto == null ? null : templateTokenSerializer.toJson(templateDto);
+  }
+}
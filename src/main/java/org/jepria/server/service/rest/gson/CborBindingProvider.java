@@ -0,0 +1,101 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.internal.bind.JsonTreeReader;
+import org.glassfish.jersey.message.internal.AbstractMessageReaderWriterProvider;
+import org.jepria.server.service.rest.ResultsetStream;
+
+import javax.json.bind.JsonbException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Entity provider (reader and writer) for the binary CBOR encoding (RFC 8949), negotiated by the {@code Accept}/{@code Content-Type}
+ * headers alongside JSON.
+ * <br/>
+ * The entities are (de)serialized by the same Gson instance as by {@link JsonBindingProvider}
+ * (the same resource method json config, DTO field model and date format), only the encoding of the values differs.
+ */
+@Produces(CborBindingProvider.APPLICATION_CBOR)
+@Consumes(CborBindingProvider.APPLICATION_CBOR)
+public class CborBindingProvider extends AbstractMessageReaderWriterProvider<Object> {
+
+  public static final String APPLICATION_CBOR = "application/cbor";
+
+  private static final String CBOR = "cbor";
+  private static final String PLUS_CBOR = "+cbor";
+
+  @Context
+  private ResourceInfo resourceInfo;
+
+  @Override
+  public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return supportsMediaType(mediaType);
+  }
+
+  @Override
+  public Object readFrom(Class<Object> type, Type genericType,
+                         Annotation[] annotations,
+                         MediaType mediaType,
+                         MultivaluedMap<String, String> httpHeaders,
+                         InputStream entityStream) throws IOException, WebApplicationException {
+    final JsonElement element;
+    try {
+      element = new CborParser(new BufferedInputStream(entityStream)).parse();
+    } catch (JsonParseException | EOFException e) {
+      // the same client error as for malformed JSON
+      throw new JsonbException("Failed to parse CBOR", e);
+    }
+    return JsonBindingProvider.getJsonb(resourceInfo).fromJson(new JsonTreeReader(element), genericType);
+  }
+
+  @Override
+  public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return supportsMediaType(mediaType);
+  }
+
+  @Override
+  public void writeTo(Object o, Class<?> type, Type genericType,
+                      Annotation[] annotations,
+                      MediaType mediaType,
+                      MultivaluedMap<String, Object> httpHeaders,
+                      OutputStream entityStream) throws IOException, WebApplicationException {
+    final GsonJsonb jsonb = JsonBindingProvider.getJsonb(resourceInfo);
+
+    final CborJsonWriter writer = new CborJsonWriter(new BufferedOutputStream(entityStream));
+    if (o instanceof ResultsetStream) {
+      // a lazy resultset (e.g. records loaded while iterating) is written as an array record by record
+      writer.beginArray();
+      for (Object record: (Iterable<?>) o) {
+        if (record == null) {
+          writer.nullValue();
+        } else {
+          jsonb.toJson(record, record.getClass(), writer);
+        }
+      }
+      writer.endArray();
+    } else {
+      jsonb.toJson(o, o.getClass(), writer);
+    }
+    // the entity stream is closed by the container, so only flush the writer
+    writer.flush();
+  }
+
+  private static boolean supportsMediaType(final MediaType mediaType) {
+    return mediaType.getSubtype().equals(CBOR) || mediaType.getSubtype().endsWith(PLUS_CBOR);
+  }
+}
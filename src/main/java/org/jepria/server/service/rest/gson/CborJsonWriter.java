@@ -0,0 +1,317 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.JsonParser;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gson writer, кодирующий записываемые значения в формате CBOR (RFC 8949) вместо текста JSON.
+ * <br/>
+ * Позволяет сериализовать объекты теми же адаптерами Gson (с тем же набором полей и форматом дат), что и JSON:
+ * объекты и массивы кодируются как map и array неопределённой длины, так что запись ведётся потоково;
+ * {@link BigDecimal} кодируется десятичной дробью (tag 4), целые, не умещающиеся в long, &mdash; bignum (tag 2/3).
+ */
+public class CborJsonWriter extends JsonWriter {
+
+  /**
+   * Символьный поток базового класса не используется: все методы записи переопределены
+   */
+  private static final Writer UNSUPPORTED_WRITER = new Writer() {
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      throw new UnsupportedOperationException("CborJsonWriter writes to the OutputStream only");
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  private static final int MAJOR_TYPE_UNSIGNED = 0;
+  private static final int MAJOR_TYPE_NEGATIVE = 1;
+  private static final int MAJOR_TYPE_BYTE_STRING = 2;
+  private static final int MAJOR_TYPE_TEXT_STRING = 3;
+  private static final int MAJOR_TYPE_ARRAY = 4;
+  private static final int MAJOR_TYPE_MAP = 5;
+  private static final int MAJOR_TYPE_TAG = 6;
+
+  private static final int INDEFINITE_ARRAY = 0x9f;
+  private static final int INDEFINITE_MAP = 0xbf;
+  private static final int BREAK = 0xff;
+  private static final int FALSE = 0xf4;
+  private static final int TRUE = 0xf5;
+  private static final int NULL = 0xf6;
+  private static final int FLOAT32 = 0xfa;
+  private static final int FLOAT64 = 0xfb;
+
+  private static final int TAG_POSITIVE_BIGNUM = 2;
+  private static final int TAG_NEGATIVE_BIGNUM = 3;
+  private static final int TAG_DECIMAL_FRACTION = 4;
+
+  private final OutputStream out;
+
+  /**
+   * Имя поля, записываемое только вместе со значением (поле с null-значением опускается, если не установлен serializeNulls)
+   */
+  private String deferredName;
+
+  /**
+   * @param out поток для записи, рекомендуется буферизованный
+   */
+  public CborJsonWriter(OutputStream out) {
+    super(UNSUPPORTED_WRITER);
+    if (out == null) {
+      throw new NullPointerException("out == null");
+    }
+    this.out = out;
+  }
+
+  @Override
+  public JsonWriter beginArray() throws IOException {
+    writeDeferredName();
+    out.write(INDEFINITE_ARRAY);
+    return this;
+  }
+
+  @Override
+  public JsonWriter endArray() throws IOException {
+    out.write(BREAK);
+    return this;
+  }
+
+  @Override
+  public JsonWriter beginObject() throws IOException {
+    writeDeferredName();
+    out.write(INDEFINITE_MAP);
+    return this;
+  }
+
+  @Override
+  public JsonWriter endObject() throws IOException {
+    deferredName = null;
+    out.write(BREAK);
+    return this;
+  }
+
+  @Override
+  public JsonWriter name(String name) throws IOException {
+    if (name == null) {
+      throw new NullPointerException("name == null");
+    }
+    if (deferredName != null) {
+      throw new IllegalStateException("Name is already set: " + deferredName);
+    }
+    deferredName = name;
+    return this;
+  }
+
+  private void writeDeferredName() throws IOException {
+    if (deferredName != null) {
+      writeString(deferredName);
+      deferredName = null;
+    }
+  }
+
+  @Override
+  public JsonWriter value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    writeDeferredName();
+    writeString(value);
+    return this;
+  }
+
+  @Override
+  public JsonWriter jsonValue(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    // the raw JSON value is re-encoded
+    Streams.write(JsonParser.parseString(value), this);
+    return this;
+  }
+
+  @Override
+  public JsonWriter nullValue() throws IOException {
+    if (deferredName != null) {
+      if (!getSerializeNulls()) {
+        // skip the name and the value
+        deferredName = null;
+        return this;
+      }
+      writeDeferredName();
+    }
+    out.write(NULL);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(boolean value) throws IOException {
+    writeDeferredName();
+    out.write(value ? TRUE : FALSE);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(Boolean value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    return value(value.booleanValue());
+  }
+
+  // no @Override: the method is declared by JsonWriter since Gson 2.9.1 only
+  public JsonWriter value(float value) throws IOException {
+    writeDeferredName();
+    out.write(FLOAT32);
+    writeInt(Float.floatToIntBits(value));
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(double value) throws IOException {
+    writeDeferredName();
+    out.write(FLOAT64);
+    writeLong(Double.doubleToLongBits(value));
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(long value) throws IOException {
+    writeDeferredName();
+    writeInteger(value);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(Number value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+
+    if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+        || value instanceof AtomicInteger || value instanceof AtomicLong) {
+      return value(value.longValue());
+    } else if (value instanceof Float) {
+      return value(value.floatValue());
+    } else if (value instanceof Double) {
+      return value(value.doubleValue());
+    }
+
+    final BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value
+        // BigInteger, Gson's LazilyParsedNumber and other Number implementations
+        : new BigDecimal(value.toString());
+
+    writeDeferredName();
+    if (decimal.scale() == 0) {
+      writeBigInteger(decimal.unscaledValue());
+    } else {
+      // decimal fraction: [exponent, mantissa]
+      writeHead(MAJOR_TYPE_TAG, TAG_DECIMAL_FRACTION);
+      writeHead(MAJOR_TYPE_ARRAY, 2);
+      writeInteger(-(long) decimal.scale());
+      writeBigInteger(decimal.unscaledValue());
+    }
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void writeString(String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeHead(MAJOR_TYPE_TEXT_STRING, bytes.length);
+    out.write(bytes);
+  }
+
+  private void writeInteger(long value) throws IOException {
+    if (value >= 0) {
+      writeHead(MAJOR_TYPE_UNSIGNED, value);
+    } else {
+      writeHead(MAJOR_TYPE_NEGATIVE, -1 - value);
+    }
+  }
+
+  private void writeBigInteger(BigInteger value) throws IOException {
+    if (value.bitLength() <= 64) {
+      // -2^64..2^64-1 fit the major types 0/1 (preferred serialization), the argument is passed as an unsigned long
+      if (value.signum() >= 0) {
+        writeHead(MAJOR_TYPE_UNSIGNED, value.longValue());
+      } else {
+        writeHead(MAJOR_TYPE_NEGATIVE, value.negate().subtract(BigInteger.ONE).longValue());
+      }
+      return;
+    }
+
+    final boolean negative = value.signum() < 0;
+    byte[] bytes = (negative ? value.negate().subtract(BigInteger.ONE) : value).toByteArray();
+    if (bytes[0] == 0) {
+      // strip the sign byte
+      final byte[] unsigned = new byte[bytes.length - 1];
+      System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+      bytes = unsigned;
+    }
+    writeHead(MAJOR_TYPE_TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_POSITIVE_BIGNUM);
+    writeHead(MAJOR_TYPE_BYTE_STRING, bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * @param argument unsigned (negative for values above Long.MAX_VALUE)
+   */
+  private void writeHead(int majorType, long argument) throws IOException {
+    final int type = majorType << 5;
+    if (argument < 0) {
+      out.write(type | 27);
+      writeLong(argument);
+    } else if (argument < 24) {
+      out.write(type | (int) argument);
+    } else if (argument <= 0xffL) {
+      out.write(type | 24);
+      out.write((int) argument);
+    } else if (argument <= 0xffffL) {
+      out.write(type | 25);
+      out.write((int) (argument >> 8));
+      out.write((int) argument);
+    } else if (argument <= 0xffffffffL) {
+      out.write(type | 26);
+      writeInt((int) argument);
+    } else {
+      out.write(type | 27);
+      writeLong(argument);
+    }
+  }
+
+  private void writeInt(int value) throws IOException {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  private void writeLong(long value) throws IOException {
+    writeInt((int) (value >>> 32));
+    writeInt((int) value);
+  }
+}
@@ -0,0 +1,281 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Разбор данных в формате CBOR (RFC 8949) в дерево {@link JsonElement}, десериализуемое затем адаптерами Gson
+ * (см. {@link CborJsonWriter}).
+ * <br/>
+ * Поддерживаются все основные типы данных, а также теги bignum (2/3) и десятичной дроби (4);
+ * строки байтов разбираются как массивы чисел (так Gson представляет byte[]), прочие теги игнорируются.
+ */
+public class CborParser {
+
+  /**
+   * Максимальная вложенность массивов и map (защита от переполнения стека на некорректных данных)
+   */
+  private static final int MAX_DEPTH = 512;
+
+  private static final int BREAK = 0xff;
+
+  private final InputStream in;
+
+  private int depth = 0;
+
+  /**
+   * @param in поток для чтения, рекомендуется буферизованный
+   */
+  public CborParser(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * Разбирает единственное значение, составляющее весь поток
+   * @return {@link JsonNull} для пустого потока
+   * @throws JsonSyntaxException если данные не являются корректным CBOR
+   * @throws IOException
+   */
+  public JsonElement parse() throws IOException {
+    final int initialByte = in.read();
+    if (initialByte == -1) {
+      return JsonNull.INSTANCE;
+    }
+    final JsonElement element = parseItem(initialByte);
+    if (in.read() != -1) {
+      throw new JsonSyntaxException("Unexpected data after the CBOR item");
+    }
+    return element;
+  }
+
+  private JsonElement parseItem(int initialByte) throws IOException {
+    final int majorType = initialByte >>> 5;
+    final int additionalInfo = initialByte & 0x1f;
+
+    switch (majorType) {
+      case 0: {
+        final long value = readArgument(additionalInfo);
+        return new JsonPrimitive(value >= 0 ? (Number) value : toUnsignedBigInteger(value));
+      }
+      case 1: {
+        final long value = readArgument(additionalInfo);
+        return new JsonPrimitive(value >= 0 ? (Number) (-1 - value) : BigInteger.ONE.negate().subtract(toUnsignedBigInteger(value)));
+      }
+      case 2: {
+        final JsonArray array = new JsonArray();
+        for (byte b: readBytes(2, additionalInfo)) {
+          array.add(new JsonPrimitive(b));
+        }
+        return array;
+      }
+      case 3:
+        return new JsonPrimitive(new String(readBytes(3, additionalInfo), StandardCharsets.UTF_8));
+      case 4: {
+        enter();
+        final JsonArray array = new JsonArray();
+        if (additionalInfo == 31) {
+          int b;
+          while ((b = readByte()) != BREAK) {
+            array.add(parseItem(b));
+          }
+        } else {
+          for (long i = readArgument(additionalInfo); i > 0; i--) {
+            array.add(parseItem(readByte()));
+          }
+        }
+        depth--;
+        return array;
+      }
+      case 5: {
+        enter();
+        final JsonObject object = new JsonObject();
+        if (additionalInfo == 31) {
+          int b;
+          while ((b = readByte()) != BREAK) {
+            object.add(parseKey(b), parseItem(readByte()));
+          }
+        } else {
+          for (long i = readArgument(additionalInfo); i > 0; i--) {
+            object.add(parseKey(readByte()), parseItem(readByte()));
+          }
+        }
+        depth--;
+        return object;
+      }
+      case 6:
+        return parseTag(readArgument(additionalInfo));
+      default:
+        return parseSimple(additionalInfo);
+    }
+  }
+
+  private void enter() {
+    if (++depth > MAX_DEPTH) {
+      throw new JsonSyntaxException("CBOR nesting depth exceeds " + MAX_DEPTH);
+    }
+  }
+
+  private String parseKey(int initialByte) throws IOException {
+    final JsonElement key = parseItem(initialByte);
+    if (!key.isJsonPrimitive()) {
+      throw new JsonSyntaxException("Unsupported CBOR map key: " + key);
+    }
+    return key.getAsString();
+  }
+
+  private JsonElement parseTag(long tag) throws IOException {
+    final JsonElement content = parseItem(readByte());
+
+    if (tag == 2 || tag == 3) {
+      if (!content.isJsonArray()) {
+        throw new JsonSyntaxException("CBOR bignum must be a byte string");
+      }
+      final JsonArray bytes = content.getAsJsonArray();
+      final byte[] magnitude = new byte[bytes.size()];
+      for (int i = 0; i < magnitude.length; i++) {
+        magnitude[i] = bytes.get(i).getAsByte();
+      }
+      final BigInteger value = new BigInteger(1, magnitude);
+      return new JsonPrimitive(tag == 2 ? value : BigInteger.ONE.negate().subtract(value));
+
+    } else if (tag == 4) {
+      if (!content.isJsonArray() || content.getAsJsonArray().size() != 2) {
+        throw new JsonSyntaxException("CBOR decimal fraction must be an array of two integers");
+      }
+      final long exponent = content.getAsJsonArray().get(0).getAsLong();
+      if (exponent < -Integer.MAX_VALUE || exponent > Integer.MAX_VALUE) {
+        throw new JsonSyntaxException("CBOR decimal fraction exponent is out of range: " + exponent);
+      }
+      final BigInteger mantissa = content.getAsJsonArray().get(1).getAsBigInteger();
+      return new JsonPrimitive(new BigDecimal(mantissa, (int) -exponent));
+
+    } else {
+      // other tags (date/time, URI etc.) carry the content as-is
+      return content;
+    }
+  }
+
+  private JsonElement parseSimple(int additionalInfo) throws IOException {
+    switch (additionalInfo) {
+      case 20:
+        return new JsonPrimitive(false);
+      case 21:
+        return new JsonPrimitive(true);
+      case 22:
+      case 23: // undefined
+        return JsonNull.INSTANCE;
+      case 25:
+        return new JsonPrimitive(halfToFloat((readByte() << 8) | readByte()));
+      case 26:
+        return new JsonPrimitive(Float.intBitsToFloat((int) readUnsigned(4)));
+      case 27:
+        return new JsonPrimitive(Double.longBitsToDouble(readUnsigned(8)));
+      default:
+        throw new JsonSyntaxException("Unsupported CBOR simple value: " + additionalInfo);
+    }
+  }
+
+  private static float halfToFloat(int bits) {
+    final int sign = (bits & 0x8000) != 0 ? -1 : 1;
+    final int exponent = (bits >> 10) & 0x1f;
+    final int fraction = bits & 0x3ff;
+    if (exponent == 0) {
+      return sign * (float) Math.scalb(fraction, -24);
+    } else if (exponent == 0x1f) {
+      return fraction == 0 ? sign * Float.POSITIVE_INFINITY : Float.NaN;
+    } else {
+      return sign * (float) Math.scalb(fraction + 1024, exponent - 25);
+    }
+  }
+
+  /**
+   * Читает строку (байтов или текста) определённой длины либо неопределённой, составленную из частей
+   */
+  private byte[] readBytes(int majorType, int additionalInfo) throws IOException {
+    if (additionalInfo != 31) {
+      return readBytes(readArgument(additionalInfo));
+    }
+
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    int b;
+    while ((b = readByte()) != BREAK) {
+      if (b >>> 5 != majorType || (b & 0x1f) == 31) {
+        throw new JsonSyntaxException("Invalid chunk of an indefinite-length CBOR string");
+      }
+      result.write(readBytes(readArgument(b & 0x1f)));
+    }
+    return result.toByteArray();
+  }
+
+  private byte[] readBytes(long length) throws IOException {
+    if (length < 0 || length > Integer.MAX_VALUE - 8) {
+      throw new JsonSyntaxException("CBOR string is too long: " + Long.toUnsignedString(length));
+    }
+    // the declared length is not trusted: the buffer grows only as the data is actually read
+    final ByteArrayOutputStream result = new ByteArrayOutputStream((int) Math.min(length, 8192));
+    final byte[] buffer = new byte[(int) Math.min(length, 8192)];
+    long remaining = length;
+    while (remaining > 0) {
+      final int n = in.read(buffer, 0, (int) Math.min(remaining, buffer.length));
+      if (n == -1) {
+        throw new EOFException("Unexpected end of CBOR data");
+      }
+      result.write(buffer, 0, n);
+      remaining -= n;
+    }
+    return result.toByteArray();
+  }
+
+  /**
+   * @return the argument as an unsigned value (negative for values above Long.MAX_VALUE)
+   */
+  private long readArgument(int additionalInfo) throws IOException {
+    if (additionalInfo < 24) {
+      return additionalInfo;
+    }
+    switch (additionalInfo) {
+      case 24:
+        return readUnsigned(1);
+      case 25:
+        return readUnsigned(2);
+      case 26:
+        return readUnsigned(4);
+      case 27:
+        return readUnsigned(8);
+      default:
+        throw new JsonSyntaxException("Invalid CBOR additional information: " + additionalInfo);
+    }
+  }
+
+  private long readUnsigned(int byteCount) throws IOException {
+    long value = 0;
+    for (int i = 0; i < byteCount; i++) {
+      value = (value << 8) | readByte();
+    }
+    return value;
+  }
+
+  private int readByte() throws IOException {
+    final int b = in.read();
+    if (b == -1) {
+      throw new EOFException("Unexpected end of CBOR data");
+    }
+    return b;
+  }
+
+  private static BigInteger toUnsignedBigInteger(long value) {
+    return new BigInteger(Long.toUnsignedString(value));
+  }
+}
@@ -0,0 +1,203 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.jepria.server.data.DtoAccessor;
+
+import java.io.IOException;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Фабрика адаптеров, сериализующих Dto-объекты через прекомпилированный доступ к полям ({@link DtoAccessor})
+ * вместо рефлексивного чтения полей ({@code Field.get}) адаптером Gson по умолчанию.
+ * <br/>
+ * Набор, порядок и имена сериализуемых полей совпадают с рефлексивным адаптером Gson:
+ * поля самого класса, затем поля суперклассов; исключения полей ({@link Gson#excluder()}) и стратегия именования
+ * ({@link Gson#fieldNamingStrategy()}) берутся из экземпляра Gson.
+ * Десериализация, а также классы, требующие особой обработки (поля с аннотациями Gson, обобщённые поля,
+ * классы JDK и их наследники, коллекции, перечисления и т.п.), делегируются рефлексивному адаптеру.
+ * <br/>
+ * Фабрика не регистрируется по умолчанию: выигрыш зависит от JVM (в современных JVM рефлексивное чтение полей также быстрое)
+ * и должен быть подтверждён измерением (см. {@code DtoTypeAdapterFactoryBenchmark} в тестах). Подключение:
+ * {@code gsonBuilder.registerTypeAdapterFactory(new DtoTypeAdapterFactory())}.
+ */
+public class DtoTypeAdapterFactory implements TypeAdapterFactory {
+
+  @Override
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    if (!(type.getType() instanceof Class)) {
+      // parameterized types are left to the reflective adapter
+      return null;
+    }
+    final Class<? super T> rawType = type.getRawType();
+    if (!isSupported(rawType) || gson.excluder().excludeClass(rawType, true)) {
+      return null;
+    }
+
+    final List<BoundField> boundFields = new ArrayList<>();
+    final Set<String> names = new HashSet<>();
+
+    // the same order as the reflective adapter: the class fields first, then the superclass fields
+    for (Class<?> c = rawType; c != Object.class; c = c.getSuperclass()) {
+      if (isJdkClass(c)) {
+        // e.g. a Throwable subclass: the fields of JDK classes are not accessible through DtoAccessor (JDK 16+)
+        return null;
+      }
+      if (c.isAnnotationPresent(JsonAdapter.class)) {
+        return null;
+      }
+      final DtoAccessor accessor = DtoAccessor.forClass(c);
+      for (Field field: c.getDeclaredFields()) {
+        if (gson.excluder().excludeField(field, true)) {
+          continue;
+        }
+        if (field.isAnnotationPresent(SerializedName.class) || field.isAnnotationPresent(JsonAdapter.class)
+            || containsTypeVariable(field.getGenericType())) {
+          return null;
+        }
+
+        final String name = gson.fieldNamingStrategy().translateName(field);
+        if (!names.add(name)) {
+          // let the reflective adapter report the duplicate field name
+          return null;
+        }
+
+        boundFields.add(new BoundField(name, accessor, accessor.indexOf(field.getName()),
+            field.getGenericType(), gson.getAdapter(TypeToken.get(field.getGenericType()))));
+      }
+    }
+
+    final TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+    return new Adapter<>(gson, delegate, boundFields.toArray(new BoundField[0]));
+  }
+
+  /**
+   * @return {@code false} для классов, которые рефлексивный адаптер не сериализует или сериализует особым образом
+   */
+  private static boolean isSupported(Class<?> rawType) {
+    if (rawType.isPrimitive() || rawType.isArray() || rawType.isEnum() || rawType.isInterface()
+        || rawType.isAnonymousClass() || rawType.isLocalClass()
+        || Modifier.isAbstract(rawType.getModifiers())) {
+      return false;
+    }
+    if (Collection.class.isAssignableFrom(rawType) || Map.class.isAssignableFrom(rawType)
+        || JsonElement.class.isAssignableFrom(rawType)) {
+      return false;
+    }
+    return !isJdkClass(rawType) && !rawType.getName().startsWith("com.google.gson.");
+  }
+
+  private static boolean isJdkClass(Class<?> cls) {
+    final String name = cls.getName();
+    return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.")
+        || name.startsWith("com.sun.");
+  }
+
+  private static boolean containsTypeVariable(Type type) {
+    if (type instanceof Class) {
+      return false;
+    } else if (type instanceof ParameterizedType) {
+      for (Type argument: ((ParameterizedType) type).getActualTypeArguments()) {
+        if (containsTypeVariable(argument)) {
+          return true;
+        }
+      }
+      return containsTypeVariable(((ParameterizedType) type).getRawType());
+    } else if (type instanceof GenericArrayType) {
+      return containsTypeVariable(((GenericArrayType) type).getGenericComponentType());
+    } else {
+      // TypeVariable or WildcardType
+      return true;
+    }
+  }
+
+  private static final class BoundField {
+    final String name;
+    final DtoAccessor accessor;
+    final int index;
+    /**
+     * {@code null} if the declared type is parameterized (the runtime type is not applicable then)
+     */
+    final Class<?> declaredType;
+    final TypeAdapter<Object> typeAdapter;
+
+    @SuppressWarnings("unchecked")
+    BoundField(String name, DtoAccessor accessor, int index, Type declaredType, TypeAdapter<?> typeAdapter) {
+      this.name = name;
+      this.accessor = accessor;
+      this.index = index;
+      this.declaredType = declaredType instanceof Class ? (Class<?>) declaredType : null;
+      this.typeAdapter = (TypeAdapter<Object>) typeAdapter;
+    }
+  }
+
+  private static final class Adapter<T> extends TypeAdapter<T> {
+
+    private final Gson gson;
+
+    private final TypeAdapter<T> delegate;
+
+    private final BoundField[] boundFields;
+
+    Adapter(Gson gson, TypeAdapter<T> delegate, BoundField[] boundFields) {
+      this.gson = gson;
+      this.delegate = delegate;
+      this.boundFields = boundFields;
+    }
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+
+      out.beginObject();
+      for (BoundField boundField: boundFields) {
+        final Object fieldValue = boundField.accessor.get(value, boundField.index);
+        if (fieldValue == value) {
+          // the reflective adapter skips self-references as well
+          continue;
+        }
+        out.name(boundField.name);
+        getRuntimeTypeAdapter(boundField, fieldValue).write(out, fieldValue);
+      }
+      out.endObject();
+    }
+
+    /**
+     * The same adapter choice as Gson's TypeAdapterRuntimeTypeWrapper: the runtime type adapter for a more specific value class,
+     * unless it is a reflective one while the declared type adapter is not
+     */
+    @SuppressWarnings("unchecked")
+    private TypeAdapter<Object> getRuntimeTypeAdapter(BoundField boundField, Object fieldValue) {
+      if (fieldValue == null || boundField.declaredType == null || boundField.declaredType.isPrimitive()
+          || fieldValue.getClass() == boundField.declaredType) {
+        return boundField.typeAdapter;
+      }
+      final TypeAdapter<Object> runtimeTypeAdapter = (TypeAdapter<Object>) gson.getAdapter(fieldValue.getClass());
+      if (!isReflective(runtimeTypeAdapter) || isReflective(boundField.typeAdapter)) {
+        return runtimeTypeAdapter;
+      }
+      return boundField.typeAdapter;
+    }
+
+    private static boolean isReflective(TypeAdapter<?> typeAdapter) {
+      return typeAdapter instanceof ReflectiveTypeAdapterFactory.Adapter || typeAdapter instanceof Adapter;
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+      return delegate.read(in);
+    }
+  }
+}
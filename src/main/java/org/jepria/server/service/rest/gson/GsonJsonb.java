@@ -1,11 +1,14 @@
 package org.jepria.server.service.rest.gson;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import javax.json.bind.Jsonb;
 import javax.json.bind.JsonbException;
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 
 /**
  * {@link com.google.gson.Gson} to {@link javax.json.bind.Jsonb} adapter
@@ -23,6 +26,44 @@ public class GsonJsonb implements Jsonb {
     // NO-OP
   }
 
+  /**
+   * Streams are read and written in UTF-8 (RFC 8259), regardless of the platform default charset.
+   * Both the reader and the writer are buffered by the charset decoder/encoder and by Gson's {@link JsonReader}/{@link JsonWriter},
+   * so no additional buffering is needed
+   */
+  protected Reader newReader(InputStream in) {
+    return new InputStreamReader(in, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @see #newReader(InputStream)
+   */
+  protected Writer newWriter(OutputStream out) {
+    return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Deserializes the next JSON value directly from the Gson reader, without intermediate copies
+   */
+  public <T> T fromJson(JsonReader reader, Type type) throws JsonbException {
+    try {
+      return gson.fromJson(reader, type);
+    } catch (Throwable e) {
+      throw new JsonbException("Failed to deserialize an object from JSON", e);
+    }
+  }
+
+  /**
+   * Serializes the object directly into the Gson writer
+   */
+  public void toJson(Object object, Type type, JsonWriter writer) throws JsonbException {
+    try {
+      gson.toJson(object, type, writer);
+    } catch (Throwable e) {
+      throw new JsonbException("Failed to serialize an object into JSON", e);
+    }
+  }
+
   @Override
   public <T> T fromJson(String arg0, Class<T> arg1) throws JsonbException {
     try {
@@ -62,7 +103,7 @@ public class GsonJsonb implements Jsonb {
   @Override
   public <T> T fromJson(InputStream arg0, Class<T> arg1) throws JsonbException {
     try {
-      return gson.fromJson(new InputStreamReader(arg0), arg1);
+      return gson.fromJson(newReader(arg0), arg1);
     } catch (Throwable e) {
       throw new JsonbException("Failed to deserialize an object from JSON", e);
     }
@@ -71,7 +112,7 @@ public class GsonJsonb implements Jsonb {
   @Override
   public <T> T fromJson(InputStream arg0, Type arg1) throws JsonbException {
     try {
-      return gson.fromJson(new InputStreamReader(arg0), arg1);
+      return gson.fromJson(newReader(arg0), arg1);
     } catch (Throwable e) {
       throw new JsonbException("Failed to deserialize an object from JSON", e);
     }
@@ -107,7 +148,9 @@ public class GsonJsonb implements Jsonb {
   @Override
   public void toJson(Object arg0, OutputStream arg1) throws JsonbException {
     try {
-      gson.toJson(arg0, new OutputStreamWriter(arg1));
+      final Writer writer = newWriter(arg1);
+      gson.toJson(arg0, writer);
+      writer.flush();
     } catch (Throwable e) {
       throw new JsonbException("Failed to serialize an object into JSON", e);
     }
@@ -125,7 +168,9 @@ public class GsonJsonb implements Jsonb {
   @Override
   public void toJson(Object arg0, Type arg1, OutputStream arg2) throws JsonbException {
     try {
-      gson.toJson(arg0, arg1, new OutputStreamWriter(arg2));
+      final Writer writer = newWriter(arg2);
+      gson.toJson(arg0, arg1, writer);
+      writer.flush();
     } catch (Throwable e) {
       throw new JsonbException("Failed to serialize an object into JSON", e);
     }
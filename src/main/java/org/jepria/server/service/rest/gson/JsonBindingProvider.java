@@ -41,7 +41,9 @@
 package org.jepria.server.service.rest.gson;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import org.glassfish.jersey.message.internal.AbstractMessageReaderWriterProvider;
+import org.jepria.server.service.rest.ResultsetStream;
 
 import javax.json.bind.Jsonb;
 import javax.ws.rs.Consumes;
@@ -51,11 +53,19 @@ import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Entity provider (reader and writer) for JSONB.
@@ -64,7 +74,7 @@ import java.lang.reflect.Type;
  */
 // This class is almost a copy of org.glassfish.jersey.jsonb.internal.JsonBindingProvider
 // from https://raw.githubusercontent.com/jersey/jersey/master/media/json-binding/src/main/java/org/glassfish/jersey/jsonb/internal/JsonBindingProvider.java
-@Produces({"application/json", "text/json", "*/*"})
+@Produces({"application/json", "text/json", JsonBindingProvider.APPLICATION_NDJSON, "*/*"})
 @Consumes({"application/json", "text/json", "*/*"})
 public class JsonBindingProvider extends AbstractMessageReaderWriterProvider<Object> {
 
@@ -84,6 +94,13 @@ public class JsonBindingProvider extends AbstractMessageReaderWriterProvider<Obj
     private static final String JSON = "json";
     private static final String PLUS_JSON = "+json";
 
+    /**
+     * Media type of newline-delimited JSON: each record of an {@link Iterable} entity is written as a separate JSON line,
+     * so that the client may process the records as they arrive
+     */
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String NDJSON = "x-ndjson";
+
     public JsonBindingProvider() {
     }
 
@@ -100,7 +117,8 @@ public class JsonBindingProvider extends AbstractMessageReaderWriterProvider<Obj
                            InputStream entityStream) throws IOException, WebApplicationException {
         Jsonb jsonb = getJsonb(type, annotations);
 //        try {
-            return jsonb.fromJson(entityStream, genericType);
+            // decode the entity stream with the request media type charset (UTF-8 by default)
+            return jsonb.fromJson(new InputStreamReader(entityStream, AbstractMessageReaderWriterProvider.getCharset(mediaType)), genericType);
 //        } catch (JsonbException e) {
 //            throw new ProcessingException("Error deserializing object from entity stream", e);
 //        }
@@ -108,7 +126,7 @@ public class JsonBindingProvider extends AbstractMessageReaderWriterProvider<Obj
 
     @Override
     public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
-        return supportsMediaType(mediaType);
+        return supportsMediaType(mediaType) || isNdjson(mediaType) && Iterable.class.isAssignableFrom(type);
     }
 
     @Override
@@ -117,18 +135,65 @@ public class JsonBindingProvider extends AbstractMessageReaderWriterProvider<Obj
                         MediaType mediaType,
                         MultivaluedMap<String, Object> httpHeaders,
                         OutputStream entityStream) throws IOException, WebApplicationException {
-        Jsonb jsonb = getJsonb(type, annotations);
+        GsonJsonb jsonb = getJsonb(type, annotations);
 //        try {
-            entityStream.write(jsonb.toJson(o).getBytes(AbstractMessageReaderWriterProvider.getCharset(mediaType)));
-            entityStream.flush();
+            // serialize incrementally into the entity stream, without materializing the whole response as a String and a byte[]
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(entityStream, AbstractMessageReaderWriterProvider.getCharset(mediaType)));
+            if (isNdjson(mediaType)) {
+              for (Object record: (Iterable<?>) o) {
+                // each line is a compact JSON value: neither the pretty printing nor the non-executable prefix of the resource Gson applies
+                jsonb.toJson(record, Object.class, new JsonWriter(writer));
+                writer.write('\n');
+              }
+            } else if (o instanceof ResultsetStream) {
+              // a lazy resultset (e.g. records loaded while iterating) is written as a JSON array record by record,
+              // the same output as for a list: the array is written through a single writer configured by the resource Gson
+              final JsonWriter jsonWriter = jsonb.gson.newJsonWriter(writer);
+              jsonWriter.beginArray();
+              for (Object record: (Iterable<?>) o) {
+                jsonb.toJson(record, Object.class, jsonWriter);
+              }
+              jsonWriter.endArray();
+            } else {
+              jsonb.toJson(o, writer);
+            }
+            // the entity stream is closed by the container, so only flush the writer
+            writer.flush();
 //        } catch (IOException e) {
 //            throw new ProcessingException("Error writing JSON-B serialized object", e);
 //        }
     }
 
-    private Jsonb getJsonb(Class<?> type, Annotation[] annotations) {
-      final Gson gson = new AnnotatedGsonBuilder(resourceInfo).build();
-      return new GsonJsonb(gson);
+    /**
+     * Jsonb instances built for resource methods, keyed by [resource class, resource method]
+     * (the same method may be inherited by different resource classes with different class-level json config annotations).
+     * Gson (so as the Jsonb adapter) is immutable and thread-safe, so the instance built once for a resource method
+     * is reused by all its requests and responses, keeping its type adapter cache warm.
+     */
+    private static final Map<List<Object>, GsonJsonb> jsonbCache = new ConcurrentHashMap<>();
+
+    private GsonJsonb getJsonb(Class<?> type, Annotation[] annotations) {
+      return getJsonb(resourceInfo);
+    }
+
+    /**
+     * @param resourceInfo may be null
+     * @return the cached Jsonb configured for the resource method, shared with other entity providers (see {@link CborBindingProvider})
+     */
+    static GsonJsonb getJsonb(ResourceInfo resourceInfo) {
+      final List<Object> key = resourceInfo == null ? Arrays.asList(null, null)
+          : Arrays.asList(resourceInfo.getResourceClass(), resourceInfo.getResourceMethod());
+
+      GsonJsonb jsonb = jsonbCache.get(key);
+      if (jsonb == null) {
+        final Gson gson = new AnnotatedGsonBuilder(resourceInfo).build();
+        jsonb = new GsonJsonb(gson);
+        final GsonJsonb existing = jsonbCache.putIfAbsent(key, jsonb);
+        if (existing != null) {
+          jsonb = existing;
+        }
+      }
+      return jsonb;
     }
 
     /**
@@ -139,6 +204,10 @@ public class JsonBindingProvider extends AbstractMessageReaderWriterProvider<Obj
         return mediaType.getSubtype().equals(JSON) || mediaType.getSubtype().endsWith(PLUS_JSON);
     }
 
+    private static boolean isNdjson(final MediaType mediaType) {
+        return mediaType.getSubtype().equals(NDJSON);
+    }
+
     /**
      * Method for obtaining resource-contextual Jsonb for various utility purposes
      * @return
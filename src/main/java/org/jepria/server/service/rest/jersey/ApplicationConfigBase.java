@@ -3,10 +3,12 @@ package org.jepria.server.service.rest.jersey;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
 import org.glassfish.jersey.spi.ExceptionMappers;
+import org.jepria.server.service.rest.CompressionInterceptor;
 import org.jepria.server.service.rest.DateParamConverterProvider;
 import org.jepria.server.service.rest.ErrorDto;
 import org.jepria.server.service.rest.MetaInfoResource;
 import org.jepria.server.service.rest.XCacheControlFilter;
+import org.jepria.server.service.rest.gson.CborBindingProvider;
 import org.jepria.server.service.rest.gson.JsonBindingProvider;
 import org.jepria.server.service.rest.jersey.validate.ExceptionMapperValidation;
 import org.jepria.server.service.security.HttpBasicDynamicFeature;
@@ -36,6 +38,7 @@ public class ApplicationConfigBase extends ResourceConfig {
   public ApplicationConfigBase() {
     
     registerJsonBindingProvider();
+    registerCborBindingProvider();
     registerHttpBasicDynamicFeature();
     registerRolesAllowedDynamicFeature();
     
@@ -47,6 +50,8 @@ public class ApplicationConfigBase extends ResourceConfig {
     TODO remove when okHttp Cache-Control header issue will be fixed https://github.com/expo/expo/issues/1639
      */
     registerXCacheControlFilter();
+
+    registerCompressionInterceptor();
     
     
     // register exception mappers
@@ -151,6 +156,14 @@ public class ApplicationConfigBase extends ResourceConfig {
     register(JsonBindingProvider.class);
   }
   
+  /**
+   * Регистрация провайдера бинарного формата CBOR (application/cbor), выбираемого клиентом заголовками Accept/Content-Type
+   * наравне с JSON
+   */
+  protected void registerCborBindingProvider() {
+    register(CborBindingProvider.class);
+  }
+  
   protected void registerHttpBasicDynamicFeature() {
     register(HttpBasicDynamicFeature.class);
   }
@@ -167,6 +180,13 @@ public class ApplicationConfigBase extends ResourceConfig {
     register(new XCacheControlFilter());
   }
   
+  /**
+   * Регистрация сжатия ответов (gzip/deflate) в соответствии с заголовком запроса Accept-Encoding
+   */
+  protected void registerCompressionInterceptor() {
+    register(CompressionInterceptor.class);
+  }
+  
   /**
    * Registers exception mapper for json parse exceptions
    * @see org.jepria.server.service.rest.gson.GsonJsonb
@@ -1,5 +1,6 @@
 package org.jepria.swagger;
 
+import org.jepria.server.service.rest.CompressionInterceptor;
 import org.jepria.server.service.rest.gson.JsonBindingProvider;
 
 import javax.servlet.ServletContext;
@@ -7,9 +8,16 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Сервлет, обеспечивающий рендеринг интерфейса из файлов openapi-спецификаций приложения посредством библиотеки io.swagger-ui, с поддержкой динамических параметров.<br/><br/>
@@ -142,7 +150,8 @@ public class SpecServlet extends HttpServlet {
   protected void ui(HttpServletRequest req, HttpServletResponse resp, String specName) throws ServletException, IOException {
     String targetPath = swaggerUiRootPath + "/index.html.jsp";
 
-    List<Spec> specs = collectSpecs(req.getServletContext(), specRootPath);
+    // a modifiable copy
+    List<Spec> specs = new ArrayList<>(getSpecs(req.getServletContext()));
 
     if (specs.isEmpty()) {
       // this case will further cause a JavaScript error on the swagger-ui lib. Fail-fast here. TODO better to return status 404 or 500? (now 500 returned due to throw)
@@ -181,40 +190,94 @@ public class SpecServlet extends HttpServlet {
     req.getRequestDispatcher(swaggerUiRootPath + resourcePath).forward(req, resp);
   }
 
+  /**
+   * Развёрнутая спецификация в готовом к выдаче виде
+   */
+  protected static class DeployedSpec {
+    protected final byte[] body;
+    protected final byte[] gzipBody;
+    protected final String etag;
+    protected final String gzipEtag;
+    /**
+     * в миллисекундах
+     */
+    protected final long lastModified;
+
+    public DeployedSpec(byte[] body, long lastModified) throws IOException {
+      this.body = body;
+      this.gzipBody = gzip(body);
+      final String hash = hash(body);
+      this.etag = '"' + hash + '"';
+      // the representations differ by content coding, so do their strong entity tags
+      this.gzipEtag = '"' + hash + "-gzip\"";
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * Развёрнутые спецификации, ключ: [contextPath, apiServletPath, resourcePath]
+   * (spec-ресурсы и значения параметров их развёртывания неизменны в рамках приложения).
+   * Кешируются только spec-ресурсы приложения (см. {@link #getSpecs}), так что размер кеша ограничен их числом
+   */
+  private final Map<List<String>, DeployedSpec> specCache = new ConcurrentHashMap<>();
+
+  /**
+   * Время инициализации сервлета, используемое как время изменения spec-ресурсов, для которых оно неизвестно
+   */
+  private final long initTime = System.currentTimeMillis() / 1000 * 1000;
+
   protected void spec(HttpServletRequest req, HttpServletResponse resp, String resourcePath) throws ServletException, IOException {
+    resourcePath = normalizeResourcePath(resourcePath);
+    if (resourcePath == null) {
+      resp.sendError(404, "No such spec resource");
+      resp.flushBuffer();
+      return;
+    }
+
     String targetPath = specRootPath + resourcePath;
 
     if (apiServletPath != null) {
-      // deploy the resource: set 'url' for template 'server' and 'servers' fields
-      // Note: for some reason, 'server' field is ignored by the swagger-ui (although it could be used instead of 'servers' field according to docs), so work with 'servers' only
 
-      final Map<String, Object> specObject;
-      try (InputStream specIn = req.getServletContext().getResourceAsStream(targetPath)) {
-        specObject = JsonBindingProvider.getJsonb().fromJson(specIn, Map.class); // new HashMap<String, Object>(){}.getClass() not working
-      }
-
-      List<Map<String, Object>> serversObject = (List<Map<String, Object>>) specObject.get("servers");
-      if (serversObject != null) {
-        for (Map<String, Object> serverObject : serversObject) {
-          if (serverObject != null) {
-            String url = (String) serverObject.get("url");
-            url = url.replaceAll("/\\{appContextPath}", req.getContextPath())
-                    .replaceAll("/\\{apiEndpoint}", apiServletPath);
-            serverObject.put("url", url);
-          }
+      DeployedSpec deployedSpec;
+      if (isSpec(req.getServletContext(), resourcePath)) {
+        final List<String> key = Arrays.asList(req.getContextPath(), apiServletPath, resourcePath);
+        deployedSpec = specCache.get(key);
+        if (deployedSpec == null) {
+          deployedSpec = new DeployedSpec(deploySpec(req, targetPath), getLastModified(req.getServletContext(), targetPath));
+          specCache.put(key, deployedSpec);
         }
+      } else if (!resourcePath.endsWith("/") && req.getServletContext().getResource(targetPath) != null) {
+        // other resources under the spec root (e.g. referenced from the specs) are served uncached
+        deployedSpec = new DeployedSpec(deploySpec(req, targetPath), getLastModified(req.getServletContext(), targetPath));
       } else {
-        serversObject = new ArrayList<>();
-        Map<String, Object> serverObject = new HashMap<>();
-        serverObject.put("url", req.getContextPath() + apiServletPath);
-        serversObject.add(serverObject);
-        specObject.put("servers", serversObject);
+        resp.sendError(404, "No such spec resource: " + resourcePath);
+        resp.flushBuffer();
+        return;
       }
 
+      final boolean gzip = CompressionInterceptor.GZIP.equals(
+          CompressionInterceptor.selectContentCoding(Collections.list(req.getHeaders("Accept-Encoding"))));
+      final String etag = gzip ? deployedSpec.gzipEtag : deployedSpec.etag;
+
+      resp.addHeader("Vary", "Accept-Encoding");
+      resp.setHeader("ETag", etag);
+      resp.setDateHeader("Last-Modified", deployedSpec.lastModified);
+
+      if (isNotModified(req, etag, deployedSpec.lastModified)) {
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+
+      final byte[] body = gzip ? deployedSpec.gzipBody : deployedSpec.body;
+
       resp.setContentType("application/json");
       resp.setCharacterEncoding("UTF-8");
+      if (gzip) {
+        resp.setHeader("Content-Encoding", CompressionInterceptor.GZIP);
+      }
+      resp.setContentLength(body.length);
 
-      JsonBindingProvider.getJsonb().toJson(specObject, resp.getWriter());
+      resp.getOutputStream().write(body);
       resp.setStatus(HttpServletResponse.SC_OK);
       resp.flushBuffer();
 
@@ -226,11 +289,172 @@ public class SpecServlet extends HttpServlet {
     }
   }
 
+  /**
+   * @param resourcePath path relative to the spec root
+   * @return whether the path is one of the spec resources of the application (see {@link #getSpecs})
+   */
+  protected boolean isSpec(ServletContext servletContext, String resourcePath) {
+    for (Spec spec: getSpecs(servletContext)) {
+      if (spec.resourcePath().equals(resourcePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Normalizes the requested resource path, so that the same resource is requested by the same path:
+   * removes empty and {@code .} segments, resolves {@code ..} segments
+   * @param resourcePath path relative to the spec root, starting with '/'
+   * @return the normalized path, starting with '/', or null if the path points outside the spec root
+   */
+  static String normalizeResourcePath(String resourcePath) {
+    final Deque<String> segments = new ArrayDeque<>();
+    for (String segment: resourcePath.split("/")) {
+      if (segment.isEmpty() || ".".equals(segment)) {
+        continue;
+      } else if ("..".equals(segment)) {
+        if (segments.isEmpty()) {
+          return null;
+        }
+        segments.removeLast();
+      } else {
+        segments.addLast(segment);
+      }
+    }
+
+    final StringBuilder sb = new StringBuilder();
+    for (String segment: segments) {
+      sb.append('/').append(segment);
+    }
+    if (sb.length() == 0 || resourcePath.endsWith("/")) {
+      sb.append('/');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Deploys the spec resource: sets 'url' for template 'server' and 'servers' fields
+   * @param req
+   * @param targetPath
+   * @return the deployed spec, UTF-8 encoded JSON
+   */
+  protected byte[] deploySpec(HttpServletRequest req, String targetPath) throws IOException {
+    // Note: for some reason, 'server' field is ignored by the swagger-ui (although it could be used instead of 'servers' field according to docs), so work with 'servers' only
+
+    final Map<String, Object> specObject;
+    try (InputStream specIn = req.getServletContext().getResourceAsStream(targetPath)) {
+      specObject = JsonBindingProvider.getJsonb().fromJson(specIn, Map.class); // new HashMap<String, Object>(){}.getClass() not working
+    }
+
+    List<Map<String, Object>> serversObject = (List<Map<String, Object>>) specObject.get("servers");
+    if (serversObject != null) {
+      for (Map<String, Object> serverObject : serversObject) {
+        if (serverObject != null) {
+          String url = (String) serverObject.get("url");
+          url = url.replaceAll("/\\{appContextPath}", req.getContextPath())
+                  .replaceAll("/\\{apiEndpoint}", apiServletPath);
+          serverObject.put("url", url);
+        }
+      }
+    } else {
+      serversObject = new ArrayList<>();
+      Map<String, Object> serverObject = new HashMap<>();
+      serverObject.put("url", req.getContextPath() + apiServletPath);
+      serversObject.add(serverObject);
+      specObject.put("servers", serversObject);
+    }
+
+    return JsonBindingProvider.getJsonb().toJson(specObject).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return время изменения ресурса, в миллисекундах, округлённое до секунд (точность HTTP-дат)
+   */
+  protected long getLastModified(ServletContext servletContext, String resourcePath) {
+    try {
+      final URL url = servletContext.getResource(resourcePath);
+      if (url != null) {
+        final long lastModified = url.openConnection().getLastModified();
+        if (lastModified > 0) {
+          return lastModified / 1000 * 1000;
+        }
+      }
+    } catch (IOException e) {
+      // the modification time is unknown
+    }
+    return initTime;
+  }
+
+  /**
+   * Conditional GET: If-None-Match (if present) takes precedence over If-Modified-Since
+   */
+  private static boolean isNotModified(HttpServletRequest req, String etag, long lastModified) {
+    final String ifNoneMatch = req.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String tag: ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        // weak comparison
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        if ("*".equals(tag) || etag.equals(tag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    final long ifModifiedSince;
+    try {
+      ifModifiedSince = req.getDateHeader("If-Modified-Since");
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+  }
+
+  private static String hash(byte[] bytes) {
+    try {
+      final byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is supported by every Java platform
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+    try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+      gzipOut.write(bytes);
+    }
+    return out.toByteArray();
+  }
+
   interface Spec {
     String resourcePath();
     String name();
   }
 
+  /**
+   * Spec resources of the application, collected once (the web application resource tree does not change at runtime)
+   */
+  private volatile List<Spec> specs;
+
+  /**
+   * @param servletContext
+   * @return unmodifiable list of the spec resources, see {@link #collectSpecs}
+   */
+  protected List<Spec> getSpecs(ServletContext servletContext) {
+    List<Spec> ret = specs;
+    if (ret == null) {
+      ret = Collections.unmodifiableList(collectSpecs(servletContext, specRootPath));
+      specs = ret;
+    }
+    return ret;
+  }
+
   /**
    * Collects spec resources from within the web application resource tree (actually from its subtree starting at the {@code specRootPath} node)
    * @param servletContext
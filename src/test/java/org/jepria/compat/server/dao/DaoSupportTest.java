@@ -0,0 +1,45 @@
+package org.jepria.compat.server.dao;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DaoSupportTest {
+
+  @Test
+  public void initialFetchSizeIsClamped() {
+    assertEquals(100, DaoSupport.initialFetchSize(100, 1000));
+    assertEquals(1000, DaoSupport.initialFetchSize(5000, 1000));
+    assertEquals(1, DaoSupport.initialFetchSize(0, 1000));
+    assertEquals(1, DaoSupport.initialFetchSize(-10, 1000));
+  }
+
+  @Test
+  public void fetchSizeDoublesUpToMax() {
+    final List<Integer> fetchSizes = new ArrayList<>();
+    int fetchSize = DaoSupport.initialFetchSize(DaoSupport.DEFAULT_FETCH_SIZE, DaoSupport.DEFAULT_MAX_FETCH_SIZE);
+    fetchSizes.add(fetchSize);
+    for (int roundTrip = 1; roundTrip < 7; roundTrip++) {
+      fetchSize = DaoSupport.nextFetchSize(fetchSize, DaoSupport.DEFAULT_MAX_FETCH_SIZE);
+      fetchSizes.add(fetchSize);
+    }
+
+    assertEquals(Arrays.asList(100, 200, 400, 800, 1000, 1000, 1000), fetchSizes);
+  }
+
+  @Test
+  public void fetchSizeDoesNotOverflow() {
+    assertEquals(Integer.MAX_VALUE, DaoSupport.nextFetchSize(Integer.MAX_VALUE / 2 + 1, Integer.MAX_VALUE));
+    assertEquals(Integer.MAX_VALUE, DaoSupport.nextFetchSize(Integer.MAX_VALUE, Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void fetchSizeAboveMaxIsCapped() {
+    assertEquals(1000, DaoSupport.nextFetchSize(1500, 1000));
+    assertEquals(2, DaoSupport.nextFetchSize(1, 1000));
+  }
+}
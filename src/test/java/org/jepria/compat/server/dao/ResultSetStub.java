@@ -0,0 +1,103 @@
+package org.jepria.compat.server.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * ResultSet тестов: строки с заданными значениями столбцов, обращения к ResultSet запоминаются.
+ * Значения читаются только по индексу столбца, как из {@link ResultSetWrapper}
+ */
+public class ResultSetStub implements InvocationHandler {
+
+  private final List<String> labels;
+
+  private final List<Object[]> rows;
+
+  private int row = -1;
+
+  private boolean wasNull = false;
+
+  /**
+   * Число вызовов {@link ResultSet#findColumn(String)} по имени столбца
+   */
+  public final Map<String, Integer> findColumnCounts = new HashMap<>();
+
+  /**
+   * Значения {@link ResultSet#setFetchSize(int)} в порядке вызовов
+   */
+  public final List<Integer> fetchSizes = new ArrayList<>();
+
+  public boolean closed = false;
+
+  /**
+   * @param labels имена столбцов
+   * @param rows значения столбцов строк
+   */
+  public ResultSetStub(List<String> labels, Object[]... rows) {
+    this.labels = labels;
+    this.rows = Arrays.asList(rows);
+  }
+
+  public ResultSet resultSet() {
+    return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class}, this);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    switch (method.getName()) {
+      case "next":
+        row++;
+        return row < rows.size();
+      case "findColumn":
+        findColumnCounts.merge((String) args[0], 1, Integer::sum);
+        final int index = labels.indexOf(args[0]);
+        if (index == -1) {
+          throw new SQLException("Invalid column name", "99999", ResultSetWrapper.SQL_ERROR_CODE_INVALID_COLUMN_NAME);
+        }
+        return index + 1;
+      case "wasNull":
+        return wasNull;
+      case "setFetchSize":
+        fetchSizes.add((Integer) args[0]);
+        return null;
+      case "close":
+        closed = true;
+        return null;
+      case "getString":
+        return (String) value(args[0]);
+      case "getObject":
+        return value(args[0]);
+      case "getInt": {
+        final Object value = value(args[0]);
+        return value == null ? 0 : ((Number) value).intValue();
+      }
+      case "getLong": {
+        final Object value = value(args[0]);
+        return value == null ? 0L : ((Number) value).longValue();
+      }
+      case "getBigDecimal": {
+        final Object value = value(args[0]);
+        return value == null ? null : new BigDecimal(value.toString());
+      }
+      default:
+        throw new UnsupportedOperationException(method.getName());
+    }
+  }
+
+  private Object value(Object column) {
+    if (!(column instanceof Integer)) {
+      throw new UnsupportedOperationException("The value is read by the column label");
+    }
+    if (row < 0 || row >= rows.size()) {
+      throw new IllegalStateException("No current row");
+    }
+    final Object value = rows.get(row)[(Integer) column - 1];
+    wasNull = value == null;
+    return value;
+  }
+}
@@ -0,0 +1,86 @@
+package org.jepria.compat.server.dao;
+
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultSetWrapperTest {
+
+  private static ResultSetStub resultSet() {
+    return new ResultSetStub(Arrays.asList("ID", "NAME"),
+        new Object[] {1, "a"},
+        new Object[] {2, null},
+        new Object[] {3, "c"});
+  }
+
+  @Test
+  public void columnIsFoundOncePerLabel() throws SQLException {
+    final ResultSetStub stub = resultSet();
+    final ResultSet rs = ResultSetWrapper.wrap(stub.resultSet());
+
+    final List<Object> values = new ArrayList<>();
+    while (rs.next()) {
+      values.add(rs.getInt("ID"));
+      values.add(rs.getString("NAME"));
+      values.add(rs.getObject("ID"));
+    }
+
+    assertEquals(Arrays.asList(1, "a", 1, 2, null, 2, 3, "c", 3), values);
+    assertEquals(Integer.valueOf(1), stub.findColumnCounts.get("ID"));
+    assertEquals(Integer.valueOf(1), stub.findColumnCounts.get("NAME"));
+  }
+
+  @Test
+  public void wasNullFollowsValueReadByLabel() throws SQLException {
+    final ResultSet rs = ResultSetWrapper.wrap(resultSet().resultSet());
+    rs.next();
+    rs.next();
+    assertEquals(2, rs.getInt("ID"));
+    assertFalse(rs.wasNull());
+    assertNull(rs.getString("NAME"));
+    assertTrue(rs.wasNull());
+  }
+
+  @Test
+  public void invalidColumnNameIsReported() throws SQLException {
+    final ResultSet rs = ResultSetWrapper.wrap(resultSet().resultSet());
+    rs.next();
+    try {
+      rs.getString("MISSING_COLUMN");
+      fail();
+    } catch (SQLException e) {
+      assertEquals(String.format(ResultSetWrapper.EXCEPTION_TEXT_INVALID_COLUMN_NAME, "MISSING_COLUMN"), e.getMessage());
+      assertEquals(ResultSetWrapper.SQL_ERROR_CODE_INVALID_COLUMN_NAME, ((SQLException) e.getCause()).getErrorCode());
+    }
+  }
+
+  @Test
+  public void invalidColumnIsNotCached() throws SQLException {
+    final ResultSetStub stub = resultSet();
+    final ResultSet rs = ResultSetWrapper.wrap(stub.resultSet());
+    rs.next();
+    for (int i = 0; i < 2; i++) {
+      try {
+        rs.getInt("MISSING_COLUMN");
+        fail();
+      } catch (SQLException e) {
+        // expected
+      }
+    }
+    assertEquals(Integer.valueOf(2), stub.findColumnCounts.get("MISSING_COLUMN"));
+  }
+
+  @Test
+  public void wrapIsIdempotent() {
+    final ResultSet rs = ResultSetWrapper.wrap(resultSet().resultSet());
+    assertTrue(rs instanceof ResultSetWrapper);
+    assertSame(rs, ResultSetWrapper.wrap(rs));
+    assertNull(ResultSetWrapper.wrap(null));
+  }
+}
@@ -0,0 +1,107 @@
+package org.jepria.compat.server.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.util.*;
+
+/**
+ * CallableStatement тестов: возвращает заданный ResultSet (результатом запроса или курсором первого параметра),
+ * параметры и обращения к statement запоминаются
+ */
+public class StatementStub implements InvocationHandler {
+
+  private final ResultSet resultSet;
+
+  /**
+   * Значения входных параметров по их индексам
+   */
+  public final Map<Integer, Object> parameters = new HashMap<>();
+
+  /**
+   * Значения {@link CallableStatement#setFetchSize(int)} в порядке вызовов
+   */
+  public final List<Integer> fetchSizes = new ArrayList<>();
+
+  public int executeCount = 0;
+
+  /**
+   * Размеры выполненных пакетов (JDBC batch) в порядке выполнения
+   */
+  public final List<Integer> batchSizes = new ArrayList<>();
+
+  /**
+   * Число наборов параметров, добавленных в текущий (невыполненный) пакет
+   */
+  public int pendingBatchSize = 0;
+
+  public int clearBatchCount = 0;
+
+  /**
+   * Если задано, выбрасывается при выполнении пакета с этим порядковым номером (начиная с 1)
+   */
+  public int failingBatchNumber = 0;
+
+  /**
+   * @param resultSet may be null
+   */
+  public StatementStub(ResultSet resultSet) {
+    this.resultSet = resultSet;
+  }
+
+  public CallableStatement statement() {
+    return (CallableStatement) Proxy.newProxyInstance(CallableStatement.class.getClassLoader(), new Class<?>[] {CallableStatement.class}, this);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final String name = method.getName();
+    switch (name) {
+      case "executeQuery":
+        executeCount++;
+        return resultSet;
+      case "execute":
+        executeCount++;
+        return true;
+      case "addBatch":
+        pendingBatchSize++;
+        return null;
+      case "executeBatch": {
+        final int batchNumber = batchSizes.size() + 1;
+        if (batchNumber == failingBatchNumber) {
+          throw new BatchUpdateException("batch " + batchNumber + " failed", new int[0]);
+        }
+        // число изменённых строк каждого набора параметров равно номеру пакета
+        final int[] updateCounts = new int[pendingBatchSize];
+        Arrays.fill(updateCounts, batchNumber);
+        batchSizes.add(pendingBatchSize);
+        pendingBatchSize = 0;
+        return updateCounts;
+      }
+      case "clearBatch":
+        clearBatchCount++;
+        pendingBatchSize = 0;
+        return null;
+      case "getObject":
+        return resultSet;
+      case "setFetchSize":
+        fetchSizes.add((Integer) args[0]);
+        return null;
+      case "setNull":
+        parameters.put((Integer) args[0], null);
+        return null;
+      case "registerOutParameter":
+      case "close":
+        return null;
+      default:
+        if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+          parameters.put((Integer) args[0], args[1]);
+          return null;
+        }
+        throw new UnsupportedOperationException(name);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.jepria.compat.server.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLClientInfoException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Соединение тестов: statement'ы создаются заданной функцией, обращения к соединению запоминаются
+ */
+public class ConnectionStub implements InvocationHandler {
+
+  private final Function<String, CallableStatement> statements;
+
+  /**
+   * SQL-тексты вызовов {@link Connection#prepareCall(String)}
+   */
+  public final List<String> preparedQueries = new ArrayList<>();
+
+  /**
+   * Вызовы {@link Connection#setClientInfo(String, String)} в виде {@code name=value}
+   */
+  public final List<String> clientInfo = new ArrayList<>();
+
+  /**
+   * Выбрасывает ли {@link Connection#setClientInfo(String, String)} исключение {@link SQLClientInfoException}
+   */
+  public boolean clientInfoUnsupported = false;
+
+  /**
+   * @param statements statement по SQL-тексту
+   */
+  public ConnectionStub(Function<String, CallableStatement> statements) {
+    this.statements = statements;
+  }
+
+  public Connection connection() {
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, this);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    switch (method.getName()) {
+      case "prepareCall":
+        preparedQueries.add((String) args[0]);
+        return statements.apply((String) args[0]);
+      case "setClientInfo":
+        if (clientInfoUnsupported) {
+          throw new SQLClientInfoException();
+        }
+        clientInfo.add(args[0] + "=" + args[1]);
+        return null;
+      case "isClosed":
+      case "isWrapperFor":
+        return false;
+      case "setAutoCommit":
+      case "commit":
+      case "rollback":
+      case "close":
+        return null;
+      default:
+        throw new UnsupportedOperationException(method.getName());
+    }
+  }
+}
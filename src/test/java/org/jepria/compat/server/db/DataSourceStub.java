@@ -0,0 +1,67 @@
+package org.jepria.compat.server.db;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.spi.InitialContextFactory;
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JNDI-контекст тестов, предоставляющий {@link Db} источники данных с заданными соединениями
+ */
+public class DataSourceStub implements InitialContextFactory {
+
+  private static final Map<String, Connection> connections = new ConcurrentHashMap<>();
+
+  private static final AtomicInteger nameCounter = new AtomicInteger();
+
+  /**
+   * Регистрирует соединение под новым JNDI-именем (Db кеширует источники данных по имени)
+   * @param connection
+   * @return JNDI-имя источника данных
+   */
+  public static String bind(Connection connection) {
+    System.setProperty(Context.INITIAL_CONTEXT_FACTORY, DataSourceStub.class.getName());
+    final String name = "jdbc/stub" + nameCounter.incrementAndGet();
+    connections.put(name, connection);
+    return name;
+  }
+
+  public static void unbind(String name) {
+    connections.remove(name);
+  }
+
+  @Override
+  public Context getInitialContext(Hashtable<?, ?> environment) {
+    return (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] {Context.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "lookup":
+              final Connection connection = connections.get(String.valueOf(args[0]));
+              if (connection == null) {
+                throw new NameNotFoundException(String.valueOf(args[0]));
+              }
+              return dataSource(connection);
+            case "close":
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  private static DataSource dataSource(Connection connection) {
+    return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] {DataSource.class},
+        (proxy, method, args) -> {
+          if ("getConnection".equals(method.getName())) {
+            return connection;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
@@ -0,0 +1,102 @@
+package org.jepria.compat.server.db;
+
+import org.jepria.compat.server.dao.StatementStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DbTest {
+
+  private StatementStub statement;
+  private ConnectionStub connection;
+  private String dataSourceName;
+  private Db db;
+
+  @Before
+  public void setUp() {
+    statement = new StatementStub(null);
+    connection = new ConnectionStub(query -> statement.statement());
+    dataSourceName = DataSourceStub.bind(connection.connection());
+    db = new Db(dataSourceName);
+  }
+
+  @After
+  public void tearDown() {
+    db.closeAll();
+    DataSourceStub.unbind(dataSourceName);
+  }
+
+  @Test
+  public void unchangedModuleIsNotSetAgain() throws Exception {
+    db.setModule("module", "action");
+    db.setModule("module", "action");
+
+    assertEquals(Arrays.asList("OCSID.MODULE=module", "OCSID.ACTION=action"), connection.clientInfo);
+    // the values are passed with the next query, without a separate call
+    assertTrue(connection.preparedQueries.isEmpty());
+  }
+
+  @Test
+  public void changedActionIsSet() throws Exception {
+    db.setModule("module", "action");
+    db.setModule("module", "other");
+
+    assertEquals(Arrays.asList("OCSID.MODULE=module", "OCSID.ACTION=action",
+        "OCSID.MODULE=module", "OCSID.ACTION=other"), connection.clientInfo);
+  }
+
+  @Test
+  public void moduleIsSetThroughApplicationInfoWithoutEndToEndMetrics() throws Exception {
+    connection.clientInfoUnsupported = true;
+    db.setModule("module", "action");
+
+    assertEquals(1, connection.preparedQueries.size());
+    assertTrue(connection.preparedQueries.get(0).contains("dbms_application_info.set_module"));
+    assertEquals("module", statement.parameters.get(1));
+    assertEquals("action", statement.parameters.get(2));
+    assertEquals(1, statement.executeCount);
+  }
+
+  @Test
+  public void unchangedModuleIsNotSetAgainThroughApplicationInfo() throws Exception {
+    connection.clientInfoUnsupported = true;
+    db.setModule("module", "action");
+    db.setModule("module", "action");
+    assertEquals(1, statement.executeCount);
+
+    db.setModule("module", "other");
+    assertEquals(2, statement.executeCount);
+    assertEquals("other", statement.parameters.get(2));
+    // the statement is prepared once
+    assertEquals(1, connection.preparedQueries.size());
+  }
+
+  @Test
+  public void endToEndMetricsAreNotRetriedAfterFailure() throws Exception {
+    connection.clientInfoUnsupported = true;
+    db.setModule("module", "action");
+
+    connection.clientInfoUnsupported = false;
+    db.setModule("module", "other");
+
+    assertEquals(Collections.emptyList(), connection.clientInfo);
+    assertEquals(2, statement.executeCount);
+  }
+
+  @Test
+  public void moduleIsTruncatedByBytes() throws Exception {
+    // 30 two-byte characters: 60 bytes, the module name is limited by 48 bytes
+    final StringBuilder moduleName = new StringBuilder();
+    for (int i = 0; i < 30; i++) {
+      moduleName.append('м');
+    }
+    db.setModule(moduleName.toString(), "action");
+
+    assertEquals("OCSID.MODULE=" + moduleName.substring(0, 24), connection.clientInfo.get(0));
+  }
+}
@@ -0,0 +1,257 @@
+package org.jepria.server.data;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CompactResultsetTest {
+
+  public static class Dto implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+    private int count;
+    private Long amount;
+    private String name;
+    private Boolean active;
+    private Double ratio;
+    private Float weight;
+    private Date date;
+    private Short code;
+    private Byte flags;
+    private Character letter;
+    private BigDecimal price;
+  }
+
+  public static class BaseDto {
+    protected Integer baseId;
+  }
+
+  public static class SubDto extends BaseDto {
+    private String name;
+  }
+
+  public static class ConstantsBaseDto {
+    public static final String CONSTANT = "constant";
+  }
+
+  public static class ConstantsSubDto extends ConstantsBaseDto {
+    private String name;
+  }
+
+  public static class FinalFieldDto {
+    private final String name = "name";
+  }
+
+  private static Dto dto(int i) {
+    final Dto dto = new Dto();
+    // каждое поле принимает значение null в части записей
+    dto.id = i % 7 == 0 ? null : i;
+    dto.count = i * 2;
+    dto.amount = i % 5 == 0 ? null : (long) i * 1000000000L;
+    dto.name = i % 3 == 0 ? null : "name" + (i % 4);
+    dto.active = i % 6 == 0 ? null : i % 2 == 0;
+    dto.ratio = i % 8 == 0 ? null : i / 3.0;
+    dto.weight = i % 9 == 0 ? null : i / 7.0f;
+    dto.date = i % 10 == 0 ? null : new Date(i * 86400000L);
+    dto.code = i % 11 == 0 ? null : (short) i;
+    dto.flags = i % 12 == 0 ? null : (byte) i;
+    dto.letter = i % 13 == 0 ? null : (char) ('a' + i % 26);
+    dto.price = i % 14 == 0 ? null : new BigDecimal(i).movePointLeft(2);
+    return dto;
+  }
+
+  private static List<Dto> records(int size) {
+    final List<Dto> records = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      records.add(dto(i));
+    }
+    return records;
+  }
+
+  private static void assertRecordsEqual(List<?> expected, List<?> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      final DtoAccessor accessor = DtoAccessor.forClass(expected.get(i).getClass());
+      assertSame(expected.get(i).getClass(), actual.get(i).getClass());
+      assertEquals("index " + i, accessor.toMap(expected.get(i)), accessor.toMap(actual.get(i)));
+    }
+  }
+
+  @Test
+  public void roundTrip() {
+    final List<Dto> records = records(100);
+    final List<?> compact = CompactResultset.compact(records);
+
+    assertTrue(compact instanceof CompactResultset);
+    assertRecordsEqual(records, compact);
+  }
+
+  @Test
+  public void getCreatesNewInstances() {
+    final List<?> compact = CompactResultset.compact(records(3));
+    assertNotSame(compact.get(1), compact.get(1));
+  }
+
+  @Test
+  public void notCompactedIfNotUniform() {
+    final List<Object> records = new ArrayList<>(records(3));
+    records.add(null);
+    assertSame(records, CompactResultset.compact(records));
+
+    final List<Object> mixed = new ArrayList<>(records(3));
+    mixed.add(new SubDto());
+    assertSame(mixed, CompactResultset.compact(mixed));
+
+    assertSame(Collections.emptyList(), CompactResultset.compact(Collections.emptyList()));
+  }
+
+  @Test
+  public void subclassWithInheritedFieldsIsNotCompacted() {
+    final SubDto dto = new SubDto();
+    dto.baseId = 1;
+    dto.name = "name";
+    final List<SubDto> records = Collections.singletonList(dto);
+
+    // компактное представление потеряло бы значение унаследованного поля baseId
+    final List<?> result = CompactResultset.compact(records);
+    assertSame(records, result);
+    assertEquals(1, (int) ((SubDto) result.get(0)).baseId);
+  }
+
+  @Test
+  public void subclassWithInheritedConstantsRoundTrip() {
+    final ConstantsSubDto dto = new ConstantsSubDto();
+    dto.name = "name";
+    final List<ConstantsSubDto> records = Arrays.asList(dto, new ConstantsSubDto());
+
+    final List<?> compact = CompactResultset.compact(records);
+    assertTrue(compact instanceof CompactResultset);
+    assertRecordsEqual(records, compact);
+  }
+
+  @Test
+  public void finalFieldsAreNotCompacted() {
+    final List<FinalFieldDto> records = Collections.singletonList(new FinalFieldDto());
+    assertSame(records, CompactResultset.compact(records));
+  }
+
+  @Test
+  public void dateSubclassValuesAreKept() {
+    final List<Dto> records = records(3);
+    records.get(1).date = new Timestamp(123456789L);
+
+    final List<?> compact = CompactResultset.compact(records);
+    assertRecordsEqual(records, compact);
+    assertSame(Timestamp.class, ((Dto) compact.get(1)).date.getClass());
+  }
+
+  @Test
+  public void setReplacesRecord() {
+    final List<Dto> records = records(10);
+    @SuppressWarnings("unchecked")
+    final List<Object> compact = (List<Object>) CompactResultset.compact(records);
+
+    final Dto dto = dto(42);
+    dto.date = new Timestamp(1000L);
+    final Object previous = compact.set(3, dto);
+    records.set(3, dto);
+
+    assertRecordsEqual(Collections.singletonList(dto(3)), Collections.singletonList(previous));
+    assertRecordsEqual(records, compact);
+
+    try {
+      compact.set(0, new SubDto());
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * @return индексы словарей строковых колонок списка
+   */
+  private static List<Object> dictionaryCodes(CompactResultset compact) throws ReflectiveOperationException {
+    final Field columnsField = CompactResultset.class.getDeclaredField("columns");
+    columnsField.setAccessible(true);
+    final List<Object> dictionaryCodes = new ArrayList<>();
+    for (Object column: (Object[]) columnsField.get(compact)) {
+      if (column.getClass().getSimpleName().equals("StringColumn")) {
+        final Field field = column.getClass().getDeclaredField("dictionaryCodes");
+        field.setAccessible(true);
+        dictionaryCodes.add(field.get(column));
+      }
+    }
+    return dictionaryCodes;
+  }
+
+  @Test
+  public void dictionaryIndexIsReleasedAfterCreation() throws ReflectiveOperationException {
+    final CompactResultset compact = (CompactResultset) CompactResultset.compact(records(100));
+    assertEquals(Collections.singletonList(null), dictionaryCodes(compact));
+
+    // the index is rebuilt by a replacement of a record only
+    compact.set(1, dto(5));
+    assertNotNull(dictionaryCodes(compact).get(0));
+    assertRecordsEqual(Collections.singletonList(dto(5)), compact.subList(1, 2));
+  }
+
+  @Test
+  public void reorder() {
+    final List<Dto> records = records(5);
+    final CompactResultset compact = (CompactResultset) CompactResultset.compact(records);
+
+    compact.reorder(new int[] {4, 3, 2, 1, 0});
+
+    final List<Dto> expected = new ArrayList<>(records);
+    Collections.reverse(expected);
+    assertRecordsEqual(expected, compact);
+  }
+
+  @Test
+  public void copyIsIndependent() {
+    final List<Dto> records = records(20);
+    final CompactResultset compact = (CompactResultset) CompactResultset.compact(records);
+
+    final CompactResultset copy = compact.copy();
+    final int[] order = new int[20];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = order.length - 1 - i;
+    }
+    copy.reorder(order);
+    copy.set(0, dto(100));
+
+    assertRecordsEqual(records, compact);
+    assertRecordsEqual(Collections.singletonList(dto(100)), copy.subList(0, 1));
+    assertRecordsEqual(Collections.singletonList(dto(0)), copy.subList(19, 20));
+  }
+
+  @Test
+  public void serializationRoundTrip() throws IOException, ClassNotFoundException {
+    final List<Dto> records = records(50);
+    final List<?> compact = CompactResultset.compact(records);
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(compact);
+    }
+    final List<?> deserialized;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      deserialized = (List<?>) in.readObject();
+    }
+
+    assertRecordsEqual(records, deserialized);
+
+    // the string dictionary is restored after deserialization
+    @SuppressWarnings("unchecked")
+    final List<Object> modifiable = (List<Object>) deserialized;
+    modifiable.set(1, dto(2));
+    assertRecordsEqual(Collections.singletonList(dto(2)), modifiable.subList(1, 2));
+  }
+}
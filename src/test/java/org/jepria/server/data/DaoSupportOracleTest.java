@@ -0,0 +1,172 @@
+package org.jepria.server.data;
+
+import org.jepria.compat.server.dao.CallContext;
+import org.jepria.compat.server.dao.ResultSetMapper;
+import org.jepria.compat.server.dao.ResultSetStub;
+import org.jepria.compat.server.dao.StatementStub;
+import org.jepria.compat.server.db.ConnectionStub;
+import org.jepria.compat.server.db.DataSourceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DaoSupportOracleTest {
+
+  public static class Dto {
+    private Integer id;
+    private String name;
+  }
+
+  private static final ResultSetMapper<Dto> mapper = new ResultSetMapper<Dto>() {
+    @Override
+    public void map(ResultSet rs, Dto dto) throws SQLException {
+      dto.id = getInteger(rs, "ID");
+      dto.name = rs.getString("NAME");
+    }
+  };
+
+  private ResultSetStub resultSet;
+  private StatementStub statement;
+  private String dataSourceName;
+
+  @Before
+  public void setUp() {
+    resultSet = new ResultSetStub(Arrays.asList("ID", "NAME"),
+        new Object[] {1, "a"},
+        new Object[] {2, "b"},
+        new Object[] {3, null});
+    statement = new StatementStub(resultSet.resultSet());
+    dataSourceName = DataSourceStub.bind(new ConnectionStub(query -> statement.statement()).connection());
+    CallContext.begin(dataSourceName, "module");
+  }
+
+  @After
+  public void tearDown() {
+    CallContext.end();
+    DataSourceStub.unbind(dataSourceName);
+  }
+
+  private static List<Object> ids(List<Dto> records) {
+    final List<Object> ids = new ArrayList<>();
+    for (Dto record: records) {
+      ids.add(record.id);
+    }
+    return ids;
+  }
+
+  @Test
+  public void findEachPassesRecordsInCursorOrder() {
+    final List<Dto> records = new ArrayList<>();
+    new DaoSupportOracle().<Dto>findEach("begin ? := pkg_Test.findTest(id => ?); end;", mapper, Dto.class, records::add, 10);
+
+    assertEquals(Arrays.asList(1, 2, 3), ids(records));
+    assertEquals("b", records.get(1).name);
+    assertNull(records.get(2).name);
+    // the first parameter is the cursor, the input parameters follow it
+    assertEquals(10, statement.parameters.get(2));
+    assertTrue(resultSet.closed);
+    // the column indexes are resolved once for the cursor
+    assertEquals(Integer.valueOf(1), resultSet.findColumnCounts.get("ID"));
+  }
+
+  @Test
+  public void selectEachPassesRecordsInQueryOrder() {
+    final List<Dto> records = new ArrayList<>();
+    new DaoSupportOracle().<Dto>selectEach("select id, name from test where id > ?", mapper, Dto.class, records::add, 0);
+
+    assertEquals(Arrays.asList(1, 2, 3), ids(records));
+    assertEquals(0, statement.parameters.get(1));
+    assertTrue(resultSet.closed);
+  }
+
+  @Test
+  public void consumerExceptionIsThrownAsIs() {
+    final List<Dto> records = new ArrayList<>();
+    final IllegalStateException failure = new IllegalStateException("failure");
+    try {
+      new DaoSupportOracle().<Dto>findEach("begin ? := pkg_Test.findTest(); end;", mapper, Dto.class, record -> {
+        records.add(record);
+        throw failure;
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertSame(failure, e);
+    }
+
+    // the cursor is not read further
+    assertEquals(1, records.size());
+    assertTrue(resultSet.closed);
+  }
+
+  @Test
+  public void explicitFetchSizeIsRestored() {
+    new DaoSupportOracle(2).<Dto>findEach("begin ? := pkg_Test.findTest(); end;", mapper, Dto.class, record -> {});
+
+    // the explicit fetch size is not adapted
+    assertEquals(Collections.singletonList(2), statement.fetchSizes);
+    assertEquals(Collections.singleton(2), new HashSet<>(resultSet.fetchSizes));
+    assertNull(CallContext.getFetchSize());
+  }
+
+  private static List<Object[]> paramsList(int size) {
+    final List<Object[]> paramsList = new ArrayList<>();
+    for (int i = 1; i <= size; i++) {
+      paramsList.add(new Object[] {i});
+    }
+    return paramsList;
+  }
+
+  @Test
+  public void executeBatchSendsPartialLastBatch() {
+    final int[] result = new DaoSupportOracle().executeBatch("update test set name = 'x' where id = ?", paramsList(5), 2);
+
+    assertEquals(Arrays.asList(2, 2, 1), statement.batchSizes);
+    // the update counts of each batch are placed at the positions of its parameter sets
+    assertArrayEquals(new int[] {1, 1, 2, 2, 3}, result);
+    assertEquals(5, statement.parameters.get(1));
+    assertEquals(1, statement.clearBatchCount);
+  }
+
+  @Test
+  public void executeBatchWithoutPartialBatch() {
+    final int[] result = new DaoSupportOracle().executeBatch("update test set name = 'x' where id = ?", paramsList(4), 2);
+
+    assertEquals(Arrays.asList(2, 2), statement.batchSizes);
+    assertArrayEquals(new int[] {1, 1, 2, 2}, result);
+  }
+
+  @Test
+  public void executeBatchOfEmptyListIsNotSent() {
+    final int[] result = new DaoSupportOracle().executeBatch("update test set name = 'x' where id = ?", Collections.emptyList(), 2);
+
+    assertEquals(0, result.length);
+    assertTrue(statement.batchSizes.isEmpty());
+  }
+
+  @Test
+  public void failedBatchIsCleared() {
+    statement.failingBatchNumber = 2;
+    try {
+      new DaoSupportOracle().executeBatch("update test set name = 'x' where id = ?", paramsList(5), 2);
+      fail();
+    } catch (RuntimeSQLException e) {
+      assertTrue(e.getSQLException() instanceof BatchUpdateException);
+    }
+
+    assertEquals(Collections.singletonList(2), statement.batchSizes);
+    // the cached statement keeps no parameter sets of the failed batch
+    assertEquals(1, statement.clearBatchCount);
+    assertEquals(0, statement.pendingBatchSize);
+  }
+}
@@ -0,0 +1,35 @@
+package org.jepria.server.data;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExcelDaoTest {
+
+  private static final String[] HEADERS = {"Id", "Name"};
+
+  @Test
+  public void streamingPrintMatchesPrint() {
+    final List<Object> templates = new ArrayList<>();
+    final StreamingDao dao = (template, consumer, operatorId) -> {
+      templates.add(template);
+      consumer.accept(new String[] {"1", "a"});
+      consumer.accept(new String[] {"2", "b"});
+    };
+
+    final StringWriter streamed = new StringWriter();
+    ExcelDao.print(HEADERS, dao, "template", null, record -> (String[]) record, new PrintWriter(streamed));
+
+    final StringWriter printed = new StringWriter();
+    ExcelDao.print(HEADERS, new String[][] {{"1", "a"}, {"2", "b"}}, new PrintWriter(printed));
+
+    assertEquals(printed.toString(), streamed.toString());
+    assertEquals(Arrays.asList("template"), templates);
+  }
+}
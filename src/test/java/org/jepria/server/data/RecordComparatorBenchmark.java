@@ -0,0 +1,143 @@
+package org.jepria.server.data;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Микробенчмарк сортировки списка записей {@link RecordComparator}.
+ * <br/>
+ * Сравнивает сортировку прежним компаратором ({@link LegacyRecordComparator}: преобразование записей в Map при каждом сравнении),
+ * компаратором {@link RecordComparator} ({@code Collections.sort}, извлечение значений полей при каждом сравнении)
+ * и {@link RecordComparator#sort(List, int, java.util.concurrent.ForkJoinPool)} (однократное извлечение значений полей),
+ * последовательной и параллельной, а также досортировку по плану {@link SortDelta}.
+ * <br/>
+ * Запуск: {@code java -cp <test classpath> org.jepria.server.data.RecordComparatorBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordComparatorBenchmark {
+
+  @Param({"10000", "100000"})
+  public int size;
+
+  private List<RecordComparatorTest.Dto> records;
+
+  private List<RecordComparatorTest.Dto> sortedByName;
+
+  private RecordComparator comparator;
+
+  private Comparator<Object> legacyComparator;
+
+  private SortDelta delta;
+
+  private List<RecordComparatorTest.Dto> list;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    final Random random = new Random(size);
+    records = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      records.add(new RecordComparatorTest.Dto(random.nextInt(size), "name" + random.nextInt(100), new Date(random.nextInt(1000) * 1000L)));
+    }
+
+    final Map<String, Integer> sortedBy = new LinkedHashMap<>();
+    sortedBy.put("name", 1);
+    final Map<String, Integer> requested = new LinkedHashMap<>();
+    requested.put("name", 1);
+    requested.put("date", -1);
+
+    comparator = new RecordComparator(new ArrayList<>(requested.keySet()), null, requested::get);
+    legacyComparator = new LegacyRecordComparator(new ArrayList<>(requested.keySet()), requested::get);
+
+    sortedByName = new ArrayList<>(records);
+    new RecordComparator(new ArrayList<>(sortedBy.keySet()), null, sortedBy::get).sort(sortedByName);
+    delta = SortDelta.plan(sortedBy, requested);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    list = new ArrayList<>(records);
+  }
+
+  @Benchmark
+  public List<?> legacyCollectionsSort() {
+    Collections.sort(list, legacyComparator);
+    return list;
+  }
+
+  @Benchmark
+  public List<?> collectionsSort() {
+    Collections.sort(list, comparator);
+    return list;
+  }
+
+  @Benchmark
+  public List<?> sortSequential() {
+    comparator.sort(list, 0, null);
+    return list;
+  }
+
+  @Benchmark
+  public List<?> sortParallel() {
+    comparator.sort(list, 1, null);
+    return list;
+  }
+
+  @Benchmark
+  public List<?> resortWithDelta() {
+    final List<?> list = new ArrayList<>(sortedByName);
+    comparator.sort(list, delta, 0, null);
+    return list;
+  }
+
+  /**
+   * Прежняя реализация сравнения записей (до {@link DtoAccessor}): записи преобразуются в Map ({@link DtoUtil#dtoToMap})
+   * при каждом сравнении, компаратор и направление сортировки поля определяются при каждом сравнении
+   */
+  static class LegacyRecordComparator extends RecordComparator {
+
+    LegacyRecordComparator(List<String> fieldNames, Function<String, Integer> sortOrderSupplier) {
+      super(fieldNames, null, sortOrderSupplier);
+    }
+
+    @Override
+    public int compare(Object record1, Object record2) {
+      if (record1 == null || record2 == null) {
+        if (record1 == null && record2 == null) {
+          return onBothNull();
+        } else {
+          return record1 == null ? onFirstNull(record2) : onSecondNull(record1);
+        }
+      }
+
+      final Map<String, ?> map1 = DtoUtil.dtoToMap(record1);
+      final Map<String, ?> map2 = DtoUtil.dtoToMap(record2);
+
+      final int cmpResult = compareByFields(map1, map2, fieldNames, fieldComparatorSupplier, sortOrderSupplier);
+      if (cmpResult != 0) {
+        return cmpResult;
+      }
+
+      final List<String> remainFieldNames = new ArrayList<>();
+      remainFieldNames.addAll(map1.keySet());
+      remainFieldNames.addAll(map2.keySet());
+      remainFieldNames.removeAll(fieldNames);
+
+      return compareByFields(map1, map2, remainFieldNames, fieldName -> getDefaultFieldComparator(), fieldName -> 1);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RecordComparatorBenchmark.class.getSimpleName()).build()).run();
+  }
+}
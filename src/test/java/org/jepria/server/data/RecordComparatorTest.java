@@ -0,0 +1,202 @@
+package org.jepria.server.data;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RecordComparatorTest {
+
+  public static class Dto {
+    private Integer id;
+    private String name;
+    private Date date;
+
+    public Dto() {
+    }
+
+    public Dto(Integer id, String name, Date date) {
+      this.id = id;
+      this.name = name;
+      this.date = date;
+    }
+
+    @Override
+    public String toString() {
+      return "Dto{id=" + id + ", name=" + name + ", date=" + (date == null ? null : date.getTime()) + "}";
+    }
+  }
+
+  private static List<Dto> randomRecords(int size, long seed) {
+    final Random random = new Random(seed);
+    final List<Dto> records = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      if (random.nextInt(50) == 0) {
+        records.add(null);
+        continue;
+      }
+      // малые диапазоны значений дают много записей, равных по полям сортировки
+      records.add(new Dto(
+          random.nextInt(10) == 0 ? null : random.nextInt(20),
+          random.nextInt(10) == 0 ? null : "name" + random.nextInt(5),
+          random.nextInt(10) == 0 ? null : new Date(random.nextInt(3) * 1000L)));
+    }
+    return records;
+  }
+
+  private static RecordComparator comparator(List<String> fieldNames, Map<String, Integer> sortOrders) {
+    return new RecordComparator(fieldNames, null, sortOrders::get);
+  }
+
+  private static void assertSortedAsCollectionsSort(RecordComparator comparator, List<Dto> records, int parallelThreshold) {
+    final List<Dto> expected = new ArrayList<>(records);
+    Collections.sort(expected, comparator);
+
+    final List<Dto> actual = new ArrayList<>(records);
+    comparator.sort(actual, parallelThreshold, null);
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertSame("index " + i, expected.get(i), actual.get(i));
+    }
+  }
+
+  @Test
+  public void sortEqualsCollectionsSort() {
+    final Map<String, Integer> sortOrders = new HashMap<>();
+    sortOrders.put("name", 1);
+    sortOrders.put("id", -1);
+    final RecordComparator comparator = comparator(Arrays.asList("name", "id"), sortOrders);
+
+    assertSortedAsCollectionsSort(comparator, randomRecords(1000, 1), 0);
+  }
+
+  @Test
+  public void parallelSortEqualsCollectionsSort() {
+    final Map<String, Integer> sortOrders = new HashMap<>();
+    sortOrders.put("date", -1);
+    final RecordComparator comparator = comparator(Collections.singletonList("date"), sortOrders);
+
+    assertSortedAsCollectionsSort(comparator, randomRecords(5000, 2), 1);
+  }
+
+  @Test
+  public void sortWithCustomFieldComparator() {
+    final Comparator<Object> byLength = Comparator.nullsLast(Comparator.comparingInt(o -> o.toString().length()));
+    final RecordComparator comparator = new RecordComparator(Collections.singletonList("id"),
+        fieldName -> "id".equals(fieldName) ? byLength : null, null);
+
+    assertSortedAsCollectionsSort(comparator, randomRecords(1000, 3), 0);
+  }
+
+  @Test
+  public void sortByFieldMissingInClass() {
+    final RecordComparator comparator = comparator(Arrays.asList("absent", "id"), new HashMap<>());
+
+    assertSortedAsCollectionsSort(comparator, randomRecords(500, 4), 0);
+  }
+
+  @Test
+  public void remainFieldsMakeOrderIndependentOfInitialOrder() {
+    final Dto a = new Dto(1, "b", new Date(0));
+    final Dto b = new Dto(1, "a", new Date(0));
+    final Dto c = new Dto(0, "c", new Date(0));
+    final Dto d = new Dto(0, "c", new Date(1000));
+
+    // записи, равные по полю date, упорядочиваются по остальным полям (порядок их перебора не специфицирован)
+    final RecordComparator comparator = comparator(Collections.singletonList("date"), new HashMap<>());
+    final List<Dto> list = new ArrayList<>(Arrays.asList(a, b, c, d));
+    comparator.sort(list);
+    final List<Dto> reversed = new ArrayList<>(Arrays.asList(d, c, b, a));
+    comparator.sort(reversed);
+
+    assertEquals(list, reversed);
+    assertSame(d, list.get(3));
+  }
+
+  @Test
+  public void nullRecordsGoToTail() {
+    final Dto a = new Dto(2, null, null);
+    final Dto b = new Dto(1, null, null);
+
+    final List<Dto> list = new ArrayList<>(Arrays.asList(null, a, null, b));
+    comparator(Collections.singletonList("id"), new HashMap<>()).sort(list);
+
+    assertSame(b, list.get(0));
+    assertSame(a, list.get(1));
+    assertEquals(null, list.get(2));
+    assertEquals(null, list.get(3));
+  }
+
+  @Test
+  public void overriddenCompareIsRespected() {
+    final RecordComparator comparator = new RecordComparator(Collections.singletonList("id")) {
+      @Override
+      public int compare(Object record1, Object record2) {
+        return -super.compare(record1, record2);
+      }
+    };
+
+    assertSortedAsCollectionsSort(comparator, randomRecords(300, 5), 0);
+  }
+
+  @Test
+  public void resortWithDeltaEqualsFullSort() {
+    final List<Dto> records = randomRecords(2000, 6);
+    // null-записи в конце списка нарушают упорядоченность обращённого списка, см. resortWithWrongDeltaFallsBackToFullSort
+    records.removeIf(Objects::isNull);
+
+    final Map<String, Integer> sortedBy = new LinkedHashMap<>();
+    sortedBy.put("name", 1);
+    final Map<String, Integer> sortedByDesc = new LinkedHashMap<>();
+    sortedByDesc.put("name", -1);
+    final Map<String, Integer> requested = new LinkedHashMap<>();
+    requested.put("name", -1);
+    requested.put("id", 1);
+
+    final List<String> requestedFields = new ArrayList<>(requested.keySet());
+
+    // досортировка групп равных значений (same prefix) и обращение (flipped prefix)
+    for (Map<String, Integer> initial: Arrays.asList(sortedBy, sortedByDesc)) {
+      final List<Dto> list = new ArrayList<>(records);
+      comparator(new ArrayList<>(initial.keySet()), initial).sort(list);
+
+      final SortDelta delta = SortDelta.plan(initial, requested);
+      assertEquals(1, delta.getSortedKeyCount());
+      assertEquals(initial == sortedBy, delta.isReverse());
+
+      final RecordComparator comparator = comparator(requestedFields, requested);
+      final List<Dto> expected = new ArrayList<>(list);
+      Collections.sort(expected, comparator);
+
+      comparator.sort(list, delta, 0, null);
+      for (int i = 0; i < expected.size(); i++) {
+        // обращение списка меняет взаимный порядок записей, равных по всем полям
+        assertEquals("index " + i, 0, comparator.compare(expected.get(i), list.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void resortWithWrongDeltaFallsBackToFullSort() {
+    final List<Dto> list = randomRecords(1000, 7);
+    final Map<String, Integer> requested = new LinkedHashMap<>();
+    requested.put("id", 1);
+    requested.put("name", 1);
+    final RecordComparator comparator = comparator(new ArrayList<>(requested.keySet()), requested);
+
+    final List<Dto> expected = new ArrayList<>(list);
+    Collections.sort(expected, comparator);
+
+    // список в действительности не отсортирован по id
+    final Map<String, Integer> sortedBy = new LinkedHashMap<>();
+    sortedBy.put("id", 1);
+    comparator.sort(list, SortDelta.plan(sortedBy, requested), 0, null);
+
+    for (int i = 0; i < expected.size(); i++) {
+      assertSame("index " + i, expected.get(i), list.get(i));
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package org.jepria.server.data;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SortDeltaTest {
+
+  /**
+   * @param fieldsAndOrders чередующиеся имена полей и направления сортировки
+   */
+  private static Map<String, Integer> config(Object... fieldsAndOrders) {
+    final Map<String, Integer> config = new LinkedHashMap<>();
+    for (int i = 0; i < fieldsAndOrders.length; i += 2) {
+      config.put((String) fieldsAndOrders[i], (Integer) fieldsAndOrders[i + 1]);
+    }
+    return config;
+  }
+
+  @Test
+  public void notSortedRequiresFullSort() {
+    assertTrue(SortDelta.plan(null, config("a", 1)).isFullSort());
+    assertTrue(SortDelta.plan(config(), config("a", 1)).isFullSort());
+  }
+
+  @Test
+  public void sameConfigRequiresNothing() {
+    final SortDelta delta = SortDelta.plan(config("a", 1, "b", -1), config("a", 1, "b", -1));
+    assertTrue(delta.isNone());
+    assertFalse(delta.isFullSort());
+    assertFalse(delta.isReverse());
+  }
+
+  @Test
+  public void nullAndPositiveOrdersAreAscending() {
+    assertTrue(SortDelta.plan(config("a", null), config("a", 1)).isNone());
+    assertTrue(SortDelta.plan(config("a", 0), config("a", null)).isNone());
+  }
+
+  @Test
+  public void extendedConfigSortsEqualRuns() {
+    final SortDelta delta = SortDelta.plan(config("a", 1), config("a", 1, "b", -1, "c", 1));
+    assertFalse(delta.isNone());
+    assertFalse(delta.isFullSort());
+    assertFalse(delta.isReverse());
+    assertEquals(1, delta.getSortedKeyCount());
+  }
+
+  @Test
+  public void shortenedConfigSortsEqualRuns() {
+    // список, отсортированный по (a, b), упорядочен и по (a), но не по уточняющим полям записи
+    final SortDelta delta = SortDelta.plan(config("a", 1, "b", 1), config("a", 1));
+    assertFalse(delta.isNone());
+    assertFalse(delta.isReverse());
+    assertEquals(1, delta.getSortedKeyCount());
+  }
+
+  @Test
+  public void commonPrefixStopsAtDirectionChange() {
+    final SortDelta delta = SortDelta.plan(config("a", 1, "b", 1), config("a", 1, "b", -1));
+    assertFalse(delta.isReverse());
+    assertEquals(1, delta.getSortedKeyCount());
+  }
+
+  @Test
+  public void flippedConfigReverses() {
+    final SortDelta delta = SortDelta.plan(config("a", 1, "b", -1), config("a", -1, "b", 1, "c", 1));
+    assertFalse(delta.isNone());
+    assertFalse(delta.isFullSort());
+    assertTrue(delta.isReverse());
+    assertEquals(2, delta.getSortedKeyCount());
+  }
+
+  @Test
+  public void flippedPrefixStopsAtSameDirection() {
+    final SortDelta delta = SortDelta.plan(config("a", 1, "b", 1), config("a", -1, "b", 1));
+    assertTrue(delta.isReverse());
+    assertEquals(1, delta.getSortedKeyCount());
+  }
+
+  @Test
+  public void fullyFlippedConfigReversesAndSortsEqualRuns() {
+    // обращение списка не упорядочивает записи, равные по всем полям конфигурации, поэтому группы всё равно досортировываются
+    final SortDelta delta = SortDelta.plan(config("a", 1), config("a", -1));
+    assertFalse(delta.isNone());
+    assertTrue(delta.isReverse());
+    assertEquals(1, delta.getSortedKeyCount());
+  }
+
+  @Test
+  public void differentFirstFieldRequiresFullSort() {
+    assertTrue(SortDelta.plan(config("a", 1, "b", 1), config("b", 1, "a", 1)).isFullSort());
+    assertFalse(SortDelta.plan(config("a", 1, "b", 1), config("b", 1, "a", 1)).isReverse());
+  }
+
+  @Test
+  public void emptyRequestedConfigRequiresFullSort() {
+    assertTrue(SortDelta.plan(config("a", 1), config()).isFullSort());
+  }
+}
@@ -0,0 +1,292 @@
+package org.jepria.server.service.rest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.*;
+
+public class CompressionInterceptorTest {
+
+  @After
+  public void tearDown() {
+    System.clearProperty(CompressionInterceptor.MIN_SIZE_PROPERTY);
+    System.clearProperty(CompressionInterceptor.LEVEL_PROPERTY);
+  }
+
+  private static String select(String... acceptEncoding) {
+    return CompressionInterceptor.selectContentCoding(Arrays.asList(acceptEncoding));
+  }
+
+  @Test
+  public void selectContentCoding() {
+    assertNull(CompressionInterceptor.selectContentCoding(null));
+    assertNull(select());
+    assertNull(select("identity"));
+    assertNull(select("br"));
+
+    assertEquals(CompressionInterceptor.GZIP, select("gzip"));
+    assertEquals(CompressionInterceptor.GZIP, select("x-gzip"));
+    assertEquals(CompressionInterceptor.GZIP, select("GZip"));
+    assertEquals(CompressionInterceptor.DEFLATE, select("deflate"));
+    // gzip is preferred regardless of the order and the q-values
+    assertEquals(CompressionInterceptor.GZIP, select("deflate, gzip"));
+    assertEquals(CompressionInterceptor.GZIP, select("deflate;q=1.0, gzip;q=0.5"));
+    // multiple header values
+    assertEquals(CompressionInterceptor.GZIP, select("br", "gzip"));
+  }
+
+  @Test
+  public void selectContentCodingRefused() {
+    assertNull(select("gzip;q=0"));
+    assertNull(select("gzip; q=0.0, deflate;q=0"));
+    assertEquals(CompressionInterceptor.DEFLATE, select("gzip;q=0, deflate"));
+    // an invalid q-value is not acceptable
+    assertEquals(CompressionInterceptor.DEFLATE, select("gzip;q=abc, deflate"));
+  }
+
+  @Test
+  public void selectContentCodingWildcard() {
+    assertEquals(CompressionInterceptor.GZIP, select("*"));
+    assertEquals(CompressionInterceptor.DEFLATE, select("gzip;q=0, *"));
+    assertNull(select("gzip;q=0, deflate;q=0, *"));
+    assertNull(select("*;q=0"));
+  }
+
+  @Test
+  public void levelIsClamped() {
+    assertEquals(CompressionInterceptor.DEFAULT_LEVEL, CompressionInterceptor.getLevel());
+    System.setProperty(CompressionInterceptor.LEVEL_PROPERTY, "5");
+    assertEquals(5, CompressionInterceptor.getLevel());
+    System.setProperty(CompressionInterceptor.LEVEL_PROPERTY, "12");
+    assertEquals(Deflater.BEST_COMPRESSION, CompressionInterceptor.getLevel());
+    System.setProperty(CompressionInterceptor.LEVEL_PROPERTY, "-5");
+    assertEquals(Deflater.DEFAULT_COMPRESSION, CompressionInterceptor.getLevel());
+  }
+
+  /**
+   * Entity provider writing into the stream of the interceptor context
+   */
+  private interface EntityWriter {
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  private static class Invocation {
+    final MultivaluedHashMap<String, Object> headers = new MultivaluedHashMap<>();
+    final ByteArrayOutputStream entity = new ByteArrayOutputStream();
+
+    String getContentEncoding() {
+      return (String) headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+    }
+  }
+
+  private static Invocation invoke(String acceptEncoding, EntityWriter entityWriter) throws Exception {
+    final Invocation invocation = new Invocation();
+    invoke(invocation, acceptEncoding, entityWriter);
+    return invocation;
+  }
+
+  private static void invoke(Invocation invocation, String acceptEncoding, EntityWriter entityWriter) throws Exception {
+    final OutputStream[] out = {invocation.entity};
+
+    final HttpHeaders requestHeaders = (HttpHeaders) Proxy.newProxyInstance(HttpHeaders.class.getClassLoader(), new Class<?>[] {HttpHeaders.class},
+        (proxy, method, args) -> {
+          if ("getRequestHeader".equals(method.getName()) && HttpHeaders.ACCEPT_ENCODING.equals(args[0])) {
+            return acceptEncoding == null ? null : Collections.singletonList(acceptEncoding);
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+
+    final WriterInterceptorContext context = (WriterInterceptorContext) Proxy.newProxyInstance(WriterInterceptorContext.class.getClassLoader(),
+        new Class<?>[] {WriterInterceptorContext.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getHeaders":
+              return invocation.headers;
+            case "getMediaType":
+              return null;
+            case "getOutputStream":
+              return out[0];
+            case "setOutputStream":
+              out[0] = (OutputStream) args[0];
+              return null;
+            case "proceed":
+              entityWriter.writeTo(out[0]);
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    final CompressionInterceptor interceptor = new CompressionInterceptor();
+    final Field field = CompressionInterceptor.class.getDeclaredField("requestHeaders");
+    field.setAccessible(true);
+    field.set(interceptor, requestHeaders);
+
+    interceptor.aroundWriteTo(context);
+  }
+
+  private static byte[] data(int size) {
+    final byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) ('a' + i % 7);
+    }
+    return data;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      result.write(buffer, 0, n);
+    }
+    return result.toByteArray();
+  }
+
+  /**
+   * Reads the decompressed bytes available in an unfinished compressed stream
+   */
+  private static byte[] readAvailable(InputStream in) {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try {
+      int b;
+      while ((b = in.read()) != -1) {
+        result.write(b);
+      }
+    } catch (IOException e) {
+      // the end of the unfinished stream
+    }
+    return result.toByteArray();
+  }
+
+  @Test
+  public void smallEntityIsNotCompressed() throws Exception {
+    final byte[] data = data(100);
+    final Invocation invocation = invoke("gzip", out -> {
+      out.write(data);
+      out.flush();
+    });
+
+    assertNull(invocation.getContentEncoding());
+    assertArrayEquals(data, invocation.entity.toByteArray());
+    assertEquals(Collections.singletonList(HttpHeaders.ACCEPT_ENCODING), invocation.headers.get(HttpHeaders.VARY));
+  }
+
+  @Test
+  public void entityIsNotCompressedIfNotAccepted() throws Exception {
+    final byte[] data = data(10000);
+    final Invocation invocation = invoke(null, out -> out.write(data));
+
+    assertNull(invocation.getContentEncoding());
+    assertArrayEquals(data, invocation.entity.toByteArray());
+  }
+
+  @Test
+  public void largeEntityIsCompressed() throws Exception {
+    final byte[] data = data(10000);
+
+    final Invocation gzip = invoke("gzip", out -> {
+      out.write(data, 0, 500);
+      out.write(data, 500, data.length - 500);
+      out.flush();
+    });
+    assertEquals(CompressionInterceptor.GZIP, gzip.getContentEncoding());
+    assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(gzip.entity.toByteArray()))));
+
+    final Invocation deflate = invoke("deflate", out -> out.write(data));
+    assertEquals(CompressionInterceptor.DEFLATE, deflate.getContentEncoding());
+    assertArrayEquals(data, readAll(new InflaterInputStream(new ByteArrayInputStream(deflate.entity.toByteArray()))));
+  }
+
+  @Test
+  public void flushBeforeThresholdSendsUncompressed() throws Exception {
+    final byte[] line = "{\"id\":1}\n".getBytes(StandardCharsets.UTF_8);
+    final byte[] data = data(10000);
+    final Invocation invocation = new Invocation();
+    final byte[][] flushed = new byte[1][];
+
+    invoke(invocation, "gzip", out -> {
+      out.write(line);
+      out.flush();
+      // the flushed line is not held back until the threshold is reached
+      flushed[0] = invocation.entity.toByteArray();
+      out.write(data);
+    });
+
+    assertArrayEquals(line, flushed[0]);
+    // the entity is sent uncompressed once flushed
+    assertNull(invocation.getContentEncoding());
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(line);
+    expected.write(data);
+    assertArrayEquals(expected.toByteArray(), invocation.entity.toByteArray());
+  }
+
+  @Test
+  public void flushAfterCompressionStartedSyncFlushes() throws Exception {
+    final byte[] data = data(5000);
+    final Invocation invocation = new Invocation();
+    final byte[][] flushed = new byte[1][];
+
+    invoke(invocation, "gzip", out -> {
+      out.write(data);
+      out.flush();
+      // all the data written so far can be decompressed before the stream is finished
+      flushed[0] = readAvailable(new GZIPInputStream(new ByteArrayInputStream(invocation.entity.toByteArray())));
+      out.write(data);
+    });
+
+    assertEquals(CompressionInterceptor.GZIP, invocation.getContentEncoding());
+    assertArrayEquals(data, flushed[0]);
+    assertEquals(data.length * 2, readAll(new GZIPInputStream(new ByteArrayInputStream(invocation.entity.toByteArray()))).length);
+  }
+
+  @Test
+  public void failedEntityIsNotFinished() throws Exception {
+    final byte[] data = data(5000);
+    final Invocation invocation = new Invocation();
+    final OutputStream[] stream = new OutputStream[1];
+
+    try {
+      invoke(invocation, "gzip", out -> {
+        stream[0] = out;
+        out.write(data);
+        throw new IOException("failure");
+      });
+      fail();
+    } catch (IOException e) {
+      assertEquals("failure", e.getMessage());
+    }
+
+    // the compressed data is not completed with the gzip trailer
+    try {
+      readAll(new GZIPInputStream(new ByteArrayInputStream(invocation.entity.toByteArray())));
+      fail();
+    } catch (EOFException e) {
+      // expected
+    }
+    try {
+      stream[0].write(data);
+      fail();
+    } catch (IOException e) {
+      // the stream is finished
+    }
+  }
+}
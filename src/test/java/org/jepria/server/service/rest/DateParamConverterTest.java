@@ -0,0 +1,86 @@
+package org.jepria.server.service.rest;
+
+import org.junit.Test;
+
+import java.lang.annotation.Annotation;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class DateParamConverterTest {
+
+  private static DateFormat dateFormat(String value) {
+    return new DateFormat() {
+      @Override
+      public String value() {
+        return value;
+      }
+
+      @Override
+      public Class<? extends Annotation> annotationType() {
+        return DateFormat.class;
+      }
+    };
+  }
+
+  private static Date date(int year, int month, int day) {
+    return Date.from(LocalDate.of(year, month, day).atStartOfDay(ZoneId.systemDefault()).toInstant());
+  }
+
+  @Test
+  public void defaultFormat() {
+    final DateParamConverter converter = new DateParamConverter();
+    assertEquals(date(2010, 12, 31), converter.fromString("2010-12-31"));
+    // the text following the date is ignored
+    assertEquals(date(2010, 12, 31), converter.fromString("2010-12-31T23:59:00Z"));
+    assertEquals("2010-12-31", converter.toString(date(2010, 12, 31)));
+    assertNull(converter.fromString(null));
+  }
+
+  @Test
+  public void customFormat() {
+    assertEquals(date(2010, 12, 31), new DateParamConverter("dd.MM.yyyy").fromString("31.12.2010"));
+  }
+
+  @Test(expected = BadParamException.class)
+  public void invalidDateIsRejected() {
+    new DateParamConverter().fromString("2010-13-01");
+  }
+
+  @Test(expected = BadParamException.class)
+  public void dayOverflowIsRejected() {
+    // not adjusted to 2010-02-28
+    new DateParamConverter().fromString("2010-02-31");
+  }
+
+  @Test(expected = BadParamException.class)
+  public void dayOverflowIsRejectedInCustomFormat() {
+    new DateParamConverter("dd.MM.yyyy").fromString("29.02.2011");
+  }
+
+  @Test
+  public void leapDayIsAccepted() {
+    assertEquals(date(2012, 2, 29), new DateParamConverter().fromString("2012-02-29"));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void deprecatedSetCustomDateFormat() {
+    final DateParamConverter converter = new DateParamConverter();
+    converter.setCustomDateFormat(dateFormat("dd.MM.yyyy"));
+    assertEquals(date(2010, 12, 31), converter.fromString("31.12.2010"));
+    assertEquals("dd.MM.yyyy", converter.customDateFormat.value());
+
+    converter.setCustomDateFormat(null);
+    assertEquals(date(2010, 12, 31), converter.fromString("2010-12-31"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  @SuppressWarnings({"deprecation", "unchecked"})
+  public void sharedConverterFormatCannotBeChanged() {
+    final DateParamConverter converter = (DateParamConverter) new DateParamConverterProvider().getConverter(Date.class, Date.class, new Annotation[0]);
+    converter.setCustomDateFormat(dateFormat("dd.MM.yyyy"));
+  }
+}
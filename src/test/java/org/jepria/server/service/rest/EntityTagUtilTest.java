@@ -0,0 +1,64 @@
+package org.jepria.server.service.rest;
+
+import org.junit.Test;
+
+import javax.ws.rs.core.EntityTag;
+
+import static org.junit.Assert.*;
+
+public class EntityTagUtilTest {
+
+  public static class Dto {
+    private Integer id;
+    private String name;
+
+    public Dto(Integer id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  @Test
+  public void tagsAreStrong() {
+    assertFalse(EntityTagUtil.forVersion("1", null).isWeak());
+    assertFalse(EntityTagUtil.forRecord(new Dto(1, "a"), null).isWeak());
+  }
+
+  @Test
+  public void nullStateIsNotTracked() {
+    assertNull(EntityTagUtil.forVersion(null, "application/json; gzip"));
+    assertNull(EntityTagUtil.forRecord(null, "application/json; gzip"));
+  }
+
+  @Test
+  public void sameStateAndRepresentationGiveSameTag() {
+    assertEquals(EntityTagUtil.forVersion("v1", "application/json; gzip"), EntityTagUtil.forVersion("v1", "application/json; gzip"));
+    assertEquals(EntityTagUtil.forRecord(new Dto(1, "a"), "application/json; null"), EntityTagUtil.forRecord(new Dto(1, "a"), "application/json; null"));
+  }
+
+  @Test
+  public void tagDependsOnState() {
+    assertNotEquals(EntityTagUtil.forVersion("v1", "application/json; gzip"), EntityTagUtil.forVersion("v2", "application/json; gzip"));
+    assertNotEquals(EntityTagUtil.forRecord(new Dto(1, "a"), null), EntityTagUtil.forRecord(new Dto(1, "b"), null));
+  }
+
+  @Test
+  public void tagDependsOnRepresentation() {
+    // одни и те же данные, выдаваемые в разных представлениях (media type, content coding), различаются сильными ETag
+    assertNotEquals(EntityTagUtil.forVersion("v1", "application/json; gzip"), EntityTagUtil.forVersion("v1", "application/json; null"));
+    assertNotEquals(EntityTagUtil.forVersion("v1", "application/json; gzip"), EntityTagUtil.forVersion("v1", "application/cbor; gzip"));
+    assertNotEquals(EntityTagUtil.forVersion("v1", null), EntityTagUtil.forVersion("v1", ""));
+  }
+
+  @Test
+  public void componentsCannotBeShifted() {
+    assertNotEquals(EntityTagUtil.forVersion("v1", "2"), EntityTagUtil.forVersion("v", "12"));
+  }
+
+  @Test
+  public void versionCharactersAreNotExposed() {
+    // версия из Dao может содержать символы, недопустимые в ETag
+    final String value = EntityTagUtil.forVersion("2024-01-01 \"12:00\"\\", null).getValue();
+    assertTrue(value, value.matches("[A-Za-z0-9_-]+"));
+  }
+}
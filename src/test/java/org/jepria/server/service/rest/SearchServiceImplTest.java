@@ -0,0 +1,251 @@
+package org.jepria.server.service.rest;
+
+import org.jepria.server.data.Dao;
+import org.jepria.server.data.PagedDao;
+import org.jepria.server.data.RecordDefinition;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.http.HttpSession;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SearchServiceImplTest {
+
+  public static class Dto {
+    private Integer id;
+    private String name;
+
+    public Dto(Integer id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  /**
+   * Dao, подсчитывающий число поисков
+   */
+  static class CountingDao implements Dao {
+    final List<Dto> records = new ArrayList<>();
+    int findCount = 0;
+
+    CountingDao(int size) {
+      for (int i = 0; i < size; i++) {
+        records.add(new Dto(i, "name" + (size - i)));
+      }
+    }
+
+    @Override
+    public List<?> find(Object template, Integer operatorId) {
+      findCount++;
+      return new ArrayList<>(records);
+    }
+
+    @Override
+    public List<?> findByPrimaryKey(Map<String, ?> primaryKeyMap, Integer operatorId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object create(Object record, Integer operatorId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void update(Map<String, ?> primaryKey, Object record, Integer operatorId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(Map<String, ?> primaryKey, Integer operatorId) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Dao, подсчитывающий также запросы числа записей
+   */
+  static class CountingPagedDao extends CountingDao implements PagedDao {
+    int countCount = 0;
+
+    CountingPagedDao(int size) {
+      super(size);
+    }
+
+    @Override
+    public List<?> find(Object template, Map<String, Integer> listSortConfig, int offset, int limit, Integer operatorId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int count(Object template, Integer operatorId) {
+      countCount++;
+      return records.size();
+    }
+  }
+
+  public static class TemplateDto {
+    private Integer maxRowCount;
+
+    public TemplateDto(Integer maxRowCount) {
+      this.maxRowCount = maxRowCount;
+    }
+  }
+
+  static final RecordDefinition recordDefinition = new RecordDefinition() {
+    @Override
+    public Set<String> getFieldNames() {
+      return new HashSet<>(Arrays.asList("id", "name"));
+    }
+
+    @Override
+    public List<String> getPrimaryKey() {
+      return Collections.singletonList("id");
+    }
+
+    @Override
+    public Class<?> getFieldType(String fieldName) {
+      return "id".equals(fieldName) ? Integer.class : String.class;
+    }
+  };
+
+  private final List<HttpSession> sessions = new ArrayList<>();
+
+  HttpSession session() {
+    final HttpSession session = SessionSearchPoolTest.createSession("session" + sessions.size());
+    sessions.add(session);
+    return session;
+  }
+
+  @After
+  public void tearDown() {
+    for (HttpSession session: sessions) {
+      session.invalidate();
+    }
+    System.clearProperty(SessionSearchPool.GLOBAL_MAX_ROW_COUNT_PROPERTY);
+  }
+
+  static SearchService.SearchRequest request(String field, int sortOrder) {
+    final Map<String, Integer> sortConfig = new LinkedHashMap<>();
+    sortConfig.put(field, sortOrder);
+    return new SearchService.SearchRequest(new Dto(null, "template"), sortConfig);
+  }
+
+  private static List<Integer> ids(List<?> records) {
+    final List<Integer> ids = new ArrayList<>();
+    for (Object record: records) {
+      ids.add(((Dto) record).id);
+    }
+    return ids;
+  }
+
+  @Test
+  public void repeatedSearchReusesResultset() {
+    final CountingDao dao = new CountingDao(3);
+    final HttpSession session = session();
+    final SearchServiceImpl service = new SearchServiceImpl(dao, recordDefinition, () -> session);
+
+    assertEquals(Arrays.asList(2, 1, 0), ids(service.search(request("id", -1), null, null).data));
+    assertEquals(Arrays.asList(2, 1, 0), ids(service.search(request("id", -1), null, null).data));
+    assertEquals(1, dao.findCount);
+  }
+
+  @Test
+  public void sortVariantReusesSiblingResultset() {
+    final CountingDao dao = new CountingDao(3);
+    final HttpSession session = session();
+    final SearchServiceImpl service = new SearchServiceImpl(dao, recordDefinition, () -> session);
+
+    assertEquals(Arrays.asList(0, 1, 2), ids(service.search(request("id", 1), null, null).data));
+    // the list of the sibling search is re-sorted rather than loaded
+    assertEquals(Arrays.asList(2, 1, 0), ids(service.search(request("name", 1), null, null).data));
+    // the sibling search list is copied before sorting
+    assertEquals(Arrays.asList(0, 1, 2), ids(service.search(request("id", 1), null, null).data));
+    assertEquals(1, dao.findCount);
+  }
+
+  @Test
+  public void noCacheReloadsResultset() {
+    final CountingDao dao = new CountingDao(3);
+    final HttpSession session = session();
+    final SearchServiceImpl service = new SearchServiceImpl(dao, recordDefinition, () -> session);
+
+    service.search(request("id", 1), null, null);
+    service.search(request("id", 1), "no-cache", null);
+    assertEquals(2, dao.findCount);
+  }
+
+  @Test
+  public void pagedSearch() {
+    final CountingDao dao = new CountingDao(5);
+    final HttpSession session = session();
+    final SearchServiceImpl service = new SearchServiceImpl(dao, recordDefinition, () -> session);
+
+    final SearchService.SearchResult result = service.search(2, 2, request("id", 1), null, null);
+    assertEquals(5, result.resultsetSize);
+    assertEquals(Arrays.asList(2, 3), ids(result.data));
+    assertNull(service.search(2, 4, request("id", 1), null, null).data);
+  }
+
+  @Test
+  public void recordsAreCountedBeforeLoadingIntoSession() {
+    final CountingPagedDao dao = new CountingPagedDao(3);
+    final HttpSession session = session();
+    final SearchServiceImpl service = new SearchServiceImpl(dao, recordDefinition, () -> session);
+
+    final SearchService.SearchRequest request = new SearchService.SearchRequest(new TemplateDto(null), null);
+    assertEquals(3, service.search(10, 1, request, null, null).resultsetSize);
+    assertEquals(3, service.search(10, 1, request, null, null).resultsetSize);
+    assertEquals(1, dao.countCount);
+    assertEquals(1, dao.findCount);
+  }
+
+  @Test
+  public void resultLimitedByTemplateIsNotCounted() {
+    final CountingPagedDao dao = new CountingPagedDao(3);
+    final HttpSession session = session();
+    final SearchServiceImpl service = new SearchServiceImpl(dao, recordDefinition, () -> session);
+
+    final SearchService.SearchRequest request = new SearchService.SearchRequest(new TemplateDto(100), null);
+    assertEquals(3, service.search(10, 1, request, null, null).resultsetSize);
+    assertEquals(0, dao.countCount);
+    assertEquals(1, dao.findCount);
+
+    // the limit exceeding the paged search threshold does not guarantee that the resultset fits into the session
+    final SearchService.SearchRequest unboundedRequest = new SearchService.SearchRequest(new TemplateDto(Integer.MAX_VALUE), null);
+    service.search(10, 1, unboundedRequest, null, null);
+    assertEquals(1, dao.countCount);
+  }
+
+  @Test
+  public void searchEvictedByOtherSessionRemainsReadable() throws InterruptedException {
+    final CountingDao dao = new CountingDao(3);
+    final HttpSession sessionA = session();
+    final SearchServiceImpl serviceA = new SearchServiceImpl(dao, recordDefinition, () -> sessionA);
+    final HttpSession sessionB = session();
+    final SearchServiceImpl serviceB = new SearchServiceImpl(dao, recordDefinition, () -> sessionB);
+
+    serviceA.search(request("id", 1), null, null);
+    // lastAccessTime resolution
+    Thread.sleep(5);
+
+    // the request of the session A is in progress
+    final String searchId = serviceA.prepareSearch(request("id", 1), null);
+
+    // the search of the session B exceeds the global limit and evicts the search of the session A
+    System.setProperty(SessionSearchPool.GLOBAL_MAX_ROW_COUNT_PROPERTY, Long.toString(SessionSearchPool.getGlobalRowCount() + 2));
+    serviceB.search(request("name", 1), null, null);
+    assertEquals(Collections.emptyList(), SessionSearchPool.get(sessionA).getSearchIds());
+    assertEquals(2, dao.findCount);
+
+    // the session attributes of the evicted search are not removed by the session B
+    assertEquals(Arrays.asList(0, 1, 2), ids(serviceA.getResultsetLocal(searchId, null)));
+    assertEquals(2, dao.findCount);
+
+    // the next search of the session A loads the resultset anew
+    assertEquals(Arrays.asList(0, 1, 2), ids(serviceA.search(request("id", 1), null, null).data));
+    assertEquals(3, dao.findCount);
+    assertEquals(Collections.singletonList(searchId), SessionSearchPool.get(sessionA).getSearchIds());
+  }
+}
@@ -0,0 +1,292 @@
+package org.jepria.server.service.rest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SessionSearchPoolTest {
+
+  /**
+   * HTTP-сессия, хранящая атрибуты в Map и уведомляющая {@link HttpSessionBindingListener} об удалении атрибутов
+   */
+  static HttpSession createSession(String id) {
+    final Map<String, Object> attributes = new LinkedHashMap<>();
+    final HttpSession[] session = new HttpSession[1];
+    session[0] = (HttpSession) Proxy.newProxyInstance(SessionSearchPoolTest.class.getClassLoader(), new Class<?>[] {HttpSession.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getId":
+              return id;
+            case "getAttribute":
+              return attributes.get((String) args[0]);
+            case "getAttributeNames":
+              return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+            case "setAttribute":
+              attributes.put((String) args[0], args[1]);
+              return null;
+            case "removeAttribute": {
+              final Object value = attributes.remove((String) args[0]);
+              if (value instanceof HttpSessionBindingListener) {
+                ((HttpSessionBindingListener) value).valueUnbound(new HttpSessionBindingEvent(session[0], (String) args[0]));
+              }
+              return null;
+            }
+            case "invalidate":
+              for (String key: new ArrayList<>(attributes.keySet())) {
+                session[0].removeAttribute(key);
+              }
+              return null;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+    return session[0];
+  }
+
+  private final List<HttpSession> sessions = new ArrayList<>();
+
+  private HttpSession session() {
+    final HttpSession session = createSession("session" + sessions.size());
+    sessions.add(session);
+    return session;
+  }
+
+  @After
+  public void tearDown() {
+    for (HttpSession session: sessions) {
+      session.invalidate();
+    }
+    System.clearProperty(SessionSearchPool.MAX_SEARCH_COUNT_PROPERTY);
+    System.clearProperty(SessionSearchPool.MAX_ROW_COUNT_PROPERTY);
+    System.clearProperty(SessionSearchPool.GLOBAL_MAX_ROW_COUNT_PROPERTY);
+  }
+
+  @Test
+  public void poolIsStoredInSession() {
+    final HttpSession session = session();
+    assertSame(SessionSearchPool.get(session), SessionSearchPool.get(session));
+  }
+
+  @Test
+  public void getIfPresentDoesNotCreatePool() {
+    final HttpSession session = session();
+
+    assertNull(SessionSearchPool.getIfPresent(null));
+    assertNull(SessionSearchPool.getIfPresent(session));
+    assertNull(SessionSearchPool.getIfPresent(session));
+
+    final SessionSearchPool pool = SessionSearchPool.get(session);
+    assertSame(pool, SessionSearchPool.getIfPresent(session));
+  }
+
+  @Test
+  public void admissionAccountsForGlobalUsage() {
+    System.setProperty(SessionSearchPool.MAX_ROW_COUNT_PROPERTY, "100");
+    System.setProperty(SessionSearchPool.GLOBAL_MAX_ROW_COUNT_PROPERTY, Long.toString(SessionSearchPool.getGlobalRowCount() + 150));
+
+    final SessionSearchPool pool1 = SessionSearchPool.get(session());
+    final SessionSearchPool pool2 = SessionSearchPool.get(session());
+
+    assertTrue(pool1.isAdmissible(100));
+    assertFalse(pool1.isAdmissible(101));
+
+    pool2.put("a");
+    pool2.setRowCount("a", 80);
+
+    // the global limit leaves 70 rows
+    assertTrue(pool1.isAdmissible(70));
+    assertFalse(pool1.isAdmissible(71));
+  }
+
+  @Test
+  public void putAndTouch() {
+    final SessionSearchPool pool = SessionSearchPool.get(session());
+
+    assertFalse(pool.touch("a"));
+    assertFalse(pool.put("a"));
+    assertTrue(pool.put("a"));
+    pool.put("b");
+    assertTrue(pool.touch("a"));
+
+    assertEquals(Arrays.asList("b", "a"), pool.getSearchIds());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedSearchesWithAttributes() {
+    System.setProperty(SessionSearchPool.MAX_SEARCH_COUNT_PROPERTY, "2");
+
+    final HttpSession session = session();
+    final SessionSearchPool pool = SessionSearchPool.get(session);
+    for (String searchId: Arrays.asList("a", "b", "c")) {
+      pool.put(searchId);
+      session.setAttribute(SessionSearchPool.getSearchAttrKeyPrefix(searchId) + ";key=sreq;", searchId);
+    }
+    pool.touch("a");
+
+    pool.evict(session, "c");
+
+    assertEquals(Arrays.asList("c", "a"), pool.getSearchIds());
+    assertNull(session.getAttribute(SessionSearchPool.getSearchAttrKeyPrefix("b") + ";key=sreq;"));
+    assertEquals("a", session.getAttribute(SessionSearchPool.getSearchAttrKeyPrefix("a") + ";key=sreq;"));
+  }
+
+  @Test
+  public void evictsByRowCountButRetainsCurrentSearch() {
+    System.setProperty(SessionSearchPool.MAX_ROW_COUNT_PROPERTY, "100");
+
+    final HttpSession session = session();
+    final SessionSearchPool pool = SessionSearchPool.get(session);
+    pool.put("a");
+    pool.setRowCount("a", 60);
+    pool.put("b");
+    pool.setRowCount("b", 30);
+    pool.put("c");
+    pool.setRowCount("c", 150);
+
+    pool.evict(session, "c");
+
+    assertEquals(Collections.singletonList("c"), pool.getSearchIds());
+    assertEquals(150, pool.getRowCount());
+  }
+
+  @Test
+  public void globalRowCountFollowsSessions() {
+    final long initialGlobalRowCount = SessionSearchPool.getGlobalRowCount();
+
+    final HttpSession session1 = session();
+    final SessionSearchPool pool1 = SessionSearchPool.get(session1);
+    pool1.put("a");
+    pool1.setRowCount("a", 10);
+    final SessionSearchPool pool2 = SessionSearchPool.get(session());
+    pool2.put("a");
+    pool2.setRowCount("a", 5);
+
+    assertEquals(initialGlobalRowCount + 15, SessionSearchPool.getGlobalRowCount());
+
+    pool1.setRowCount("a", 0);
+    assertEquals(initialGlobalRowCount + 5, SessionSearchPool.getGlobalRowCount());
+
+    pool1.setRowCount("a", 10);
+    session1.invalidate();
+    assertEquals(initialGlobalRowCount + 5, SessionSearchPool.getGlobalRowCount());
+  }
+
+  @Test
+  public void globalLimitEvictsOldestSearchOfAnySession() throws InterruptedException {
+    final HttpSession session1 = session();
+    final SessionSearchPool pool1 = SessionSearchPool.get(session1);
+    pool1.put("a");
+    pool1.setRowCount("a", 10);
+    final String attrKey = SessionSearchPool.getSearchAttrKeyPrefix("a") + ";key=rset;";
+    session1.setAttribute(attrKey, Collections.emptyList());
+    // lastAccessTime resolution
+    Thread.sleep(5);
+
+    final HttpSession session2 = session();
+    final SessionSearchPool pool2 = SessionSearchPool.get(session2);
+    pool2.put("b");
+    pool2.setRowCount("b", 10);
+
+    System.setProperty(SessionSearchPool.GLOBAL_MAX_ROW_COUNT_PROPERTY, Long.toString(SessionSearchPool.getGlobalRowCount() - 1));
+    pool2.evict(session2, "b");
+
+    assertEquals(Collections.emptyList(), pool1.getSearchIds());
+    assertEquals(Collections.singletonList("b"), pool2.getSearchIds());
+    assertFalse(pool1.touch("a"));
+
+    // the attributes of the other session are removed only by the thread of that session
+    assertNotNull(session1.getAttribute(attrKey));
+    pool1.evict(session1, null);
+    assertNull(session1.getAttribute(attrKey));
+  }
+
+  @Test
+  public void evictedSearchIsReplacedOnPut() throws InterruptedException {
+    final HttpSession session1 = session();
+    final SessionSearchPool pool1 = SessionSearchPool.get(session1);
+    pool1.put("a");
+    pool1.setRowCount("a", 10);
+    Thread.sleep(5);
+
+    final HttpSession session2 = session();
+    final SessionSearchPool pool2 = SessionSearchPool.get(session2);
+    pool2.put("b");
+    pool2.setRowCount("b", 10);
+
+    final long globalRowCount = SessionSearchPool.getGlobalRowCount();
+    System.setProperty(SessionSearchPool.GLOBAL_MAX_ROW_COUNT_PROPERTY, Long.toString(globalRowCount - 1));
+    pool2.evict(session2, "b");
+    assertEquals(globalRowCount - 10, SessionSearchPool.getGlobalRowCount());
+
+    // the row count of the evicted search is not accounted any more
+    pool1.setRowCount("a", 5);
+    assertEquals(0, pool1.getRowCount());
+
+    // the evicted search is added anew
+    assertFalse(pool1.put("a"));
+    assertTrue(pool1.put("a"));
+    assertEquals(Collections.singletonList("a"), pool1.getSearchIds());
+  }
+
+  private static Map<String, Integer> sortConfig(Object... fieldsAndOrders) {
+    final Map<String, Integer> sortConfig = new LinkedHashMap<>();
+    for (int i = 0; i < fieldsAndOrders.length; i += 2) {
+      sortConfig.put((String) fieldsAndOrders[i], (Integer) fieldsAndOrders[i + 1]);
+    }
+    return sortConfig;
+  }
+
+  @Test
+  public void searchIdIsStable() {
+    assertEquals(
+        SessionSearchPool.createSearchId("session", "entity", "{}", sortConfig("a", 1)),
+        SessionSearchPool.createSearchId("session", "entity", "{}", sortConfig("a", 1)));
+  }
+
+  @Test
+  public void searchIdDependsOnEveryComponent() {
+    final String searchId = SessionSearchPool.createSearchId("session", "entity", "{}", sortConfig("a", 1, "b", -1));
+
+    assertNotEquals(searchId, SessionSearchPool.createSearchId("session2", "entity", "{}", sortConfig("a", 1, "b", -1)));
+    assertNotEquals(searchId, SessionSearchPool.createSearchId("session", "entity2", "{}", sortConfig("a", 1, "b", -1)));
+    assertNotEquals(searchId, SessionSearchPool.createSearchId("session", "entity", "{\"x\":1}", sortConfig("a", 1, "b", -1)));
+    assertNotEquals(searchId, SessionSearchPool.createSearchId("session", "entity", null, sortConfig("a", 1, "b", -1)));
+    assertNotEquals(searchId, SessionSearchPool.createSearchId("session", "entity", "{}", sortConfig("a", 1, "b", 1)));
+    // порядок полей сортировки существенен
+    assertNotEquals(searchId, SessionSearchPool.createSearchId("session", "entity", "{}", sortConfig("b", -1, "a", 1)));
+    assertNotEquals(searchId, SessionSearchPool.createSearchId("session", "entity", "{}", null));
+  }
+
+  @Test
+  public void searchIdComponentsAreSeparated() {
+    assertNotEquals(
+        SessionSearchPool.createSearchId("ab", "c", null, null),
+        SessionSearchPool.createSearchId("a", "bc", null, null));
+    assertNotEquals(
+        SessionSearchPool.createSearchId("a", null, "", null),
+        SessionSearchPool.createSearchId("a", "", null, null));
+  }
+
+  @Test
+  public void templatePrefixIsSharedBySortVariants() {
+    final String searchId1 = SessionSearchPool.createSearchId("session", "entity", "{}", sortConfig("a", 1));
+    final String searchId2 = SessionSearchPool.createSearchId("session", "entity", "{}", sortConfig("a", -1));
+    final String searchId3 = SessionSearchPool.createSearchId("session", "entity", "{\"x\":1}", sortConfig("a", 1));
+
+    assertNotEquals(searchId1, searchId2);
+    assertEquals(SessionSearchPool.getTemplatePrefix(searchId1), SessionSearchPool.getTemplatePrefix(searchId2));
+    assertTrue(searchId2.startsWith(SessionSearchPool.getTemplatePrefix(searchId1)));
+    assertFalse(searchId3.startsWith(SessionSearchPool.getTemplatePrefix(searchId1)));
+  }
+}
@@ -0,0 +1,214 @@
+package org.jepria.server.service.rest;
+
+import org.jepria.server.data.Dao;
+import org.jepria.server.data.PagedDao;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SharedResultsetCacheTest {
+
+  public interface FooDao extends Dao {
+  }
+
+  public interface BarDao extends Dao, PagedDao {
+  }
+
+  private static Dao proxy(Class<?>... interfaces) {
+    return (Dao) Proxy.newProxyInstance(SharedResultsetCacheTest.class.getClassLoader(), interfaces,
+        (proxy, method, args) -> null);
+  }
+
+  @Test
+  public void entityNameIsDaoInterfaceName() {
+    assertEquals(FooDao.class.getName(), SharedResultsetCache.getEntityName(proxy(FooDao.class)));
+    assertEquals(BarDao.class.getName(), SharedResultsetCache.getEntityName(proxy(PagedDao.class, BarDao.class)));
+    assertEquals(FooDao.class.getName(), SharedResultsetCache.getEntityName(proxy(FooDao.class, BarDao.class)));
+  }
+
+  public static class FooDaoImpl implements FooDao {
+    @Override
+    public List<?> find(Object template, Integer operatorId) {
+      return null;
+    }
+    @Override
+    public List<?> findByPrimaryKey(Map<String, ?> primaryKeyMap, Integer operatorId) {
+      return null;
+    }
+    @Override
+    public Object create(Object record, Integer operatorId) {
+      return null;
+    }
+    @Override
+    public void update(Map<String, ?> primaryKey, Object record, Integer operatorId) {
+    }
+    @Override
+    public void delete(Map<String, ?> primaryKey, Integer operatorId) {
+    }
+  }
+
+  @Test
+  public void entityNameOfNotProxiedDao() {
+    assertEquals(FooDao.class.getName(), SharedResultsetCache.getEntityName(new FooDaoImpl()));
+  }
+
+  private final SharedResultsetCache cache = new SharedResultsetCache();
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+
+  private List<?> load(Object... records) {
+    loadCount.incrementAndGet();
+    return new ArrayList<>(Arrays.asList(records));
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(SharedResultsetCache.MAX_ENTRY_COUNT_PROPERTY);
+    System.clearProperty(SharedResultsetCache.MAX_ROW_COUNT_PROPERTY);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void loadsOnceAndReturnsUnmodifiableList() {
+    final List<?> resultset1 = cache.get("entity", "{}", 1, 60000, () -> load("a", "b"));
+    final List<?> resultset2 = cache.get("entity", "{}", 1, 60000, () -> load("c"));
+
+    assertSame(resultset1, resultset2);
+    assertEquals(Arrays.asList("a", "b"), resultset1);
+    assertEquals(1, loadCount.get());
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(2, cache.getRowCount());
+
+    try {
+      ((List<Object>) resultset1).add("c");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void nullResultsetIsEmpty() {
+    assertTrue(cache.get("entity", "{}", 1, 60000, () -> null).isEmpty());
+  }
+
+  @Test
+  public void keyIncludesEntityTemplateAndOwner() {
+    cache.get("entity", "{}", 1, 60000, () -> load("a"));
+    cache.get("entity2", "{}", 1, 60000, () -> load("a"));
+    cache.get("entity", "{\"x\":1}", 1, 60000, () -> load("a"));
+    cache.get("entity", "{}", 2, 60000, () -> load("a"));
+    cache.get("entity", "{}", null, 60000, () -> load("a"));
+
+    assertEquals(5, loadCount.get());
+    assertEquals(5, cache.getEntryCount());
+  }
+
+  @Test
+  public void expiredEntryIsReloaded() throws InterruptedException {
+    cache.get("entity", "{}", 1, 1, () -> load("a"));
+    Thread.sleep(10);
+    assertEquals(Collections.singletonList("b"), cache.get("entity", "{}", 1, 1, () -> load("b")));
+    assertEquals(2, loadCount.get());
+    assertEquals(1, cache.getRowCount());
+  }
+
+  @Test
+  public void removeDropsAllOwnersOfTemplate() {
+    cache.get("entity", "{}", 1, 60000, () -> load("a"));
+    cache.get("entity", "{}", 2, 60000, () -> load("a"));
+    cache.get("entity", "{\"x\":1}", 1, 60000, () -> load("a"));
+
+    cache.remove("entity", "{}");
+
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(1, cache.getRowCount());
+    cache.get("entity", "{}", 1, 60000, () -> load("a"));
+    assertEquals(4, loadCount.get());
+  }
+
+  @Test
+  public void invalidateDropsAllTemplatesOfEntity() {
+    cache.get("entity", "{}", 1, 60000, () -> load("a"));
+    cache.get("entity", "{\"x\":1}", 1, 60000, () -> load("a", "b"));
+    cache.get("entity2", "{}", 1, 60000, () -> load("a"));
+
+    cache.invalidate("entity");
+
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(1, cache.getRowCount());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    System.setProperty(SharedResultsetCache.MAX_ENTRY_COUNT_PROPERTY, "2");
+    System.setProperty(SharedResultsetCache.MAX_ROW_COUNT_PROPERTY, "3");
+
+    cache.get("entity", "1", 1, 60000, () -> load("a"));
+    cache.get("entity", "2", 1, 60000, () -> load("a"));
+    // "1" becomes the most recently used
+    cache.get("entity", "1", 1, 60000, () -> load("a"));
+    cache.get("entity", "3", 1, 60000, () -> load("a"));
+
+    assertEquals(2, cache.getEntryCount());
+    cache.get("entity", "1", 1, 60000, () -> load("a"));
+    assertEquals(3, loadCount.get());
+
+    // row count limit
+    cache.get("entity", "4", 1, 60000, () -> load("a", "b", "c"));
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(3, cache.getRowCount());
+  }
+
+  @Test
+  public void failedLoadIsNotCached() {
+    try {
+      cache.get("entity", "{}", 1, 60000, () -> {
+        throw new IllegalStateException("db failure");
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("db failure", e.getMessage());
+    }
+
+    assertEquals(Collections.singletonList("a"), cache.get("entity", "{}", 1, 60000, () -> load("a")));
+  }
+
+  @Test
+  public void concurrentRequestsLoadOnce() throws Exception {
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+    final CountDownLatch loadReleased = new CountDownLatch(1);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<List<?>>> results = new ArrayList<>();
+      results.add(executor.submit(() -> cache.get("entity", "{}", 1, 60000, () -> {
+        loadStarted.countDown();
+        try {
+          loadReleased.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return load("a");
+      })));
+      loadStarted.await();
+      for (int i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> cache.get("entity", "{}", 1, 60000, () -> load("b"))));
+      }
+      loadReleased.countDown();
+
+      for (Future<List<?>> result: results) {
+        assertEquals(Collections.singletonList("a"), result.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(1, loadCount.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
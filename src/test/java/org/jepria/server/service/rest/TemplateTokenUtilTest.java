@@ -0,0 +1,75 @@
+package org.jepria.server.service.rest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TemplateTokenUtilTest {
+
+  public static class Template {
+    private Integer id;
+    private String name;
+    private Integer maxRowCount;
+
+    public Template(Integer id, String name, Integer maxRowCount) {
+      this.id = id;
+      this.name = name;
+      this.maxRowCount = maxRowCount;
+    }
+  }
+
+  @Test
+  public void equalTemplatesHaveEqualTokens() {
+    assertEquals(TemplateTokenUtil.createTemplateToken(new Template(1, "a", 25)),
+        TemplateTokenUtil.createTemplateToken(new Template(1, "a", 25)));
+  }
+
+  @Test
+  public void tokenIsStableAcrossCalls() {
+    final Template template = new Template(1, "ä", null);
+    final String token = TemplateTokenUtil.createTemplateToken(template);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(token, TemplateTokenUtil.createTemplateToken(template));
+    }
+  }
+
+  @Test
+  public void differentTemplatesHaveDifferentTokens() {
+    final String token = TemplateTokenUtil.createTemplateToken(new Template(1, "a", 25));
+    assertNotEquals(token, TemplateTokenUtil.createTemplateToken(new Template(2, "a", 25)));
+    assertNotEquals(token, TemplateTokenUtil.createTemplateToken(new Template(1, "b", 25)));
+    assertNotEquals(token, TemplateTokenUtil.createTemplateToken(new Template(1, "a", null)));
+  }
+
+  @Test
+  public void nullTemplateHasNullToken() {
+    assertNull(TemplateTokenUtil.createTemplateToken(null));
+  }
+
+  @Test
+  public void tokenIsStableAcrossThreads() throws Exception {
+    // the serializer is shared by all requests
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<String>> tokens = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        tokens.add(executor.submit(() -> TemplateTokenUtil.createTemplateToken(new Template(1, "a", 25))));
+      }
+      final Set<String> distinctTokens = new HashSet<>();
+      for (Future<String> token: tokens) {
+        distinctTokens.add(token.get());
+      }
+      assertEquals(1, distinctTokens.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Тестовые векторы &mdash; RFC 8949, Appendix A (и пример десятичной дроби из раздела 3.4.4).
+ * Массивы и map записываются с неопределённой длиной, поэтому для них ожидается соответствующий вариант кодирования.
+ */
+public class CborJsonWriterTest {
+
+  private interface WriterAction {
+    void write(JsonWriter writer) throws IOException;
+  }
+
+  private static String hex(byte[] bytes) {
+    final StringBuilder sb = new StringBuilder();
+    for (byte b: bytes) {
+      sb.append(String.format("%02x", b & 0xff));
+    }
+    return sb.toString();
+  }
+
+  private static String write(WriterAction action) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final CborJsonWriter writer = new CborJsonWriter(out);
+    action.write(writer);
+    writer.flush();
+    return hex(out.toByteArray());
+  }
+
+  private static void assertLong(String expected, long value) throws IOException {
+    assertEquals(String.valueOf(value), expected, write(w -> w.value(value)));
+  }
+
+  private static void assertNumber(String expected, Number value) throws IOException {
+    assertEquals(String.valueOf(value), expected, write(w -> w.value(value)));
+  }
+
+  @Test
+  public void unsignedIntegers() throws IOException {
+    assertLong("00", 0);
+    assertLong("01", 1);
+    assertLong("0a", 10);
+    assertLong("17", 23);
+    assertLong("1818", 24);
+    assertLong("1819", 25);
+    assertLong("1864", 100);
+    assertLong("1903e8", 1000);
+    assertLong("1a000f4240", 1000000);
+    assertLong("1b000000e8d4a51000", 1000000000000L);
+    assertNumber("1bffffffffffffffff", new BigInteger("18446744073709551615"));
+  }
+
+  @Test
+  public void negativeIntegers() throws IOException {
+    assertLong("20", -1);
+    assertLong("29", -10);
+    assertLong("3863", -100);
+    assertLong("3903e7", -1000);
+    assertNumber("3bffffffffffffffff", new BigInteger("-18446744073709551616"));
+  }
+
+  @Test
+  public void bignums() throws IOException {
+    assertNumber("c249010000000000000000", new BigInteger("18446744073709551616"));
+    assertNumber("c349010000000000000000", new BigInteger("-18446744073709551617"));
+  }
+
+  @Test
+  public void decimalFraction() throws IOException {
+    assertNumber("c48221196ab3", new BigDecimal("273.15"));
+    // целое значение BigDecimal кодируется целым числом
+    assertNumber("1864", new BigDecimal("100"));
+  }
+
+  @Test
+  public void floats() throws IOException {
+    assertNumber("fb3ff199999999999a", 1.1);
+    assertNumber("fb7e37e43c8800759c", 1.0e+300);
+    assertNumber("fbc010666666666666", -4.1);
+    assertNumber("fa47c35000", 100000.0f);
+    assertNumber("fa7f7fffff", 3.4028234663852886e+38f);
+  }
+
+  @Test
+  public void simpleValues() throws IOException {
+    assertEquals("f4", write(w -> w.value(false)));
+    assertEquals("f5", write(w -> w.value(true)));
+    assertEquals("f6", write(JsonWriter::nullValue));
+  }
+
+  @Test
+  public void textStrings() throws IOException {
+    assertEquals("60", write(w -> w.value("")));
+    assertEquals("6161", write(w -> w.value("a")));
+    assertEquals("6449455446", write(w -> w.value("IETF")));
+    assertEquals("62225c", write(w -> w.value("\"\\")));
+    assertEquals("62c3bc", write(w -> w.value("ü")));
+    assertEquals("63e6b0b4", write(w -> w.value("水")));
+    assertEquals("64f0908591", write(w -> w.value("𐅑")));
+  }
+
+  @Test
+  public void indefiniteLengthContainers() throws IOException {
+    assertEquals("9fff", write(w -> w.beginArray().endArray()));
+    assertEquals("9f019f0203ff9f0405ffff", write(w -> w.beginArray()
+        .value(1)
+        .beginArray().value(2).value(3).endArray()
+        .beginArray().value(4).value(5).endArray()
+        .endArray()));
+    assertEquals("bf6346756ef563416d7421ff", write(w -> w.beginObject()
+        .name("Fun").value(true)
+        .name("Amt").value(-2)
+        .endObject()));
+    assertEquals("bf61610161629f0203ffff", write(w -> w.beginObject()
+        .name("a").value(1)
+        .name("b").beginArray().value(2).value(3).endArray()
+        .endObject()));
+  }
+
+  @Test
+  public void nullFieldIsSkippedUnlessSerializeNulls() throws IOException {
+    assertEquals("bf6161f6ff", write(w -> w.beginObject().name("a").nullValue().endObject()));
+    assertEquals("bfff", write(w -> {
+      w.setSerializeNulls(false);
+      w.beginObject().name("a").nullValue().endObject();
+    }));
+  }
+
+  @Test
+  public void jsonValueIsReencoded() throws IOException {
+    assertEquals("9f016161ff", write(w -> w.beginArray().value(1).jsonValue("\"a\"").endArray()));
+  }
+
+  public static class Dto {
+    private Integer id;
+    private String name;
+    private BigDecimal amount;
+    private Double ratio;
+    private Boolean active;
+    private int[] values;
+  }
+
+  @Test
+  public void gsonRoundTrip() throws IOException {
+    final Gson gson = new GsonBuilder().create();
+
+    final Dto dto = new Dto();
+    dto.id = -5;
+    dto.name = "name";
+    dto.amount = new BigDecimal("-12345678901234567890.125");
+    dto.ratio = 0.5;
+    dto.active = true;
+    dto.values = new int[] {1, 2, 3};
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final CborJsonWriter writer = new CborJsonWriter(out);
+    gson.toJson(dto, Dto.class, writer);
+    writer.flush();
+
+    final JsonElement parsed = new CborParser(new ByteArrayInputStream(out.toByteArray())).parse();
+    final Dto result = gson.fromJson(parsed, Dto.class);
+
+    assertEquals(JsonParser.parseString(gson.toJson(dto)), JsonParser.parseString(gson.toJson(result)));
+  }
+}
@@ -0,0 +1,199 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тестовые векторы &mdash; RFC 8949, Appendix A (и пример десятичной дроби из раздела 3.4.4)
+ */
+public class CborParserTest {
+
+  private static byte[] bytes(String hex) {
+    final byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+    }
+    return bytes;
+  }
+
+  private static JsonElement parse(String hex) throws IOException {
+    return new CborParser(new ByteArrayInputStream(bytes(hex))).parse();
+  }
+
+  private static void assertJson(String expectedJson, String hex) throws IOException {
+    assertEquals(hex, JsonParser.parseString(expectedJson), parse(hex));
+  }
+
+  private static void assertInteger(String expected, String hex) throws IOException {
+    assertEquals(hex, new BigInteger(expected), parse(hex).getAsBigInteger());
+  }
+
+  private static void assertFloat(double expected, String hex) throws IOException {
+    assertEquals(hex, expected, parse(hex).getAsDouble(), 0);
+  }
+
+  @Test
+  public void integers() throws IOException {
+    assertInteger("0", "00");
+    assertInteger("1", "01");
+    assertInteger("10", "0a");
+    assertInteger("23", "17");
+    assertInteger("24", "1818");
+    assertInteger("25", "1819");
+    assertInteger("100", "1864");
+    assertInteger("1000", "1903e8");
+    assertInteger("1000000", "1a000f4240");
+    assertInteger("1000000000000", "1b000000e8d4a51000");
+    assertInteger("18446744073709551615", "1bffffffffffffffff");
+    assertInteger("18446744073709551616", "c249010000000000000000");
+    assertInteger("-18446744073709551616", "3bffffffffffffffff");
+    assertInteger("-18446744073709551617", "c349010000000000000000");
+    assertInteger("-1", "20");
+    assertInteger("-10", "29");
+    assertInteger("-100", "3863");
+    assertInteger("-1000", "3903e7");
+  }
+
+  @Test
+  public void decimalFraction() throws IOException {
+    assertEquals(new BigDecimal("273.15"), parse("c48221196ab3").getAsBigDecimal());
+  }
+
+  @Test
+  public void floats() throws IOException {
+    assertFloat(0.0, "f90000");
+    assertFloat(-0.0, "f98000");
+    assertTrue(1 / parse("f98000").getAsDouble() < 0);
+    assertFloat(1.0, "f93c00");
+    assertFloat(1.1, "fb3ff199999999999a");
+    assertFloat(1.5, "f93e00");
+    assertFloat(65504.0, "f97bff");
+    assertFloat(100000.0, "fa47c35000");
+    assertFloat(3.4028234663852886e+38, "fa7f7fffff");
+    assertFloat(1.0e+300, "fb7e37e43c8800759c");
+    assertFloat(5.960464477539063e-8, "f90001");
+    assertFloat(0.00006103515625, "f90400");
+    assertFloat(-4.0, "f9c400");
+    assertFloat(-4.1, "fbc010666666666666");
+    assertFloat(Double.POSITIVE_INFINITY, "f97c00");
+    assertTrue(Double.isNaN(parse("f97e00").getAsDouble()));
+    assertFloat(Double.NEGATIVE_INFINITY, "f9fc00");
+    assertFloat(Double.POSITIVE_INFINITY, "fa7f800000");
+    assertTrue(Double.isNaN(parse("fa7fc00000").getAsDouble()));
+    assertFloat(Double.NEGATIVE_INFINITY, "faff800000");
+    assertFloat(Double.POSITIVE_INFINITY, "fb7ff0000000000000");
+    assertTrue(Double.isNaN(parse("fb7ff8000000000000").getAsDouble()));
+    assertFloat(Double.NEGATIVE_INFINITY, "fbfff0000000000000");
+  }
+
+  @Test
+  public void simpleValues() throws IOException {
+    assertJson("false", "f4");
+    assertJson("true", "f5");
+    assertEquals(JsonNull.INSTANCE, parse("f6"));
+    // undefined
+    assertEquals(JsonNull.INSTANCE, parse("f7"));
+  }
+
+  @Test
+  public void tagsCarryContent() throws IOException {
+    assertJson("\"2013-03-21T20:04:00Z\"", "c074323031332d30332d32315432303a30343a30305a");
+    assertJson("1363896240", "c11a514b67b0");
+    assertJson("1363896240.5", "c1fb41d452d9ec200000");
+    assertJson("[1,2,3,4]", "d74401020304");
+    assertJson("\"http://www.example.com\"", "d82076687474703a2f2f7777772e6578616d706c652e636f6d");
+  }
+
+  @Test
+  public void strings() throws IOException {
+    assertJson("[]", "40");
+    assertJson("[1,2,3,4]", "4401020304");
+    assertJson("\"\"", "60");
+    assertJson("\"a\"", "6161");
+    assertJson("\"IETF\"", "6449455446");
+    assertJson("\"\\\"\\\\\"", "62225c");
+    assertJson("\"\\u00fc\"", "62c3bc");
+    assertJson("\"\\u6c34\"", "63e6b0b4");
+    assertJson("\"\\ud800\\udd51\"", "64f0908591");
+  }
+
+  @Test
+  public void definiteLengthContainers() throws IOException {
+    assertJson("[]", "80");
+    assertJson("[1,2,3]", "83010203");
+    assertJson("[1,[2,3],[4,5]]", "8301820203820405");
+    assertJson("[1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24,25]",
+        "98190102030405060708090a0b0c0d0e0f101112131415161718181819");
+    assertJson("{}", "a0");
+    // целочисленные ключи становятся именами полей
+    assertJson("{\"1\":2,\"3\":4}", "a201020304");
+    assertJson("{\"a\":1,\"b\":[2,3]}", "a26161016162820203");
+    assertJson("[\"a\",{\"b\":\"c\"}]", "826161a161626163");
+    assertJson("{\"a\":\"A\",\"b\":\"B\",\"c\":\"C\",\"d\":\"D\",\"e\":\"E\"}",
+        "a56161614161626142616361436164614461656145");
+  }
+
+  @Test
+  public void indefiniteLengthItems() throws IOException {
+    assertJson("[1,2,3,4,5]", "5f42010243030405ff");
+    assertJson("\"streaming\"", "7f657374726561646d696e67ff");
+    assertJson("[]", "9fff");
+    assertJson("[1,[2,3],[4,5]]", "9f018202039f0405ffff");
+    assertJson("[1,[2,3],[4,5]]", "9f01820203820405ff");
+    assertJson("[1,[2,3],[4,5]]", "83018202039f0405ff");
+    assertJson("[1,[2,3],[4,5]]", "83019f0203ff820405");
+    assertJson("[1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20,21,22,23,24,25]",
+        "9f0102030405060708090a0b0c0d0e0f101112131415161718181819ff");
+    assertJson("{\"a\":1,\"b\":[2,3]}", "bf61610161629f0203ffff");
+    assertJson("[\"a\",{\"b\":\"c\"}]", "826161bf61626163ff");
+    assertJson("{\"Fun\":true,\"Amt\":-2}", "bf6346756ef563416d7421ff");
+  }
+
+  @Test
+  public void emptyStreamIsNull() throws IOException {
+    assertEquals(JsonNull.INSTANCE, parse(""));
+  }
+
+  @Test(expected = EOFException.class)
+  public void truncatedData() throws IOException {
+    parse("830102");
+  }
+
+  @Test(expected = EOFException.class)
+  public void declaredLengthIsNotTrusted() throws IOException {
+    // строка длиной около 2 ГБ, данные которой отсутствуют: буфер не выделяется заранее по объявленной длине
+    parse("5a7fffff00");
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void trailingData() throws IOException {
+    parse("0101");
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void invalidChunkOfIndefiniteString() throws IOException {
+    // часть текстовой строки неопределённой длины должна быть текстовой строкой определённой длины
+    parse("7f4161ff");
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void nestingDepthIsLimited() throws IOException {
+    final StringBuilder hex = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      hex.append("81");
+    }
+    parse(hex.append("00").toString());
+  }
+}
@@ -0,0 +1,84 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Микробенчмарк сериализации списка Dto-объектов: рефлексивный адаптер Gson в сравнении с {@link DtoTypeAdapterFactory}.
+ * <br/>
+ * Запуск: {@code java -cp <test classpath> org.jepria.server.service.rest.gson.DtoTypeAdapterFactoryBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoTypeAdapterFactoryBenchmark {
+
+  public static class Dto {
+    private Integer id;
+    private String name;
+    private Date date;
+    private BigDecimal amount;
+    private Boolean active;
+    private Long parentId;
+    private String description;
+    private Integer count;
+  }
+
+  @Param({"1000", "100000"})
+  public int size;
+
+  private List<Dto> records;
+
+  private Gson reflective;
+
+  private Gson precompiled;
+
+  @Setup
+  public void setUp() {
+    records = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      final Dto dto = new Dto();
+      dto.id = i;
+      dto.name = "name" + i;
+      dto.date = new Date(i * 1000L);
+      dto.amount = new BigDecimal(i).movePointLeft(2);
+      dto.active = i % 2 == 0;
+      dto.parentId = i % 3 == 0 ? null : (long) i / 3;
+      dto.description = "description of the record " + i;
+      dto.count = i % 100;
+      records.add(dto);
+    }
+
+    // compact output: the pretty printing of DefaultGsonBuilder would dominate the measurement
+    reflective = new GsonBuilder().setDateFormat(DefaultGsonBuilder.DEFAULT_DATE_FORMAT).create();
+    precompiled = new GsonBuilder().setDateFormat(DefaultGsonBuilder.DEFAULT_DATE_FORMAT)
+        .registerTypeAdapterFactory(new DtoTypeAdapterFactory()).create();
+  }
+
+  @Benchmark
+  public String reflectiveAdapter() {
+    return reflective.toJson(records);
+  }
+
+  @Benchmark
+  public String dtoTypeAdapterFactory() {
+    return precompiled.toJson(records);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(DtoTypeAdapterFactoryBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,91 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DtoTypeAdapterFactoryTest {
+
+  public enum Kind {
+    A, B
+  }
+
+  public static class BaseDto {
+    protected Integer baseId;
+    protected transient String transientField = "transient";
+  }
+
+  public static class Dto extends BaseDto {
+    public static final String CONSTANT = "constant";
+
+    private Integer id;
+    private String name;
+    private Date date;
+    private BigDecimal amount;
+    private Kind kind;
+    private List<String> tags;
+    private Map<String, Integer> counts;
+    private int[] numbers;
+    private Object nested;
+    private Dto self;
+  }
+
+  public static class DtoException extends RuntimeException {
+    private Integer code = 1;
+
+    public DtoException() {
+      super("message");
+    }
+  }
+
+  private static Dto dto(int i) {
+    final Dto dto = new Dto();
+    dto.baseId = i;
+    dto.id = i % 3 == 0 ? null : i;
+    dto.name = "name" + i;
+    dto.date = i % 2 == 0 ? new Date(i * 1000L) : new Timestamp(i * 1000L);
+    dto.amount = new BigDecimal(i).movePointLeft(1);
+    dto.kind = i % 2 == 0 ? Kind.A : null;
+    dto.tags = Arrays.asList("a", "b");
+    dto.counts = Collections.singletonMap("x", i);
+    dto.numbers = new int[] {i, i + 1};
+    dto.nested = i % 2 == 0 ? new Dto() : "string";
+    dto.self = dto;
+    return dto;
+  }
+
+  private static void assertSameJson(Supplier<GsonBuilder> builder, Object value) {
+    final Gson reflective = builder.get().create();
+    final Gson precompiled = builder.get().registerTypeAdapterFactory(new DtoTypeAdapterFactory()).create();
+
+    assertEquals(reflective.toJson(value), precompiled.toJson(value));
+  }
+
+  @Test
+  public void sameJsonAsReflectiveAdapter() {
+    final List<Dto> records = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      records.add(dto(i));
+    }
+
+    assertSameJson(GsonBuilder::new, records);
+    assertSameJson(() -> new GsonBuilder().serializeNulls(), records);
+    assertSameJson(() -> new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES), records);
+    assertSameJson(new DefaultGsonBuilder(), records);
+  }
+
+  @Test
+  public void jdkSubclassIsLeftToReflectiveAdapter() {
+    assertNull(new DtoTypeAdapterFactory().create(new Gson(), TypeToken.get(DtoException.class)));
+  }
+}
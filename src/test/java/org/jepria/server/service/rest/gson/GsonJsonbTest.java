@@ -0,0 +1,68 @@
+package org.jepria.server.service.rest.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GsonJsonbTest {
+
+  public static class Dto {
+    private String name;
+
+    public Dto() {}
+
+    public Dto(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * Cyrillic, accented latin and a supplementary character (encoded as a surrogate pair in Java strings)
+   */
+  private static final String TEXT = "Запись café 😀";
+
+  private final GsonJsonb jsonb = new GsonJsonb(new Gson());
+
+  @Test
+  public void objectIsWrittenInUtf8() {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    jsonb.toJson(new Dto(TEXT), out);
+
+    // the bytes do not depend on the platform default charset
+    assertArrayEquals(("{\"name\":\"" + TEXT + "\"}").getBytes(StandardCharsets.UTF_8), out.toByteArray());
+  }
+
+  @Test
+  public void objectRoundTrip() {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    jsonb.toJson(new Dto(TEXT), out);
+
+    final Dto dto = jsonb.fromJson(new ByteArrayInputStream(out.toByteArray()), Dto.class);
+    assertEquals(TEXT, dto.name);
+  }
+
+  @Test
+  public void typedRoundTrip() {
+    final Type type = new TypeToken<List<String>>(){}.getType();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    jsonb.toJson(Arrays.asList(TEXT, "ё"), type, out);
+
+    final List<String> values = jsonb.fromJson(new ByteArrayInputStream(out.toByteArray()), type);
+    assertEquals(Arrays.asList(TEXT, "ё"), values);
+  }
+
+  @Test
+  public void utf8InputIsDecoded() {
+    final byte[] json = ("{\"name\":\"" + TEXT + "\"}").getBytes(StandardCharsets.UTF_8);
+    assertEquals(TEXT, jsonb.fromJson(new ByteArrayInputStream(json), Dto.class).name);
+  }
+}
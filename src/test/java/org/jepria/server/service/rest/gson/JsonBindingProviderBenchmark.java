@@ -0,0 +1,114 @@
+package org.jepria.server.service.rest.gson;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.json.bind.Jsonb;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Микробенчмарк записи большого списка Dto-объектов в тело ответа: построение ответа строкой и массивом байт
+ * (прежняя реализация {@link JsonBindingProvider#writeTo}) в сравнении с потоковой записью {@link JsonBindingProvider#writeTo}.
+ * <br/>
+ * Основной показатель &mdash; объём памяти, выделяемой на одну операцию ({@code gc.alloc.rate.norm} профайлера {@code gc}):
+ * при построении строкой он растёт пропорционально размеру ответа.
+ * <br/>
+ * Запуск: {@code java -cp <test classpath> org.jepria.server.service.rest.gson.JsonBindingProviderBenchmark}
+ * (или {@code org.openjdk.jmh.Main JsonBindingProviderBenchmark -prof gc})
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBindingProviderBenchmark {
+
+  public static class Dto {
+    private Integer id;
+    private String name;
+    private Date date;
+    private BigDecimal amount;
+    private Boolean active;
+    private String description;
+  }
+
+  /**
+   * Тело ответа, не накапливающее записанные байты (как сокет)
+   */
+  private static class DiscardingOutputStream extends OutputStream {
+    long count = 0;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  @Param({"10000", "100000"})
+  public int size;
+
+  private List<Dto> records;
+
+  private JsonBindingProvider provider;
+
+  private Jsonb jsonb;
+
+  @Setup
+  public void setUp() {
+    records = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      final Dto dto = new Dto();
+      dto.id = i;
+      dto.name = "name" + i;
+      dto.date = new Date(i * 1000L);
+      dto.amount = new BigDecimal(i).movePointLeft(2);
+      dto.active = i % 2 == 0;
+      dto.description = "description of the record " + i;
+      records.add(dto);
+    }
+
+    provider = new JsonBindingProvider();
+    // the same cached Jsonb as the one of the provider, so that only the way of writing differs
+    jsonb = JsonBindingProvider.getJsonb();
+  }
+
+  @Benchmark
+  public long stringBuilding() throws IOException {
+    final DiscardingOutputStream entityStream = new DiscardingOutputStream();
+    entityStream.write(jsonb.toJson(records).getBytes(StandardCharsets.UTF_8));
+    entityStream.flush();
+    return entityStream.count;
+  }
+
+  @Benchmark
+  public long streamingWriteTo() throws IOException {
+    final DiscardingOutputStream entityStream = new DiscardingOutputStream();
+    provider.writeTo(records, records.getClass(), records.getClass(), new Annotation[0],
+        MediaType.APPLICATION_JSON_TYPE, new MultivaluedHashMap<>(), entityStream);
+    return entityStream.count;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JsonBindingProviderBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,148 @@
+package org.jepria.server.service.rest.gson;
+
+import org.jepria.server.service.rest.ResultsetStream;
+import org.junit.Test;
+
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonBindingProviderTest {
+
+  public static class Resource {
+    public void list() {}
+
+    @JsonConfig(serializeNulls = true)
+    public void get() {}
+  }
+
+  public static class SubResource extends Resource {}
+
+  public static class Dto {
+    private Integer id;
+    private String name;
+
+    public Dto(Integer id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  private static final MediaType APPLICATION_JSON = new MediaType("application", "json");
+
+  private static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson");
+
+  private static final List<Dto> records = Arrays.asList(new Dto(1, "первая"), new Dto(2, null), new Dto(3, "third"));
+
+  private static String write(Object entity, MediaType mediaType) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JsonBindingProvider().writeTo(entity, entity.getClass(), entity.getClass(), new Annotation[0],
+        mediaType, new MultivaluedHashMap<>(), out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static ResourceInfo resourceInfo(Class<?> resourceClass, String methodName) throws NoSuchMethodException {
+    final Method resourceMethod = resourceClass.getMethod(methodName);
+    return new ResourceInfo() {
+      @Override
+      public Method getResourceMethod() {
+        return resourceMethod;
+      }
+
+      @Override
+      public Class<?> getResourceClass() {
+        return resourceClass;
+      }
+    };
+  }
+
+  @Test
+  public void jsonbIsCachedPerResourceMethod() throws Exception {
+    // a new ResourceInfo is injected for each request
+    final GsonJsonb jsonb = JsonBindingProvider.getJsonb(resourceInfo(Resource.class, "list"));
+    assertSame(jsonb, JsonBindingProvider.getJsonb(resourceInfo(Resource.class, "list")));
+  }
+
+  @Test
+  public void resourceMethodsHaveOwnJsonb() throws Exception {
+    final GsonJsonb listJsonb = JsonBindingProvider.getJsonb(resourceInfo(Resource.class, "list"));
+    final GsonJsonb getJsonb = JsonBindingProvider.getJsonb(resourceInfo(Resource.class, "get"));
+    assertNotSame(listJsonb, getJsonb);
+
+    // the cached instance keeps the method config
+    assertFalse(listJsonb.toJson(Collections.singletonMap("name", null)).contains("name"));
+    assertTrue(getJsonb.toJson(Collections.singletonMap("name", null)).contains("null"));
+  }
+
+  @Test
+  public void inheritedMethodHasJsonbPerResourceClass() throws Exception {
+    // the class-level config of the resource classes may differ
+    assertNotSame(JsonBindingProvider.getJsonb(resourceInfo(Resource.class, "list")),
+        JsonBindingProvider.getJsonb(resourceInfo(SubResource.class, "list")));
+  }
+
+  @Test
+  public void contextFreeJsonbIsCached() {
+    assertSame(JsonBindingProvider.getJsonb(), JsonBindingProvider.getJsonb());
+  }
+
+  @Test
+  public void ndjsonIsWrittenRecordPerLine() throws Exception {
+    final String ndjson = write(new ResultsetStream(records), APPLICATION_NDJSON);
+
+    assertEquals("{\"id\":1,\"name\":\"первая\"}\n"
+        + "{\"id\":2}\n"
+        + "{\"id\":3,\"name\":\"third\"}\n", ndjson);
+  }
+
+  @Test
+  public void emptyNdjsonHasNoLines() throws Exception {
+    assertEquals("", write(new ResultsetStream(Collections.emptyList()), APPLICATION_NDJSON));
+  }
+
+  @Test
+  public void ndjsonIsWrittenWhileIterating() throws Exception {
+    final int[] iteratedCount = {0};
+    final Iterable<Dto> lazyRecords = () -> new Iterator<Dto>() {
+      private final Iterator<Dto> iterator = records.iterator();
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Dto next() {
+        iteratedCount[0]++;
+        return iterator.next();
+      }
+    };
+
+    assertEquals(3, write(new ResultsetStream(lazyRecords), APPLICATION_NDJSON).split("\n").length);
+    // the records are iterated once
+    assertEquals(3, iteratedCount[0]);
+  }
+
+  @Test
+  public void ndjsonIsWriteableForIterablesOnly() {
+    final JsonBindingProvider provider = new JsonBindingProvider();
+    assertTrue(provider.isWriteable(ResultsetStream.class, ResultsetStream.class, null, APPLICATION_NDJSON));
+    assertFalse(provider.isWriteable(Dto.class, Dto.class, null, APPLICATION_NDJSON));
+  }
+
+  @Test
+  public void jsonResultsetStreamIsWrittenAsList() throws Exception {
+    assertEquals(write(records, APPLICATION_JSON), write(new ResultsetStream(records), APPLICATION_JSON));
+  }
+}
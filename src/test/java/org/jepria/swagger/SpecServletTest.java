@@ -0,0 +1,278 @@
+package org.jepria.swagger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class SpecServletTest {
+
+  @Test
+  public void normalizedPathIsUnchanged() {
+    assertEquals("/user/swagger.json", SpecServlet.normalizeResourcePath("/user/swagger.json"));
+    assertEquals("/", SpecServlet.normalizeResourcePath("/"));
+    assertEquals("/user/", SpecServlet.normalizeResourcePath("/user/"));
+  }
+
+  @Test
+  public void equivalentPathsAreNormalized() {
+    // различные пути одного ресурса не создают различных записей кеша
+    assertEquals("/user/swagger.json", SpecServlet.normalizeResourcePath("//user//swagger.json"));
+    assertEquals("/user/swagger.json", SpecServlet.normalizeResourcePath("/user/./swagger.json"));
+    assertEquals("/user/swagger.json", SpecServlet.normalizeResourcePath("/contract/../user/swagger.json"));
+    assertEquals("/", SpecServlet.normalizeResourcePath("/user/.."));
+  }
+
+  @Test
+  public void pathOutsideSpecRootIsRejected() {
+    assertNull(SpecServlet.normalizeResourcePath("/../WEB-INF/web.xml"));
+    assertNull(SpecServlet.normalizeResourcePath("/user/../../swagger.json"));
+  }
+
+  private static final String SPEC_PATH = "/WEB-INF/api-spec/user/swagger.json";
+
+  private static final byte[] SPEC = "{\"openapi\":\"3.0.0\",\"servers\":[{\"url\":\"/{appContextPath}/{apiEndpoint}/v1\"}]}"
+      .getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * Время изменения spec-ресурса, в миллисекундах (с точностью до секунд)
+   */
+  private static final long LAST_MODIFIED = 1600000000000L;
+
+  private File specFile;
+
+  private int resourceReadCount;
+
+  private SpecServlet servlet;
+
+  @Before
+  public void setUp() throws Exception {
+    specFile = File.createTempFile("swagger", ".json");
+    Files.write(specFile.toPath(), SPEC);
+    assertTrue(specFile.setLastModified(LAST_MODIFIED));
+
+    final ServletContext servletContext = (ServletContext) Proxy.newProxyInstance(ServletContext.class.getClassLoader(),
+        new Class<?>[] {ServletContext.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getResourcePaths":
+              if ("/WEB-INF/api-spec/".equals(args[0])) {
+                return Collections.singleton("/WEB-INF/api-spec/user/");
+              } else if ("/WEB-INF/api-spec/user/".equals(args[0])) {
+                return Collections.singleton(SPEC_PATH);
+              }
+              return null;
+            case "getResource":
+              return SPEC_PATH.equals(args[0]) ? specFile.toURI().toURL() : null;
+            case "getResourceAsStream":
+              if (SPEC_PATH.equals(args[0])) {
+                resourceReadCount++;
+                return new ByteArrayInputStream(SPEC);
+              }
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    final Map<String, String> initParameters = new HashMap<>();
+    initParameters.put("swagger-ui-root-path", "/swagger-ui");
+    initParameters.put("spec-root-path", "/WEB-INF/api-spec");
+    initParameters.put("api-servlet-path", "/api");
+
+    final ServletConfig servletConfig = (ServletConfig) Proxy.newProxyInstance(ServletConfig.class.getClassLoader(),
+        new Class<?>[] {ServletConfig.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getInitParameter":
+              return initParameters.get(args[0]);
+            case "getServletContext":
+              return servletContext;
+            case "getServletName":
+              return "ApiDocs";
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    servlet = new SpecServlet();
+    servlet.init(servletConfig);
+  }
+
+  @After
+  public void tearDown() {
+    specFile.delete();
+  }
+
+  /**
+   * Ответ сервлета
+   */
+  private static class Response {
+    int status = HttpServletResponse.SC_OK;
+    final Map<String, String> headers = new HashMap<>();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+  }
+
+  /**
+   * Выполняет GET-запрос spec-ресурса
+   * @param requestHeaders заголовки запроса: имя, значение, имя, значение...
+   */
+  private Response get(String... requestHeaders) throws Exception {
+    final Map<String, String> headers = new HashMap<>();
+    for (int i = 0; i < requestHeaders.length; i += 2) {
+      headers.put(requestHeaders[i], requestHeaders[i + 1]);
+    }
+
+    final HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+        new Class<?>[] {HttpServletRequest.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getPathInfo":
+              return "/_spec/user/swagger.json";
+            case "getContextPath":
+              return "/app";
+            case "getServletPath":
+              return "/api-docs";
+            case "getServletContext":
+              return servlet.getServletConfig().getServletContext();
+            case "getHeader":
+              return headers.get(args[0]);
+            case "getHeaders":
+              return headers.containsKey(args[0]) ? Collections.enumeration(Collections.singleton(headers.get(args[0])))
+                  : Collections.emptyEnumeration();
+            case "getDateHeader":
+              return headers.containsKey(args[0]) ? Long.parseLong(headers.get(args[0])) : -1L;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    final Response response = new Response();
+    final ServletOutputStream outputStream = new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        response.body.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    final HttpServletResponse servletResponse = (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+        new Class<?>[] {HttpServletResponse.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "setStatus":
+            case "sendError":
+              response.status = (Integer) args[0];
+              return null;
+            case "addHeader":
+            case "setHeader":
+              response.headers.put((String) args[0], (String) args[1]);
+              return null;
+            case "setDateHeader":
+              response.headers.put((String) args[0], String.valueOf(args[1]));
+              return null;
+            case "getOutputStream":
+              return outputStream;
+            case "setContentType":
+            case "setCharacterEncoding":
+            case "setContentLength":
+            case "flushBuffer":
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    servlet.doGet(request, servletResponse);
+    return response;
+  }
+
+  private static byte[] gunzip(byte[] bytes) throws IOException {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      final byte[] buffer = new byte[1024];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        result.write(buffer, 0, n);
+      }
+    }
+    return result.toByteArray();
+  }
+
+  @Test
+  public void specIsDeployedOnce() throws Exception {
+    final Response first = get();
+    assertEquals(HttpServletResponse.SC_OK, first.status);
+    assertTrue(first.body.toString("UTF-8").contains("/app/api/v1"));
+
+    final Response second = get();
+    assertArrayEquals(first.body.toByteArray(), second.body.toByteArray());
+    assertEquals(first.headers.get("ETag"), second.headers.get("ETag"));
+    // the deployed spec is served from the cache
+    assertEquals(1, resourceReadCount);
+  }
+
+  @Test
+  public void matchingEtagIsNotModified() throws Exception {
+    final String etag = get().headers.get("ETag");
+    assertNotNull(etag);
+
+    final Response notModified = get("If-None-Match", etag);
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.status);
+    assertEquals(0, notModified.body.size());
+    assertEquals(etag, notModified.headers.get("ETag"));
+
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, get("If-None-Match", "\"other\", W/" + etag).status);
+    assertEquals(HttpServletResponse.SC_OK, get("If-None-Match", "\"other\"").status);
+  }
+
+  @Test
+  public void ifModifiedSince() throws Exception {
+    assertEquals(String.valueOf(LAST_MODIFIED), get().headers.get("Last-Modified"));
+
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, get("If-Modified-Since", String.valueOf(LAST_MODIFIED)).status);
+    assertEquals(HttpServletResponse.SC_OK, get("If-Modified-Since", String.valueOf(LAST_MODIFIED - 1000)).status);
+    // If-None-Match takes precedence
+    assertEquals(HttpServletResponse.SC_OK,
+        get("If-Modified-Since", String.valueOf(LAST_MODIFIED), "If-None-Match", "\"other\"").status);
+  }
+
+  @Test
+  public void gzipRepresentationHasOwnEtag() throws Exception {
+    final Response identity = get();
+    final Response gzip = get("Accept-Encoding", "gzip");
+
+    assertEquals("gzip", gzip.headers.get("Content-Encoding"));
+    assertNull(identity.headers.get("Content-Encoding"));
+    assertEquals("Accept-Encoding", gzip.headers.get("Vary"));
+    assertArrayEquals(identity.body.toByteArray(), gunzip(gzip.body.toByteArray()));
+    assertNotEquals(identity.headers.get("ETag"), gzip.headers.get("ETag"));
+
+    // the entity tag of one representation does not match the other
+    assertEquals(HttpServletResponse.SC_OK, get("Accept-Encoding", "gzip", "If-None-Match", identity.headers.get("ETag")).status);
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, get("Accept-Encoding", "gzip", "If-None-Match", gzip.headers.get("ETag")).status);
+  }
+}